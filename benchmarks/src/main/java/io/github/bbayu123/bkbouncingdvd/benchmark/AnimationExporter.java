@@ -0,0 +1,491 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.FramePainter;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.benchmark.LoadHarness.Variant;
+import io.github.bbayu123.bkbouncingdvd.graphics2d_version.FramePainter2D;
+import io.github.bbayu123.bkbouncingdvd.mapcanvas_version.SpritePainter;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * Renders the bouncing logos to an animated GIF or to PNG images, without a
+ * server
+ * <p>
+ * The logos are moved by a {@link BounceSimulation}, like on a server, and
+ * painted with the painters of one of the display variants, see
+ * {@link SpritePainter}, {@link FramePainter2D} and {@link WidgetPainter}.
+ * Every frame is one tick.
+ * <p>
+ * The frames are rendered in chunks, spread over all cores. Before a chunk is
+ * handed out, the simulation is stepped up to its first frame on the calling
+ * thread, and the state of the logos is copied. The chunk then steps a
+ * simulation of its own from that state, so chunks can be rendered in any
+ * order. Only a few chunks are kept at once, and the frames are written as
+ * soon as the chunks before them are done, so the whole animation is never
+ * held in memory.
+ * <p>
+ * The frames stay in map colors all the way, the images are made with the map
+ * colors as their palette, so nothing is converted. A GIF is written by a
+ * single encoder in frame order, PNG images are written by the chunks
+ * themselves.
+ * <p>
+ * Options are given as {@code key=value} arguments, e.g.
+ * {@code java -cp benchmarks.jar io.github.bbayu123.bkbouncingdvd.benchmark.AnimationExporter out=preview.gif logos=4}
+ * <ul>
+ * <li>{@code out}, the GIF to write, or the directory to write the PNG images
+ * to if it does not end in {@code .gif}, by default {@code preview.gif}</li>
+ * <li>{@code variant}, the variant whose renderers are used, one of
+ * {@code mapcanvas}, {@code mapwidget} or {@code graphics2d}, by default
+ * {@code mapcanvas}</li>
+ * <li>{@code frames}, the number of frames, by default {@code 600}</li>
+ * <li>{@code width} and {@code height}, the size of the display, by default
+ * {@code 128} each</li>
+ * <li>{@code logos}, the number of logos, by default {@code 1}</li>
+ * <li>{@code logo}, a PNG image to bounce instead of the DVD logo</li>
+ * <li>{@code seed}, the seed the logos are placed and colored with, by
+ * default {@code 0}</li>
+ * <li>{@code threads}, the number of threads rendering, by default the number
+ * of cores</li>
+ * </ul>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class AnimationExporter {
+	/**
+	 * The most bytes of frames a single chunk holds, and the most frames
+	 */
+	private static final int CHUNK_BYTES = 8 * 1024 * 1024;
+	private static final int CHUNK_FRAMES = 64;
+
+	/**
+	 * The number of chunks in flight per rendering thread
+	 */
+	private static final int CHUNKS_PER_THREAD = 2;
+
+	/**
+	 * The time a frame is shown in a GIF, one tick, in hundredths of a second
+	 */
+	private static final int FRAME_DELAY = 5;
+
+	/**
+	 * The state of the logos at the start of a chunk
+	 */
+	private static final class Snapshot {
+		private final int[] x;
+		private final int[] y;
+		private final boolean[] right;
+		private final boolean[] down;
+		private final int[] bounces;
+		private final long[] seed;
+
+		private Snapshot(BounceSimulation simulation, int[] slots) {
+			this.x = new int[slots.length];
+			this.y = new int[slots.length];
+			this.right = new boolean[slots.length];
+			this.down = new boolean[slots.length];
+			this.bounces = new int[slots.length];
+			this.seed = new long[slots.length];
+			for (int i = 0; i < slots.length; i++) {
+				int slot = slots[i];
+				this.x[i] = simulation.getX(slot);
+				this.y[i] = simulation.getY(slot);
+				this.right[i] = simulation.getVelocityX(slot) > 0;
+				this.down[i] = simulation.getVelocityY(slot) > 0;
+				this.bounces[i] = simulation.getBounces(slot);
+				this.seed[i] = simulation.getSeed(slot);
+			}
+		}
+
+		private void restore(BounceSimulation simulation, int[] slots) {
+			for (int i = 0; i < slots.length; i++) {
+				simulation.restore(slots[i], this.x[i], this.y[i], this.right[i], this.down[i], this.bounces[i],
+						this.seed[i]);
+				// Restoring moves logos that are a little past a wall back inside,
+				// which would change where they go from here
+				simulation.place(slots[i], this.x[i], this.y[i], this.right[i], this.down[i]);
+			}
+		}
+	}
+
+	private final Path output;
+	private final boolean gif;
+	private final Variant variant;
+	private final int frames;
+	private final int width;
+	private final int height;
+	private final int logos;
+	private final long seed;
+	private final int threads;
+
+	private final BufferedImage logoImage;
+	private final Logo logo;
+	private final CollisionMask logoMask;
+
+	/**
+	 * The map colors, as the palette of the images
+	 */
+	private final IndexColorModel palette;
+
+	private AnimationExporter(Map<String, String> options) throws IOException {
+		this.output = Paths.get(options.getOrDefault("out", "preview.gif"));
+		this.gif = this.output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gif");
+		this.variant = Variant.valueOf(options.getOrDefault("variant", "mapcanvas").toUpperCase(Locale.ROOT));
+		this.frames = Integer.parseInt(options.getOrDefault("frames", "600"));
+		this.width = Integer.parseInt(options.getOrDefault("width", String.valueOf(StandInDisplay.SIZE)));
+		this.height = Integer.parseInt(options.getOrDefault("height", String.valueOf(StandInDisplay.SIZE)));
+		this.logos = Integer.parseInt(options.getOrDefault("logos", "1"));
+		this.seed = Long.parseLong(options.getOrDefault("seed", "0"));
+		this.threads = Integer.parseInt(
+				options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+		String logo = options.get("logo");
+		this.logoImage = logo == null ? StandInDisplay.loadLogoImage() : ImageIO.read(Paths.get(logo).toFile());
+		if (this.logoImage == null) {
+			throw new IllegalArgumentException("Not an image: " + logo);
+		}
+		MapTexture logoTexture = MapTexture.fromImage(this.logoImage);
+		this.logo = new Logo("logo", logoTexture);
+		this.logoMask = CollisionMask.of(logoTexture.getWidth(), logoTexture.getHeight(), logoTexture.getBuffer(),
+				MapColorPalette.COLOR_TRANSPARENT);
+
+		byte[] r = new byte[256];
+		byte[] g = new byte[256];
+		byte[] b = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			int rgb = MapColorPalette.getRealColor((byte) i).getRGB();
+			r[i] = (byte) (rgb >> 16);
+			g[i] = (byte) (rgb >> 8);
+			b[i] = (byte) rgb;
+		}
+		this.palette = new IndexColorModel(8, 256, r, g, b);
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int split = arg.indexOf('=');
+			if (split <= 0) {
+				throw new IllegalArgumentException("Options must be given as key=value, got " + arg);
+			}
+			options.put(arg.substring(0, split).toLowerCase(Locale.ROOT), arg.substring(split + 1));
+		}
+		new AnimationExporter(options).run();
+	}
+
+	private void run() throws IOException, InterruptedException, ExecutionException {
+		int chunkFrames = Math.max(1,
+				Math.min(AnimationExporter.CHUNK_FRAMES, AnimationExporter.CHUNK_BYTES / (this.width * this.height)));
+		if (!this.gif) {
+			Files.createDirectories(this.output);
+		}
+
+		BounceSimulation simulation = new BounceSimulation();
+		int[] slots = this.addLogos(simulation);
+		this.placeLogos(simulation, slots);
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+			Thread thread = new Thread(runnable, "BKBouncingDVD Exporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long start = System.nanoTime();
+		try (GifSequence sequence = this.gif ? new GifSequence(this.output, this.palette) : null) {
+			ArrayDeque<Future<byte[][]>> pending = new ArrayDeque<>();
+			for (int first = 0; first < this.frames; first += chunkFrames) {
+				int count = Math.min(chunkFrames, this.frames - first);
+				Snapshot snapshot = new Snapshot(simulation, slots);
+				int chunkStart = first;
+				pending.add(executor.submit(() -> this.renderChunk(snapshot, chunkStart, count)));
+				for (int i = 0; i < count; i++) {
+					AnimationExporter.step(simulation, slots);
+				}
+
+				if (pending.size() >= this.threads * AnimationExporter.CHUNKS_PER_THREAD) {
+					this.finish(pending.remove().get(), sequence);
+				}
+			}
+			while (!pending.isEmpty()) {
+				this.finish(pending.remove().get(), sequence);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf(Locale.ROOT, "%d frames of %dx%d with %s in %.2f s, %.0f frames/s, written to %s%n",
+				this.frames, this.width, this.height, this.variant.name().toLowerCase(Locale.ROOT), seconds,
+				this.frames / seconds, this.output);
+	}
+
+	/**
+	 * Adds the logos to a simulation, in the same slots every time
+	 */
+	private int[] addLogos(BounceSimulation simulation) {
+		int[] slots = new int[this.logos];
+		int collisionGroup = this.logos > 1 ? simulation.createGroup() : -1;
+		for (int i = 0; i < this.logos; i++) {
+			slots[i] = simulation.allocate(this.width, this.height, this.logoImage.getWidth(),
+					this.logoImage.getHeight(), 0L);
+			simulation.setMask(slots[i], this.logoMask);
+			if (collisionGroup != -1) {
+				simulation.addToGroup(collisionGroup, slots[i]);
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * Places the logos the way the plugin does, see
+	 * {@link io.github.bbayu123.bkbouncingdvd.LogoSet#allocate(BounceSimulation, int, int, int, int, int)
+	 * LogoSet.allocate}, but with a seeded random
+	 */
+	private void placeLogos(BounceSimulation simulation, int[] slots) {
+		Random random = new Random(this.seed);
+		for (int slot : slots) {
+			int x = simulation.getX(slot);
+			int y = simulation.getY(slot);
+			boolean right = true;
+			boolean down = true;
+			if (slots.length > 1) {
+				x = random.nextInt(Math.max(this.width - this.logoImage.getWidth() - 1, 1));
+				y = random.nextInt(Math.max(this.height - this.logoImage.getHeight() - 1, 1));
+				right = random.nextBoolean();
+				down = random.nextBoolean();
+			}
+			simulation.restore(slot, x, y, right, down, 0, random.nextLong());
+		}
+	}
+
+	private static void step(BounceSimulation simulation, int[] slots) {
+		for (int slot : slots) {
+			simulation.touch(slot);
+		}
+		simulation.step();
+	}
+
+	/**
+	 * Renders a chunk of frames, on a rendering thread
+	 *
+	 * @return the frames in map colors, or {@code null} if they were already
+	 *         written as PNG images
+	 */
+	private byte[][] renderChunk(Snapshot snapshot, int first, int count) throws IOException {
+		BounceSimulation simulation = new BounceSimulation();
+		int[] slots = this.addLogos(simulation);
+		snapshot.restore(simulation, slots);
+
+		FramePainter painter = this.createPainter(simulation, slots);
+		MapTexture layer = MapTexture.createEmpty(this.width, this.height);
+		byte[][] frames = new byte[count][];
+		try {
+			for (int i = 0; i < count; i++) {
+				painter.paint(layer);
+				byte[] pixels = layer.getBuffer().clone();
+				// The painters of some variants leave the background transparent,
+				// it is drawn below them on a layer of its own
+				for (int p = 0; p < pixels.length; p++) {
+					if (pixels[p] == MapColorPalette.COLOR_TRANSPARENT) {
+						pixels[p] = MapColorPalette.COLOR_BLACK;
+					}
+				}
+
+				if (this.gif) {
+					frames[i] = pixels;
+				} else {
+					Path file = this.output.resolve(String.format(Locale.ROOT, "frame-%05d.png", first + i));
+					ImageIO.write(this.toImage(pixels), "png", file.toFile());
+				}
+				AnimationExporter.step(simulation, slots);
+			}
+		} finally {
+			painter.dispose();
+		}
+		return this.gif ? frames : null;
+	}
+
+	private FramePainter createPainter(BounceSimulation simulation, int[] slots) {
+		switch (this.variant) {
+		case MAPCANVAS:
+			return new SpritePainter(simulation, slots, this.logo, null);
+		case MAPWIDGET:
+			return new WidgetPainter(simulation, slots, this.logo);
+		case GRAPHICS2D:
+			return new FramePainter2D(simulation, slots, this.width, this.height, this.logo, null, false);
+		default:
+			throw new IllegalArgumentException("Unknown variant " + this.variant);
+		}
+	}
+
+	private void finish(byte[][] frames, GifSequence sequence) throws IOException {
+		if (frames == null) {
+			return;
+		}
+		for (byte[] pixels : frames) {
+			sequence.write(this.toImage(pixels));
+		}
+	}
+
+	/**
+	 * Wraps map colors in an image with the map colors as its palette, without
+	 * copying them
+	 */
+	private BufferedImage toImage(byte[] pixels) {
+		WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(pixels, pixels.length), this.width,
+				this.height, this.width, 1, new int[] { 0 }, null);
+		return new BufferedImage(this.palette, raster, false, null);
+	}
+
+	/**
+	 * Writes frames to a looping GIF one at a time
+	 * <p>
+	 * The map colors are written once as the global color table, the frames do
+	 * not have color tables of their own.
+	 */
+	private static final class GifSequence implements AutoCloseable {
+		private final ImageOutputStream stream;
+		private final ImageWriter writer;
+		private final ImageWriteParam param;
+		private IIOMetadata metadata = null;
+		private boolean first = true;
+
+		private GifSequence(Path file, IndexColorModel palette) throws IOException {
+			Files.deleteIfExists(file);
+			this.stream = ImageIO.createImageOutputStream(file.toFile());
+			this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+			this.param = this.writer.getDefaultWriteParam();
+			this.writer.setOutput(this.stream);
+
+			IIOMetadata metadata = this.writer.getDefaultStreamMetadata(this.param);
+			String format = metadata.getNativeMetadataFormatName();
+			IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+			IIOMetadataNode table = AnimationExporter.getChild(root, "GlobalColorTable");
+			table.setAttribute("sizeOfGlobalColorTable", String.valueOf(palette.getMapSize()));
+			table.setAttribute("backgroundColorIndex", String.valueOf(MapColorPalette.COLOR_BLACK & 0xFF));
+			table.setAttribute("sortFlag", "FALSE");
+			for (int i = 0; i < palette.getMapSize(); i++) {
+				IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+				entry.setAttribute("index", String.valueOf(i));
+				entry.setAttribute("red", String.valueOf(palette.getRed(i)));
+				entry.setAttribute("green", String.valueOf(palette.getGreen(i)));
+				entry.setAttribute("blue", String.valueOf(palette.getBlue(i)));
+				table.appendChild(entry);
+			}
+			metadata.setFromTree(format, root);
+			this.writer.prepareWriteSequence(metadata);
+		}
+
+		private void write(BufferedImage image) throws IOException {
+			IIOMetadata metadata;
+			if (this.first) {
+				// Only the first frame says the GIF loops
+				metadata = this.createMetadata(image, true);
+				this.first = false;
+			} else {
+				if (this.metadata == null) {
+					this.metadata = this.createMetadata(image, false);
+				}
+				metadata = this.metadata;
+			}
+			this.writer.writeToSequence(new IIOImage(image, null, metadata), this.param);
+		}
+
+		private IIOMetadata createMetadata(BufferedImage image, boolean loop) throws IOException {
+			IIOMetadata metadata = this.writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image),
+					this.param);
+			String format = metadata.getNativeMetadataFormatName();
+			IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+			// Use the global color table
+			root.removeChild(AnimationExporter.getChild(root, "LocalColorTable"));
+
+			IIOMetadataNode control = AnimationExporter.getChild(root, "GraphicControlExtension");
+			control.setAttribute("disposalMethod", "none");
+			control.setAttribute("userInputFlag", "FALSE");
+			control.setAttribute("transparentColorFlag", "FALSE");
+			control.setAttribute("delayTime", String.valueOf(AnimationExporter.FRAME_DELAY));
+			control.setAttribute("transparentColorIndex", "0");
+
+			if (loop) {
+				IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+				extension.setAttribute("applicationID", "NETSCAPE");
+				extension.setAttribute("authenticationCode", "2.0");
+				// Loop forever
+				extension.setUserObject(new byte[] { 1, 0, 0 });
+				AnimationExporter.getChild(root, "ApplicationExtensions").appendChild(extension);
+			}
+			metadata.setFromTree(format, root);
+			return metadata;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				this.writer.endWriteSequence();
+			} finally {
+				this.writer.dispose();
+				this.stream.close();
+			}
+		}
+	}
+
+	private static IIOMetadataNode getChild(IIOMetadataNode root, String name) {
+		for (int i = 0; i < root.getLength(); i++) {
+			if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+				return (IIOMetadataNode) root.item(i);
+			}
+		}
+		IIOMetadataNode child = new IIOMetadataNode(name);
+		root.appendChild(child);
+		return child;
+	}
+}
@@ -0,0 +1,258 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.PaletteTable;
+import io.github.bbayu123.bkbouncingdvd.PixelKernels;
+import io.github.bbayu123.bkbouncingdvd.TintedLogoCache;
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * Benchmarks the pieces that make up a display tick
+ * <p>
+ * These are the wall checks, the collision mask checks, recoloring the logo, drawing the logo onto a layer,
+ * and converting a Java2D frame to map colors.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentBenchmark {
+	/**
+	 * A few colors to cycle through, fewer than the cache capacity
+	 */
+	private static final int[] COLORS = { 0xFF5050, 0x50FF50, 0x5050FF, 0xFFFF50, 0xFF50FF, 0x50FFFF, 0xFFFFFF, 0xA0A0A0 };
+
+	private MapTexture logoTexture;
+	private MapTexture logoCopy;
+	private TintedLogoCache tintedLogoCache;
+	private byte[] colors;
+	private int colorIndex;
+
+	private StandInDisplay display;
+	private MapTexture sprite;
+
+	private CollisionMask logoMask;
+	private CollisionMask obstacleMask;
+
+	private BufferedImage frame;
+	private int[] framePixels;
+	private byte[] frameColors;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		BufferedImage logoImage = StandInDisplay.loadLogoImage();
+		this.logoTexture = MapTexture.fromImage(logoImage);
+		this.logoCopy = this.logoTexture.clone();
+		this.tintedLogoCache = new TintedLogoCache(this.logoTexture, 64);
+		this.colors = new byte[ComponentBenchmark.COLORS.length];
+		for (int i = 0; i < this.colors.length; i++) {
+			this.colors[i] = MapColorPalette.getColor(new Color(ComponentBenchmark.COLORS[i]));
+		}
+
+		this.display = new StandInDisplay(this.logoTexture.getWidth(), this.logoTexture.getHeight());
+		this.sprite = this.tintedLogoCache.get(MapColorPalette.COLOR_WHITE);
+
+		this.logoMask = CollisionMask.of(this.logoTexture.getWidth(), this.logoTexture.getHeight(),
+				this.logoTexture.getBuffer(), MapColorPalette.COLOR_TRANSPARENT);
+		this.obstacleMask = new CollisionMask(StandInDisplay.SIZE, StandInDisplay.SIZE);
+		this.obstacleMask.add(this.logoMask, (StandInDisplay.SIZE - this.logoTexture.getWidth()) / 2,
+				(StandInDisplay.SIZE - this.logoTexture.getHeight()) / 2);
+
+		this.frame = new BufferedImage(StandInDisplay.SIZE, StandInDisplay.SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = this.frame.createGraphics();
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE);
+		g.drawImage(logoImage, this.display.positionX, this.display.positionY, null);
+		g.dispose();
+		this.framePixels = ((DataBufferInt) this.frame.getRaster().getDataBuffer()).getData();
+		this.frameColors = new byte[this.framePixels.length];
+	}
+
+	private byte nextColor() {
+		this.colorIndex = (this.colorIndex + 1) % this.colors.length;
+		return this.colors[this.colorIndex];
+	}
+
+	/**
+	 * Moving the logo and checking it against the walls
+	 */
+	@Benchmark
+	public int wallCheck() {
+		this.display.step();
+		return this.display.positionX;
+	}
+
+	/**
+	 * Moving the logo and checking its opaque pixels against an obstacle the
+	 * shape of the logo in the middle of the display
+	 */
+	@Benchmark
+	public boolean maskCheck() {
+		this.display.step();
+		return this.obstacleMask.overlaps(this.logoMask, this.display.positionX, this.display.positionY);
+	}
+
+	/**
+	 * Recoloring a copy of the logo pixel by pixel, as {@code DVDLogo} used to
+	 */
+	@Benchmark
+	public MapTexture recolorPerPixel(PixelCounter counter) {
+		byte color = this.nextColor();
+		MapTexture logo = this.logoCopy;
+		for (int i = 0; i < logo.getWidth(); i++) {
+			for (int j = 0; j < logo.getHeight(); j++) {
+				if (logo.readPixel(i, j) != MapColorPalette.COLOR_TRANSPARENT) {
+					logo.writePixel(i, j, color);
+				}
+			}
+		}
+		counter.tick((long) logo.getWidth() * logo.getHeight());
+		return logo;
+	}
+
+	/**
+	 * Recoloring by looking up the tinted logo in the shared cache
+	 */
+	@Benchmark
+	public MapTexture recolorCached(PixelCounter counter) {
+		counter.tick(0);
+		return this.tintedLogoCache.get(this.nextColor());
+	}
+
+	/**
+	 * Tinting a copy of the logo with {@link PixelKernels}, as the tinted logo
+	 * cache does when a color is first used
+	 */
+	@Benchmark
+	public MapTexture recolorKernel(PixelCounter counter) {
+		byte[] pixels = this.logoCopy.getBuffer();
+		PixelKernels.tint(this.logoTexture.getBuffer(), pixels, this.nextColor());
+		counter.tick(pixels.length);
+		return this.logoCopy;
+	}
+
+	/**
+	 * Drawing a pre-tinted logo onto a layer
+	 */
+	@Benchmark
+	public void blitSprite(PixelCounter counter) {
+		MapTexture layer = this.display.layer;
+		layer.setBlendMode(MapBlendMode.NONE);
+		layer.draw(this.sprite, this.display.positionX, this.display.positionY);
+		counter.tick((long) this.sprite.getWidth() * this.sprite.getHeight());
+	}
+
+	/**
+	 * Drawing a pre-tinted logo onto the raw buffer of a layer with
+	 * {@link PixelKernels}, skipping its transparent pixels
+	 */
+	@Benchmark
+	public void blitKernel(PixelCounter counter) {
+		MapTexture layer = this.display.layer;
+		PixelKernels.blit(this.sprite.getBuffer(), this.sprite.getWidth(), this.sprite.getHeight(), layer.getBuffer(),
+				layer.getWidth(), layer.getHeight(), this.display.positionX, this.display.positionY);
+		counter.tick((long) this.sprite.getWidth() * this.sprite.getHeight());
+	}
+
+	/**
+	 * Drawing the untinted logo onto a layer, tinting while drawing
+	 */
+	@Benchmark
+	public void blitTinted(PixelCounter counter) {
+		MapTexture layer = this.display.layer;
+		layer.setBlendMode(MapBlendMode.NONE);
+		layer.draw(this.logoTexture, this.display.positionX, this.display.positionY, this.nextColor());
+		counter.tick((long) this.logoTexture.getWidth() * this.logoTexture.getHeight());
+	}
+
+	/**
+	 * Converting a full frame to map colors through a new texture
+	 */
+	@Benchmark
+	public void frameToMapTexture(PixelCounter counter) {
+		this.display.layer.draw(MapTexture.fromImage(this.frame), 0, 0);
+		counter.tick(this.framePixels.length);
+	}
+
+	/**
+	 * Converting a full frame to map colors into a reused buffer, one palette
+	 * match per pixel
+	 */
+	@Benchmark
+	public void frameToMapBuffer(PixelCounter counter) {
+		int[] pixels = this.framePixels;
+		byte[] out = this.frameColors;
+		for (int i = 0; i < pixels.length; i++) {
+			int rgb = pixels[i];
+			out[i] = MapColorPalette.getColor((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+		}
+		this.display.layer.writePixels(0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE, out);
+		counter.tick(pixels.length);
+	}
+
+	/**
+	 * Converting a full frame to map colors through the lookup table, as
+	 * {@code FrameRenderer} does
+	 */
+	@Benchmark
+	public void frameToMapTable(PixelCounter counter) {
+		PaletteTable.convert(this.framePixels, StandInDisplay.SIZE, 0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE,
+				this.frameColors, false);
+		this.display.layer.writePixels(0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE, this.frameColors);
+		counter.tick(this.framePixels.length);
+	}
+
+	/**
+	 * Converting a full frame to map colors through the lookup table, dithered
+	 */
+	@Benchmark
+	public void frameToMapTableDithered(PixelCounter counter) {
+		PaletteTable.convert(this.framePixels, StandInDisplay.SIZE, 0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE,
+				this.frameColors, true);
+		this.display.layer.writePixels(0, 0, StandInDisplay.SIZE, StandInDisplay.SIZE, this.frameColors);
+		counter.tick(this.framePixels.length);
+	}
+}
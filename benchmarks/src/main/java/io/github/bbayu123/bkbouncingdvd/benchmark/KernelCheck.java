@@ -0,0 +1,202 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+import io.github.bbayu123.bkbouncingdvd.PixelKernels;
+
+/**
+ * Checks the {@link PixelKernels} against drawing one pixel at a time
+ * <p>
+ * Tinting, blitting and filling are run on random buffers, with widths that
+ * are not a multiple of any vector size, and sprites and rectangles that
+ * stick out over every edge of the target, or miss it entirely. Each result
+ * is compared with the same drawing done pixel by pixel.
+ * <p>
+ * The kernels pick the Vector API or the plain loops when they are first
+ * used, see {@link PixelKernels#isVectorized()}, so run the check on Java 17
+ * or newer with {@code --add-modules jdk.incubator.vector} to check the Vector
+ * API kernels, and without it, or with {@code -Dbouncingdvd.vector=false}, to
+ * check the plain loops. Every mismatch is printed, and the check exits with
+ * status {@code 1} if there were any.
+ * <p>
+ * Options are given as {@code key=value} arguments, e.g.
+ * {@code java --add-modules jdk.incubator.vector -cp benchmarks.jar io.github.bbayu123.bkbouncingdvd.benchmark.KernelCheck runs=50000}
+ * <ul>
+ * <li>{@code runs}, the number of random runs of each kernel, by default
+ * {@code 20000}</li>
+ * <li>{@code seed}, the seed of the random buffers, by default {@code 1}</li>
+ * </ul>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class KernelCheck {
+	/**
+	 * The largest width and height of the buffers, a bit over a few of the
+	 * widest vectors
+	 */
+	private static final int MAX_SIZE = 200;
+
+	private final int runs;
+	private final Random random;
+
+	private int mismatches = 0;
+
+	private KernelCheck(Map<String, String> options) {
+		this.runs = Integer.parseInt(options.getOrDefault("runs", "20000"));
+		this.random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+	}
+
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int split = arg.indexOf('=');
+			if (split <= 0) {
+				throw new IllegalArgumentException("Options must be given as key=value, got " + arg);
+			}
+			options.put(arg.substring(0, split).toLowerCase(Locale.ROOT), arg.substring(split + 1));
+		}
+		KernelCheck check = new KernelCheck(options);
+		check.run();
+		if (check.mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	private void run() {
+		for (int i = 0; i < this.runs; i++) {
+			this.checkTint(i);
+			this.checkBlit(i);
+			this.checkFill(i);
+		}
+		System.out.printf(Locale.ROOT, "%d runs of the %s checked, %d mismatches%n", this.runs,
+				PixelKernels.isVectorized() ? "Vector API kernels" : "plain loops", this.mismatches);
+	}
+
+	private void checkTint(int run) {
+		byte[] source = this.randomPixels(this.random.nextInt(KernelCheck.MAX_SIZE * 4));
+		byte color = this.randomColor();
+		byte[] expected = new byte[source.length];
+		for (int i = 0; i < source.length; i++) {
+			expected[i] = source[i] == MapColorPalette.COLOR_TRANSPARENT ? MapColorPalette.COLOR_TRANSPARENT : color;
+		}
+
+		byte[] target = this.randomPixels(source.length);
+		PixelKernels.tint(source, target, color);
+		this.compare("tint", run, expected, target);
+		// The source and target may be the same buffer
+		PixelKernels.tint(source, source, color);
+		this.compare("tint in place", run, expected, source);
+	}
+
+	private void checkBlit(int run) {
+		int targetWidth = 1 + this.random.nextInt(KernelCheck.MAX_SIZE);
+		int targetHeight = 1 + this.random.nextInt(8);
+		int spriteWidth = 1 + this.random.nextInt(KernelCheck.MAX_SIZE);
+		int spriteHeight = 1 + this.random.nextInt(8);
+		int x = this.random.nextInt(targetWidth + spriteWidth + 1) - spriteWidth;
+		int y = this.random.nextInt(targetHeight + spriteHeight + 1) - spriteHeight;
+		byte[] sprite = this.randomPixels(spriteWidth * spriteHeight);
+		byte[] target = this.randomPixels(targetWidth * targetHeight);
+
+		byte[] expected = target.clone();
+		for (int row = 0; row < spriteHeight; row++) {
+			for (int column = 0; column < spriteWidth; column++) {
+				int targetX = x + column;
+				int targetY = y + row;
+				byte color = sprite[row * spriteWidth + column];
+				if (targetX >= 0 && targetX < targetWidth && targetY >= 0 && targetY < targetHeight
+						&& color != MapColorPalette.COLOR_TRANSPARENT) {
+					expected[targetY * targetWidth + targetX] = color;
+				}
+			}
+		}
+
+		PixelKernels.blit(sprite, spriteWidth, spriteHeight, target, targetWidth, targetHeight, x, y);
+		this.compare("blit of " + spriteWidth + "x" + spriteHeight + " at " + x + "," + y + " onto " + targetWidth
+				+ "x" + targetHeight, run, expected, target);
+	}
+
+	private void checkFill(int run) {
+		int targetWidth = 1 + this.random.nextInt(KernelCheck.MAX_SIZE);
+		int targetHeight = 1 + this.random.nextInt(8);
+		int width = this.random.nextInt(KernelCheck.MAX_SIZE + 1);
+		int height = this.random.nextInt(9);
+		int x = this.random.nextInt(targetWidth + width + 1) - width;
+		int y = this.random.nextInt(targetHeight + height + 1) - height;
+		byte color = this.randomColor();
+		byte[] target = this.randomPixels(targetWidth * targetHeight);
+
+		byte[] expected = target.clone();
+		for (int row = Math.max(y, 0); row < Math.min(y + height, targetHeight); row++) {
+			for (int column = Math.max(x, 0); column < Math.min(x + width, targetWidth); column++) {
+				expected[row * targetWidth + column] = color;
+			}
+		}
+
+		PixelKernels.fill(target, targetWidth, targetHeight, x, y, width, height, color);
+		this.compare("fill of " + width + "x" + height + " at " + x + "," + y + " onto " + targetWidth + "x"
+				+ targetHeight, run, expected, target);
+	}
+
+	/**
+	 * Makes random pixels, about a third of them transparent
+	 */
+	private byte[] randomPixels(int length) {
+		byte[] pixels = new byte[length];
+		for (int i = 0; i < length; i++) {
+			pixels[i] = this.random.nextInt(3) == 0 ? MapColorPalette.COLOR_TRANSPARENT : this.randomColor();
+		}
+		return pixels;
+	}
+
+	/**
+	 * Picks a random color that is not transparent, including the negative byte
+	 * values of the higher map colors
+	 */
+	private byte randomColor() {
+		byte color;
+		do {
+			color = (byte) this.random.nextInt(256);
+		} while (color == MapColorPalette.COLOR_TRANSPARENT);
+		return color;
+	}
+
+	private void compare(String kernel, int run, byte[] expected, byte[] actual) {
+		if (Arrays.equals(expected, actual)) {
+			return;
+		}
+		this.mismatches++;
+		if (this.mismatches <= 20) {
+			int pixel = 0;
+			while (expected[pixel] == actual[pixel]) {
+				pixel++;
+			}
+			System.out.println("Run " + run + ", " + kernel + ": pixel " + pixel + " is " + actual[pixel]
+					+ ", expected " + expected[pixel]);
+		}
+	}
+}
@@ -0,0 +1,507 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.AsyncFramePainter;
+import io.github.bbayu123.bkbouncingdvd.BandwidthBudget;
+import io.github.bbayu123.bkbouncingdvd.BroadcastGroup;
+import io.github.bbayu123.bkbouncingdvd.DetailLevel;
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.FramePainter;
+import io.github.bbayu123.bkbouncingdvd.FrameRateScheduler;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.LogoSet;
+import io.github.bbayu123.bkbouncingdvd.graphics2d_version.FramePainter2D;
+import io.github.bbayu123.bkbouncingdvd.mapcanvas_version.SpritePainter;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Finds out how many displays a server can handle
+ * <p>
+ * Thousands of displays with a random number of viewers each are ticked 20
+ * times per second, the way the plugin ticks them: displays without viewers
+ * are skipped, the others pick a {@link DetailLevel} from the distance to
+ * their nearest viewer, ask the {@link FrameRateScheduler} and the
+ * {@link BandwidthBudget} whether to paint, paint their logos with the
+ * painters of their variant, or copy the frame of their {@link BroadcastGroup},
+ * and the simulation is stepped once. The painters are those of the plugin,
+ * only reading the logos from a simulation of the harness, except for the
+ * MapWidget variant, whose widgets cannot be drawn without a server, see
+ * {@link WidgetPainter}.
+ * <p>
+ * For every variant, mode and number of displays, the time the ticks took,
+ * the heap in use, the allocation rate, the bytes the map packets would have
+ * taken up and the frame rate the scheduler ended at are reported. At the end,
+ * the largest number of displays whose ticks stayed within the budget is
+ * listed for each variant and mode.
+ * <p>
+ * Options are given as {@code key=value} arguments, e.g.
+ * {@code java -cp benchmarks.jar io.github.bbayu123.bkbouncingdvd.benchmark.LoadHarness displays=500,1000 rate=0}
+ * <ul>
+ * <li>{@code variants}, the variants to run, by default
+ * {@code mapcanvas,mapwidget,graphics2d}</li>
+ * <li>{@code modes}, the modes to run, by default {@code single,logos,broadcast},
+ * see {@link Mode}</li>
+ * <li>{@code displays}, the numbers of displays, by default
+ * {@code 250,500,1000,2000,4000}</li>
+ * <li>{@code viewers}, the most viewers a display can have, by default
+ * {@code 4}</li>
+ * <li>{@code players}, the number of players the viewers are picked from, by
+ * default {@code 32}</li>
+ * <li>{@code distance}, the furthest a nearest viewer can be from a display
+ * in blocks, by default {@code 64}, so some displays are painted less often.
+ * The view distance is taken to be {@value #VIEW_DISTANCE} blocks.</li>
+ * <li>{@code bandwidth}, the bytes every player may be sent per tick, by
+ * default {@code 32768}, or {@code 0} for no limit, see
+ * {@link BandwidthBudget}</li>
+ * <li>{@code warmup} and {@code ticks}, the number of ticks run before and
+ * while measuring, by default {@code 100} and {@code 200}</li>
+ * <li>{@code rate}, the ticks per second, by default {@code 20}, or {@code 0}
+ * to tick as fast as possible</li>
+ * <li>{@code budget}, the 99th percentile tick time in milliseconds the
+ * displays may take, by default {@code 10}</li>
+ * </ul>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class LoadHarness {
+	/**
+	 * The number of displays sharing a frame in the broadcast mode
+	 */
+	private static final int GROUP_SIZE = 16;
+
+	/**
+	 * The number of logos per display in the logos mode
+	 */
+	private static final int MANY_LOGOS = 16;
+
+	/**
+	 * The rough number of bytes a map packet takes up besides its pixels
+	 */
+	private static final int PACKET_OVERHEAD = 10;
+
+	/**
+	 * The view distance of the server in blocks, the default of 10 chunks
+	 */
+	private static final double VIEW_DISTANCE = 160.0;
+
+	/**
+	 * The number of threads Graphics2D frames are rendered on, like on a server
+	 */
+	private static final int RENDER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	/**
+	 * The display variants
+	 */
+	enum Variant {
+		MAPCANVAS, MAPWIDGET, GRAPHICS2D;
+	}
+
+	/**
+	 * The ways the displays are set up
+	 */
+	enum Mode {
+		/**
+		 * Every display has a single logo
+		 */
+		SINGLE(1),
+		/**
+		 * Every display has {@link LoadHarness#MANY_LOGOS} logos bouncing off each
+		 * other
+		 */
+		LOGOS(LoadHarness.MANY_LOGOS),
+		/**
+		 * Every {@link LoadHarness#GROUP_SIZE} displays share a single logo in a
+		 * broadcast group
+		 */
+		BROADCAST(1);
+
+		private final int logos;
+
+		Mode(int logos) {
+			this.logos = logos;
+		}
+	}
+
+	/**
+	 * The measurements of a single run
+	 */
+	private static final class Result {
+		private long[] tickNanos;
+		private int viewers;
+		private long heapBytes;
+		private double allocatedPerSecond;
+		private double sentPerSecond;
+		private int divisor;
+	}
+
+	/**
+	 * A display, ticked the way {@code BouncingDisplay} ticks
+	 */
+	private final class Display {
+		private final LogoSet logos;
+		/**
+		 * The group whose frame is copied, or {@code null} if the display paints
+		 * the logos itself
+		 */
+		private final BroadcastGroup broadcast;
+		private final FramePainter painter;
+		/**
+		 * The object the frame rate phase is taken from, shared by the displays of
+		 * a group
+		 */
+		private final Object phase;
+		private final MapTexture layer;
+		private final List<Integer> viewers;
+		private final double distance;
+		private final DetailLevel detail;
+		private long copiedStep = -1;
+		private int frameArea = -1;
+
+		private Display(LogoSet logos, BroadcastGroup broadcast, FramePainter painter, Object phase,
+				List<Integer> viewers, double distance) {
+			this.logos = logos;
+			this.broadcast = broadcast;
+			this.painter = painter;
+			this.phase = phase;
+			this.layer = MapTexture.createEmpty(StandInDisplay.SIZE, StandInDisplay.SIZE);
+			this.viewers = viewers;
+			this.distance = distance;
+			this.detail = DetailLevel.of(distance, LoadHarness.VIEW_DISTANCE);
+		}
+
+		/**
+		 * Ticks the display
+		 *
+		 * @return the bytes sent to all viewers
+		 */
+		private long tick(BounceSimulation simulation, FrameRateScheduler scheduler, BandwidthBudget bandwidth) {
+			if (this.viewers.isEmpty() || this.detail == DetailLevel.FROZEN) {
+				return 0;
+			}
+			long sent = 0;
+			boolean due = scheduler.isFrameDue(System.identityHashCode(this.phase), this.detail.getDivisor());
+			if (bandwidth.schedule(this, this.viewers, this.distance, due, this.estimateFrameArea())) {
+				sent = this.viewers.size() * this.paint(simulation);
+			}
+			this.logos.touch(simulation);
+			return sent;
+		}
+
+		/**
+		 * Paints the display
+		 *
+		 * @return the bytes sent to a single viewer
+		 */
+		private long paint(BounceSimulation simulation) {
+			int written;
+			DirtyRegion dirty;
+			if (this.painter == null) {
+				written = this.broadcast.copyFrame(this.layer, this.copiedStep);
+				dirty = this.broadcast.getDirtyRegion();
+				this.copiedStep = simulation.getStepCount();
+			} else {
+				written = this.painter.paint(this.layer);
+				dirty = this.painter.getDirtyRegion();
+			}
+			this.frameArea = written == 0 || dirty.isEmpty() ? 0 : dirty.getArea();
+			if (written == 0) {
+				return 0;
+			}
+			int fullArea = StandInDisplay.SIZE * StandInDisplay.SIZE;
+			return written >= fullArea ? fullArea + LoadHarness.PACKET_OVERHEAD : LoadHarness.this.getPacketBytes(dirty);
+		}
+
+		private int estimateFrameArea() {
+			int fullArea = StandInDisplay.SIZE * StandInDisplay.SIZE;
+			if (this.painter == null && this.copiedStep != this.broadcast.getPaintedStep()) {
+				return fullArea;
+			}
+			return this.frameArea != -1 ? Math.max(this.frameArea, 1) : fullArea;
+		}
+	}
+
+	private final List<Variant> variants;
+	private final List<Mode> modes;
+	private final int[] displays;
+	private final int maxViewers;
+	private final int players;
+	private final double maxDistance;
+	private final int bandwidth;
+	private final int warmup;
+	private final int ticks;
+	private final int rate;
+	private final double budgetMillis;
+
+	private final Logo logo;
+	private final ExecutorService renderExecutor;
+
+	/**
+	 * The number of packets counted by {@link #countPackets}
+	 */
+	private int packets = 0;
+	private final DirtyRegion.RectConsumer countPackets = (x, y, width, height) -> this.packets++;
+
+	private LoadHarness(Map<String, String> options) {
+		this.variants = LoadHarness.parseList(options.getOrDefault("variants", "mapcanvas,mapwidget,graphics2d"),
+				Variant.class);
+		this.modes = LoadHarness.parseList(options.getOrDefault("modes", "single,logos,broadcast"), Mode.class);
+		this.displays = Arrays.stream(options.getOrDefault("displays", "250,500,1000,2000,4000").split(","))
+				.mapToInt(Integer::parseInt).toArray();
+		this.maxViewers = Integer.parseInt(options.getOrDefault("viewers", "4"));
+		this.players = Math.max(Integer.parseInt(options.getOrDefault("players", "32")), this.maxViewers);
+		this.maxDistance = Double.parseDouble(options.getOrDefault("distance", "64"));
+		this.bandwidth = Integer.parseInt(options.getOrDefault("bandwidth", "32768"));
+		this.warmup = Integer.parseInt(options.getOrDefault("warmup", "100"));
+		this.ticks = Integer.parseInt(options.getOrDefault("ticks", "200"));
+		this.rate = Integer.parseInt(options.getOrDefault("rate", "20"));
+		this.budgetMillis = Double.parseDouble(options.getOrDefault("budget", "10"));
+
+		this.logo = new Logo("dvd", MapTexture.fromImage(StandInDisplay.loadLogoImage()));
+		this.renderExecutor = Executors.newFixedThreadPool(LoadHarness.RENDER_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "LoadHarness Render");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int split = arg.indexOf('=');
+			if (split <= 0) {
+				throw new IllegalArgumentException("Options must be given as key=value, got " + arg);
+			}
+			options.put(arg.substring(0, split).toLowerCase(Locale.ROOT), arg.substring(split + 1));
+		}
+		LoadHarness harness = new LoadHarness(options);
+		try {
+			harness.run();
+		} finally {
+			harness.renderExecutor.shutdown();
+		}
+	}
+
+	private void run() {
+		System.out.printf("%-10s %-9s %8s %8s %9s %9s %9s %9s %11s %11s %8s%n", "variant", "mode", "displays",
+				"viewers", "p50 ms", "p99 ms", "max ms", "heap MiB", "alloc MB/s", "sent MB/s", "frames/s");
+
+		List<String> capacities = new ArrayList<>();
+		for (Variant variant : this.variants) {
+			for (Mode mode : this.modes) {
+				int capacity = 0;
+				for (int count : this.displays) {
+					Result result = this.run(variant, mode, count);
+					long[] sorted = result.tickNanos.clone();
+					Arrays.sort(sorted);
+					double p99 = LoadHarness.percentile(sorted, 0.99) / 1e6;
+					System.out.printf(Locale.ROOT, "%-10s %-9s %8d %8d %9.2f %9.2f %9.2f %9.1f %11.1f %11.1f %8d%n",
+							LoadHarness.name(variant), LoadHarness.name(mode), count, result.viewers,
+							LoadHarness.percentile(sorted, 0.50) / 1e6, p99, sorted[sorted.length - 1] / 1e6,
+							result.heapBytes / (1024.0 * 1024.0), result.allocatedPerSecond / 1e6,
+							result.sentPerSecond / 1e6, 20 / result.divisor);
+					if (p99 <= this.budgetMillis) {
+						capacity = Math.max(capacity, count);
+					}
+				}
+				capacities.add(String.format(Locale.ROOT, "%-10s %-9s %s", LoadHarness.name(variant),
+						LoadHarness.name(mode), capacity == 0 ? "none of the runs" : capacity + " displays"));
+			}
+		}
+
+		System.out.printf(Locale.ROOT, "%nLargest number of displays within %.1f ms per tick (p99)%n",
+				this.budgetMillis);
+		capacities.forEach(System.out::println);
+	}
+
+	private Result run(Variant variant, Mode mode, int count) {
+		BounceSimulation simulation = new BounceSimulation();
+		FrameRateScheduler scheduler = new FrameRateScheduler(Logger.getLogger(LoadHarness.class.getName()));
+		BandwidthBudget bandwidth = new BandwidthBudget(this.bandwidth);
+		Random random = new Random(count);
+		int size = StandInDisplay.SIZE;
+		Result result = new Result();
+
+		// In the broadcast mode, the logos belong to the groups, and the groups
+		// paint them, unless the displays draw the logos themselves
+		List<BroadcastGroup> groups = new ArrayList<>();
+		List<FramePainter> painters = new ArrayList<>();
+		Display[] displays = new Display[count];
+		List<Integer> players = new ArrayList<>();
+		for (int i = 0; i < this.players; i++) {
+			players.add(i);
+		}
+		LogoSet groupLogos = null;
+		BroadcastGroup group = null;
+		for (int i = 0; i < count; i++) {
+			if (mode != Mode.BROADCAST || i % LoadHarness.GROUP_SIZE == 0) {
+				groupLogos = LogoSet.allocate(simulation, mode.logos, size, size, this.logo.getWidth(),
+						this.logo.getHeight());
+				groupLogos.setMasks(simulation, this.logo.getMask(), null);
+				group = null;
+				if (mode == Mode.BROADCAST && variant != Variant.MAPWIDGET) {
+					group = new BroadcastGroup(simulation, groupLogos,
+							this.createPainter(variant, simulation, groupLogos.getSlots()), size, size);
+					groups.add(group);
+				}
+			}
+			FramePainter painter = group != null ? null
+					: this.createPainter(variant, simulation, groupLogos.getSlots());
+			if (painter != null) {
+				painters.add(painter);
+			}
+
+			Collections.shuffle(players, random);
+			List<Integer> viewers = new ArrayList<>(players.subList(0, random.nextInt(this.maxViewers + 1)));
+			result.viewers += viewers.size();
+			double distance = random.nextDouble() * this.maxDistance;
+			displays[i] = new Display(groupLogos, group, painter, mode == Mode.BROADCAST ? groupLogos : new Object(),
+					viewers, distance);
+		}
+
+		result.tickNanos = new long[this.ticks];
+		long sentBytes = 0;
+		long allocatedBytes = 0;
+		long measuredNanos = 0;
+		long next = System.nanoTime();
+		for (int tick = -this.warmup; tick < this.ticks; tick++) {
+			long allocatedBefore = LoadHarness.getAllocatedBytes();
+			long start = System.nanoTime();
+
+			long sent = 0;
+			for (Display display : displays) {
+				sent += display.tick(simulation, scheduler, bandwidth);
+			}
+			simulation.step();
+			scheduler.run();
+			bandwidth.run();
+
+			long elapsed = System.nanoTime() - start;
+			if (tick >= 0) {
+				result.tickNanos[tick] = elapsed;
+				measuredNanos += Math.max(elapsed, this.rate > 0 ? 1_000_000_000L / this.rate : elapsed);
+				allocatedBytes += LoadHarness.getAllocatedBytes() - allocatedBefore;
+				sentBytes += sent;
+			}
+
+			if (this.rate > 0) {
+				next += 1_000_000_000L / this.rate;
+				long wait = next - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				} else {
+					next = System.nanoTime();
+				}
+			}
+		}
+		result.divisor = scheduler.getDivisor();
+
+		System.gc();
+		result.heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		double seconds = measuredNanos / 1e9;
+		result.allocatedPerSecond = allocatedBytes / seconds;
+		result.sentPerSecond = sentBytes / seconds;
+
+		for (FramePainter painter : painters) {
+			painter.dispose();
+		}
+		for (BroadcastGroup broadcast : groups) {
+			broadcast.leave();
+		}
+		return result;
+	}
+
+	private FramePainter createPainter(Variant variant, BounceSimulation simulation, int[] slots) {
+		int size = StandInDisplay.SIZE;
+		switch (variant) {
+		case MAPCANVAS:
+			return new SpritePainter(simulation, slots, this.logo, null);
+		case MAPWIDGET:
+			return new WidgetPainter(simulation, slots, this.logo);
+		case GRAPHICS2D:
+			return new AsyncFramePainter(new FramePainter2D(simulation, slots, size, size, this.logo, null, false),
+					this.renderExecutor, size, size);
+		default:
+			throw new IllegalArgumentException("Unknown variant " + variant);
+		}
+	}
+
+	/**
+	 * Gets the number of bytes the map packets for a changed region would take
+	 * up
+	 * <p>
+	 * Every touched tile is sent as one packet, holding the bounding box of what
+	 * changed inside it.
+	 *
+	 * @param region the changed region
+	 * @return the number of bytes sent to a single viewer
+	 */
+	private long getPacketBytes(DirtyRegion region) {
+		this.packets = 0;
+		int area = region.forEachRect(this.countPackets);
+		return area + (long) this.packets * LoadHarness.PACKET_OVERHEAD;
+	}
+
+	/**
+	 * Gets the number of bytes allocated by the current thread so far
+	 *
+	 * @return the number of bytes, or {@code 0} if the JVM cannot tell
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		int index = (int) Math.ceil(sorted.length * fraction) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static <T extends Enum<T>> List<T> parseList(String value, Class<T> type) {
+		List<T> result = new ArrayList<>();
+		for (String name : value.split(",")) {
+			result.add(Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT)));
+		}
+		return result;
+	}
+
+	private static String name(Enum<?> value) {
+		return value.name().toLowerCase(Locale.ROOT);
+	}
+}
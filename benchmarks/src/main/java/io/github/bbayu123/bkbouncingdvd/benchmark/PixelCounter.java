@@ -0,0 +1,62 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the map pixels a benchmark writes
+ * <p>
+ * Both counters are reported as totals per iteration, so the pixels touched per
+ * tick is {@code pixels / ticks}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+@AuxCounters(AuxCounters.Type.EVENTS)
+@State(Scope.Thread)
+public class PixelCounter {
+	/**
+	 * The number of map pixels written
+	 */
+	public long pixels;
+	/**
+	 * The number of ticks run
+	 */
+	public long ticks;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		this.pixels = 0;
+		this.ticks = 0;
+	}
+
+	/**
+	 * Records a tick
+	 *
+	 * @param written the number of pixels written during the tick
+	 */
+	public void tick(long written) {
+		this.pixels += written;
+		this.ticks++;
+	}
+}
@@ -0,0 +1,198 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * Checks the predictions of {@link BounceSimulation} against stepping
+ * <p>
+ * Logos of random sizes and masks are placed at random in bounds of random
+ * sizes, some of them outside of the walls as if the bounds shrunk. Each logo
+ * is then stepped one step at a time until it bounces off a wall and hits a
+ * corner, and the steps this took are compared with
+ * {@link BounceSimulation#predictBounce(int)} and
+ * {@link BounceSimulation#predictCornerHit(int)}. A copy of the logo is moved
+ * the same number of steps at once with
+ * {@link BounceSimulation#advance(int, long)}, and has to end up in the same
+ * state.
+ * <p>
+ * Every mismatch is printed, and the check exits with status {@code 1} if there
+ * were any.
+ * <p>
+ * Options are given as {@code key=value} arguments, e.g.
+ * {@code java -cp benchmarks.jar io.github.bbayu123.bkbouncingdvd.benchmark.PredictionCheck logos=5000}
+ * <ul>
+ * <li>{@code logos}, the number of logos to check, by default {@code 2000}</li>
+ * <li>{@code horizon}, the most steps a logo is stepped, by default
+ * {@code 100000}. Corner hits predicted further away are only checked to not
+ * happen before.</li>
+ * <li>{@code seed}, the seed of the random logos, by default {@code 1}</li>
+ * </ul>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class PredictionCheck {
+	/**
+	 * The largest bounds the logos are checked in
+	 */
+	private static final int MAX_BOUNDS = 600;
+
+	private final int logos;
+	private final long horizon;
+	private final Random random;
+
+	private final BounceSimulation simulation = new BounceSimulation();
+
+	private int mismatches = 0;
+	private int cornersBeyond = 0;
+
+	private PredictionCheck(Map<String, String> options) {
+		this.logos = Integer.parseInt(options.getOrDefault("logos", "2000"));
+		this.horizon = Long.parseLong(options.getOrDefault("horizon", "100000"));
+		this.random = new Random(Long.parseLong(options.getOrDefault("seed", "1")));
+	}
+
+	public static void main(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int split = arg.indexOf('=');
+			if (split <= 0) {
+				throw new IllegalArgumentException("Options must be given as key=value, got " + arg);
+			}
+			options.put(arg.substring(0, split).toLowerCase(Locale.ROOT), arg.substring(split + 1));
+		}
+		PredictionCheck check = new PredictionCheck(options);
+		check.run();
+		if (check.mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	private void run() {
+		for (int i = 0; i < this.logos; i++) {
+			this.check(i);
+		}
+		System.out.printf(Locale.ROOT, "%d logos checked, %d mismatches, %d corner hits beyond %d steps%n",
+				this.logos, this.mismatches, this.cornersBeyond, this.horizon);
+	}
+
+	private void check(int index) {
+		int boundsWidth = 2 + this.random.nextInt(PredictionCheck.MAX_BOUNDS - 1);
+		int boundsHeight = 2 + this.random.nextInt(PredictionCheck.MAX_BOUNDS - 1);
+		int logoWidth = 1 + this.random.nextInt(boundsWidth - 1);
+		int logoHeight = 1 + this.random.nextInt(boundsHeight - 1);
+		CollisionMask mask = this.random.nextBoolean() ? this.randomMask(logoWidth, logoHeight) : null;
+		int x = this.random.nextInt(boundsWidth - logoWidth + 1);
+		int y = this.random.nextInt(boundsHeight - logoHeight + 1);
+		boolean right = this.random.nextBoolean();
+		boolean down = this.random.nextBoolean();
+		// Some logos start outside of the walls, as if the bounds shrunk
+		boolean shrink = this.random.nextInt(8) == 0;
+
+		int stepped = this.create(boundsWidth, boundsHeight, logoWidth, logoHeight, mask, x, y, right, down, shrink);
+		int advanced = this.create(boundsWidth, boundsHeight, logoWidth, logoHeight, mask, x, y, right, down,
+				shrink);
+		long predictedBounce = this.simulation.predictBounce(stepped);
+		long predictedCorner = this.simulation.predictCornerHit(stepped);
+
+		long bounce = -1;
+		long corner = -1;
+		long steps = 0;
+		while (steps < this.horizon && (bounce == -1 || corner == -1)) {
+			this.simulation.touch(stepped);
+			this.simulation.step();
+			steps++;
+			int hits = this.simulation.getWallHits(stepped);
+			if (hits != 0 && bounce == -1) {
+				bounce = steps;
+			}
+			if ((hits & (BounceSimulation.WALL_LEFT | BounceSimulation.WALL_RIGHT)) != 0
+					&& (hits & (BounceSimulation.WALL_TOP | BounceSimulation.WALL_BOTTOM)) != 0 && corner == -1) {
+				corner = steps;
+			}
+		}
+
+		String logo = String.format(Locale.ROOT, "logo %d (%dx%d in %dx%d at %d,%d%s)", index, logoWidth, logoHeight,
+				boundsWidth, boundsHeight, x, y, shrink ? ", shrunk" : "");
+		if (predictedBounce != bounce) {
+			this.report(logo + ": bounce predicted in " + predictedBounce + " steps, stepped " + bounce);
+		}
+		if (predictedCorner > this.horizon && corner == -1) {
+			this.cornersBeyond++;
+		} else if (predictedCorner != corner) {
+			this.report(logo + ": corner hit predicted in " + predictedCorner + " steps, stepped "
+					+ (corner == -1 ? "none within " + this.horizon : Long.toString(corner)));
+		}
+
+		this.simulation.advance(advanced, steps);
+		if (this.simulation.getX(advanced) != this.simulation.getX(stepped)
+				|| this.simulation.getY(advanced) != this.simulation.getY(stepped)
+				|| this.simulation.getVelocityX(advanced) != this.simulation.getVelocityX(stepped)
+				|| this.simulation.getVelocityY(advanced) != this.simulation.getVelocityY(stepped)
+				|| this.simulation.getBounces(advanced) != this.simulation.getBounces(stepped)
+				|| this.simulation.getColor(advanced) != this.simulation.getColor(stepped)) {
+			this.report(logo + ": advancing " + steps + " steps ended at " + this.simulation.getX(advanced) + ","
+					+ this.simulation.getY(advanced) + ", stepping at " + this.simulation.getX(stepped) + ","
+					+ this.simulation.getY(stepped));
+		}
+
+		this.simulation.free(stepped);
+		this.simulation.free(advanced);
+	}
+
+	private int create(int boundsWidth, int boundsHeight, int logoWidth, int logoHeight, CollisionMask mask, int x,
+			int y, boolean right, boolean down, boolean shrink) {
+		int slot = this.simulation.allocate(boundsWidth, boundsHeight, logoWidth, logoHeight, 0);
+		this.simulation.setMask(slot, mask);
+		this.simulation.place(slot, x, y, right, down);
+		if (shrink) {
+			this.simulation.setBounds(slot, Math.max(logoWidth + 1, boundsWidth / 2),
+					Math.max(logoHeight + 1, boundsHeight / 2));
+		}
+		return slot;
+	}
+
+	private CollisionMask randomMask(int width, int height) {
+		CollisionMask mask = new CollisionMask(width, height);
+		int left = this.random.nextInt(width);
+		int top = this.random.nextInt(height);
+		int right = left + 1 + this.random.nextInt(width - left);
+		int bottom = top + 1 + this.random.nextInt(height - top);
+		mask.set(left, top);
+		mask.set(right - 1, bottom - 1);
+		for (int i = 0; i < 8; i++) {
+			mask.set(left + this.random.nextInt(right - left), top + this.random.nextInt(bottom - top));
+		}
+		return mask;
+	}
+
+	private void report(String mismatch) {
+		this.mismatches++;
+		if (this.mismatches <= 20) {
+			System.out.println(mismatch);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.AsyncFramePainter;
+import io.github.bbayu123.bkbouncingdvd.FramePainter;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.LogoSet;
+import io.github.bbayu123.bkbouncingdvd.graphics2d_version.FramePainter2D;
+import io.github.bbayu123.bkbouncingdvd.graphics2d_version.FrameRenderer;
+import io.github.bbayu123.bkbouncingdvd.mapcanvas_version.SpritePainter;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Benchmarks the painting part of an {@code onTick()} of each display variant
+ * <p>
+ * Each benchmark paints the logo with the painter the variant uses, then moves
+ * it by one step of the simulation, the way {@code BouncingDisplay} does. The
+ * bookkeeping of the display itself, e.g. picking the detail level and
+ * recording metrics, is left out, since it needs a server.
+ * <p>
+ * MapWidgets only draw inside a display attached on a server, so the
+ * {@code mapWidgetEstimateTick} benchmark only estimates that variant, see
+ * {@link WidgetPainter}. The {@code graphics2dLegacyTick} benchmark keeps the
+ * original Graphics2D path, which built a new image and texture every tick, as
+ * a reference point.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RendererBenchmark {
+	private BufferedImage logoImage;
+
+	private BounceSimulation simulation;
+	private LogoSet logos;
+	private MapTexture layer;
+	private FramePainter spritePainter;
+	private FramePainter widgetPainter;
+	private FramePainter framePainter;
+
+	private StandInDisplay display;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.logoImage = StandInDisplay.loadLogoImage();
+		Logo logo = new Logo("dvd", MapTexture.fromImage(this.logoImage));
+		int size = StandInDisplay.SIZE;
+
+		this.simulation = new BounceSimulation();
+		this.logos = LogoSet.allocate(this.simulation, 1, size, size, logo.getWidth(), logo.getHeight());
+		this.logos.setMasks(this.simulation, logo.getMask(), null);
+		this.layer = MapTexture.createEmpty(size, size);
+		int[] slots = this.logos.getSlots();
+		this.spritePainter = new SpritePainter(this.simulation, slots, logo, null);
+		this.widgetPainter = new WidgetPainter(this.simulation, slots, logo);
+		// Rendering on the calling thread, so the whole frame is measured
+		this.framePainter = new AsyncFramePainter(
+				new FramePainter2D(this.simulation, slots, size, size, logo, null, false), Runnable::run, size,
+				size);
+
+		this.display = new StandInDisplay(logo.getWidth(), logo.getHeight());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.spritePainter.dispose();
+		this.widgetPainter.dispose();
+		this.framePainter.dispose();
+	}
+
+	/**
+	 * The MapCanvas variant, painting with {@link SpritePainter}
+	 */
+	@Benchmark
+	public void mapCanvasTick(PixelCounter counter) {
+		counter.tick(this.tick(this.spritePainter));
+	}
+
+	/**
+	 * An estimate of the MapWidget variant, painting with {@link WidgetPainter}
+	 */
+	@Benchmark
+	public void mapWidgetEstimateTick(PixelCounter counter) {
+		counter.tick(this.tick(this.widgetPainter));
+	}
+
+	/**
+	 * The Graphics2D variant, painting with {@link FramePainter2D} through an
+	 * {@link AsyncFramePainter}
+	 */
+	@Benchmark
+	public void graphics2dTick(PixelCounter counter) {
+		counter.tick(this.tick(this.framePainter));
+	}
+
+	private int tick(FramePainter painter) {
+		int written = painter.paint(this.layer);
+		this.logos.touch(this.simulation);
+		this.simulation.step();
+		return written;
+	}
+
+	/**
+	 * The Graphics2D variant as it was before {@link FrameRenderer}, creating a
+	 * new frame, tinted logo and texture every tick
+	 */
+	@Benchmark
+	public void graphics2dLegacyTick(PixelCounter counter) {
+		StandInDisplay d = this.display;
+		BufferedImage master = new BufferedImage(StandInDisplay.SIZE, StandInDisplay.SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = master.createGraphics();
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, master.getWidth(), master.getHeight());
+
+		BufferedImage tinted = new BufferedImage(this.logoImage.getWidth(), this.logoImage.getHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = tinted.createGraphics();
+		g2.drawImage(this.logoImage, 0, 0, null);
+		g2.setComposite(AlphaComposite.SrcAtop);
+		g2.setColor(new Color(d.rgb));
+		g2.fillRect(0, 0, tinted.getWidth(), tinted.getHeight());
+		g2.dispose();
+
+		g.drawImage(tinted, d.positionX, d.positionY, null);
+		g.dispose();
+
+		d.layer.draw(MapTexture.fromImage(master), 0, 0);
+		d.step();
+		counter.tick((long) StandInDisplay.SIZE * StandInDisplay.SIZE);
+	}
+}
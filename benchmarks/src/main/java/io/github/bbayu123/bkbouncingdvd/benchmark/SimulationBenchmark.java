@@ -0,0 +1,79 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Benchmarks stepping many logos at once with {@link BounceSimulation}
+ * <p>
+ * Every logo is touched before each step, as if all displays were ticking. Above
+ * a few thousand logos the step is split across threads.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+	@Param({ "1", "1000", "10000", "100000" })
+	public int logos;
+
+	private BounceSimulation simulation;
+	private int[] slots;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.simulation = new BounceSimulation();
+		this.slots = new int[this.logos];
+		for (int i = 0; i < this.logos; i++) {
+			this.slots[i] = this.simulation.allocate(StandInDisplay.SIZE, StandInDisplay.SIZE, 40, 20, i);
+		}
+	}
+
+	/**
+	 * Touching and stepping every logo, as done once per server tick
+	 */
+	@Benchmark
+	public int step() {
+		for (int slot : this.slots) {
+			this.simulation.touch(slot);
+		}
+		this.simulation.step();
+		return this.simulation.getX(this.slots[0]);
+	}
+}
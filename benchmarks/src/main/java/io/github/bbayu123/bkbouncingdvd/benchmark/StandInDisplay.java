@@ -0,0 +1,120 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * A stand-in for a {@code BouncingDVD} display
+ * <p>
+ * This draws into plain {@link MapTexture}s instead of display layers, so no
+ * server is needed. The logo is moved by its own {@link BounceSimulation}, the
+ * same way the displays are moved by the plugin-wide one.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class StandInDisplay {
+	/**
+	 * The size of a single map
+	 */
+	public static final int SIZE = 128;
+
+	/**
+	 * The simulation moving the logo
+	 */
+	private final BounceSimulation simulation = new BounceSimulation();
+	/**
+	 * The slot of the logo in the simulation
+	 */
+	private final int slot;
+
+	/**
+	 * The background layer, filled with black
+	 */
+	public final MapTexture background;
+	/**
+	 * The layer the logo is drawn on
+	 */
+	public final MapTexture layer;
+
+	public int positionX;
+	public int positionY;
+	public int rgb = BounceSimulation.START_COLOR;
+	public byte color = MapColorPalette.COLOR_WHITE;
+	/**
+	 * Whether the color changed during the last step
+	 */
+	public boolean colorChanged = false;
+
+	/**
+	 * Creates a new stand-in display
+	 *
+	 * @param logoWidth  the width of the logo
+	 * @param logoHeight the height of the logo
+	 */
+	public StandInDisplay(int logoWidth, int logoHeight) {
+		this.background = MapTexture.createEmpty(StandInDisplay.SIZE, StandInDisplay.SIZE);
+		this.background.fill(MapColorPalette.COLOR_BLACK);
+		this.layer = MapTexture.createEmpty(StandInDisplay.SIZE, StandInDisplay.SIZE);
+
+		// Seeded so that every run is the same
+		this.slot = this.simulation.allocate(StandInDisplay.SIZE, StandInDisplay.SIZE, logoWidth, logoHeight, 0L);
+		this.positionX = this.simulation.getX(this.slot);
+		this.positionY = this.simulation.getY(this.slot);
+	}
+
+	/**
+	 * Moves the logo by one tick, and bounces it off the walls
+	 */
+	public void step() {
+		int bounces = this.simulation.getBounces(this.slot);
+		this.simulation.touch(this.slot);
+		this.simulation.step();
+
+		this.positionX = this.simulation.getX(this.slot);
+		this.positionY = this.simulation.getY(this.slot);
+		this.colorChanged = this.simulation.getBounces(this.slot) != bounces;
+		if (this.colorChanged) {
+			this.rgb = this.simulation.getColor(this.slot);
+			this.color = MapColorPalette.getColor((this.rgb >> 16) & 0xFF, (this.rgb >> 8) & 0xFF, this.rgb & 0xFF);
+		}
+	}
+
+	/**
+	 * Loads the DVD logo image bundled with the plugin
+	 *
+	 * @return the DVD logo image
+	 */
+	public static BufferedImage loadLogoImage() {
+		try (InputStream stream = StandInDisplay.class.getResourceAsStream("/dvd_logo.png")) {
+			return ImageIO.read(stream);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to load dvd_logo.png", e);
+		}
+	}
+}
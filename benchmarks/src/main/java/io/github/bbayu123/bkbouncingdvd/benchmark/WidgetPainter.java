@@ -0,0 +1,115 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.benchmark;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.LogoPainter;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Paints the logos the way the widgets of the MapWidget variant are redrawn
+ * <p>
+ * MapWidgets only draw inside a display that is attached on a server, so this
+ * variant cannot be run without one. This is the one painter of the benchmarks
+ * that is not the code of the plugin: like a moved widget, every logo has its
+ * old area cleared and is drawn again at its new position, with the same
+ * tinted images the widgets of the plugin draw, see {@link Logo#getTinted(int, byte)}.
+ * The logos are read from the simulation by the {@link LogoPainter} of the
+ * plugin.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class WidgetPainter extends LogoPainter {
+	private final Logo logo;
+	private final MapCanvas[] images;
+	private final byte[] colors;
+	private final int[] lastX;
+	private final int[] lastY;
+	private final DirtyRegion dirty = new DirtyRegion();
+	private int frame = 0;
+
+	/**
+	 * Creates a new painter
+	 *
+	 * @param simulation the simulation moving the logos
+	 * @param slots      the slots of the logos in the simulation
+	 * @param logo       the logo to draw
+	 */
+	WidgetPainter(BounceSimulation simulation, int[] slots, Logo logo) {
+		super(simulation, slots);
+		this.logo = logo;
+		this.images = new MapCanvas[slots.length];
+		this.colors = new byte[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			// Like a widget, untinted until the logo first bounces
+			this.colors[i] = MapColorPalette.COLOR_TRANSPARENT;
+			this.images[i] = logo.getFrame(0);
+		}
+		this.lastX = new int[slots.length];
+		this.lastY = new int[slots.length];
+	}
+
+	@Override
+	public int render(MapCanvas canvas) {
+		int frame = this.logo.getFrameIndex(this.getCapturedStep());
+		boolean frameChanged = frame != this.frame;
+		this.frame = frame;
+
+		this.dirty.clear();
+		canvas.setBlendMode(MapBlendMode.NONE);
+		int written = 0;
+		for (int i = 0; i < this.images.length; i++) {
+			if (this.pollColorChange(i)) {
+				int rgb = this.getLogoColor(i);
+				this.colors[i] = MapColorPalette.getColor((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+				this.images[i] = this.logo.getTinted(frame, this.colors[i]);
+			} else if (frameChanged) {
+				this.images[i] = this.colors[i] == MapColorPalette.COLOR_TRANSPARENT ? this.logo.getFrame(frame)
+						: this.logo.getTinted(frame, this.colors[i]);
+			}
+			int width = this.images[i].getWidth();
+			int height = this.images[i].getHeight();
+			canvas.fillRectangle(this.lastX[i], this.lastY[i], width, height, MapColorPalette.COLOR_TRANSPARENT);
+			this.dirty.include(this.lastX[i], this.lastY[i], width, height);
+			written += width * height;
+		}
+		canvas.setBlendMode(MapBlendMode.OVERLAY);
+		for (int i = 0; i < this.images.length; i++) {
+			int width = this.images[i].getWidth();
+			int height = this.images[i].getHeight();
+			canvas.draw(this.images[i], this.getLogoX(i), this.getLogoY(i));
+			this.dirty.include(this.getLogoX(i), this.getLogoY(i), width, height);
+			this.lastX[i] = this.getLogoX(i);
+			this.lastY[i] = this.getLogoY(i);
+			written += width * height;
+		}
+		this.dirty.clip(canvas.getWidth(), canvas.getHeight());
+		return written;
+	}
+
+	@Override
+	public DirtyRegion getDirtyRegion() {
+		return this.dirty;
+	}
+}
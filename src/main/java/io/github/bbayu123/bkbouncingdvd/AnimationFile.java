@@ -0,0 +1,392 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+
+import org.w3c.dom.Node;
+
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * Reads and writes animated logos converted to map colors
+ * <p>
+ * An animation file is the animated counterpart of a {@link SpriteFile}. GIF
+ * images are converted into it one frame at a time, so only a single frame is
+ * ever decoded in memory. Afterwards, the frames are read back one at a time
+ * when they are needed, see {@link FrameCache}.
+ * <p>
+ * The layout of an animation file is
+ * <ol>
+ * <li>the 4 bytes {@code BDVA}</li>
+ * <li>the version of the layout, 1 byte</li>
+ * <li>the hash of the source image, 32 bytes</li>
+ * <li>the width, height and number of frames, 2 bytes each</li>
+ * <li>the colors of the pixels of every frame, one byte each, row by row</li>
+ * <li>the number of ticks every frame is shown for, 2 bytes each</li>
+ * </ol>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class AnimationFile {
+	/**
+	 * The largest number of frames an animation may have
+	 */
+	public static final int MAX_FRAMES = 512;
+
+	private static final byte[] MAGIC = "BDVA".getBytes(StandardCharsets.US_ASCII);
+	private static final byte VERSION = 1;
+	private static final int HASH_LENGTH = 32;
+	private static final int HEADER_LENGTH = AnimationFile.MAGIC.length + 1 + AnimationFile.HASH_LENGTH + 2 + 2 + 2;
+	/**
+	 * Where the number of frames is in the header
+	 */
+	private static final int FRAME_COUNT_OFFSET = AnimationFile.HEADER_LENGTH - 2;
+
+	/**
+	 * The number of ticks a frame without a delay is shown for, which is what
+	 * web browsers do as well
+	 */
+	private static final int DEFAULT_DELAY_TICKS = 2;
+
+	private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+	private static final String GIF_IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+	private final Path file;
+	private final int width;
+	private final int height;
+	private final int[] delays;
+
+	private AnimationFile(Path file, int width, int height, int[] delays) {
+		this.file = file;
+		this.width = width;
+		this.height = height;
+		this.delays = delays;
+	}
+
+	/**
+	 * Opens an animation file, if it was converted from the given source image
+	 * <p>
+	 * Only the header and the delays are read.
+	 *
+	 * @param file the animation file
+	 * @param hash the hash of the source image, see {@link SpriteFile#hash(byte[])}
+	 * @return the animation, or {@code null} if the file does not exist, is
+	 *         damaged, or was converted from a different image
+	 * @throws IOException if the file could not be read
+	 */
+	public static AnimationFile open(Path file, byte[] hash) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(AnimationFile.HEADER_LENGTH);
+			if (AnimationFile.readFully(channel, buffer, 0) < AnimationFile.HEADER_LENGTH) {
+				return null;
+			}
+			buffer.flip();
+
+			byte[] magic = new byte[AnimationFile.MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, AnimationFile.MAGIC) || buffer.get() != AnimationFile.VERSION) {
+				return null;
+			}
+			byte[] storedHash = new byte[AnimationFile.HASH_LENGTH];
+			buffer.get(storedHash);
+			if (!Arrays.equals(storedHash, hash)) {
+				return null;
+			}
+
+			int width = Short.toUnsignedInt(buffer.getShort());
+			int height = Short.toUnsignedInt(buffer.getShort());
+			int frameCount = Short.toUnsignedInt(buffer.getShort());
+			long framesLength = (long) width * height * frameCount;
+			if (width == 0 || height == 0 || frameCount == 0
+					|| channel.size() != AnimationFile.HEADER_LENGTH + framesLength + 2L * frameCount) {
+				return null;
+			}
+
+			ByteBuffer delayBuffer = ByteBuffer.allocate(2 * frameCount);
+			AnimationFile.readFully(channel, delayBuffer, AnimationFile.HEADER_LENGTH + framesLength);
+			delayBuffer.flip();
+			int[] delays = new int[frameCount];
+			for (int i = 0; i < frameCount; i++) {
+				delays[i] = Math.max(1, Short.toUnsignedInt(delayBuffer.getShort()));
+			}
+			return new AnimationFile(file, width, height, delays);
+		}
+	}
+
+	/**
+	 * Converts a GIF image to an animation file
+	 * <p>
+	 * The frames are decoded, drawn over what the frames before them left, and
+	 * converted to map colors one by one, and written as soon as they are
+	 * converted. The file is only put in place once all frames are written.
+	 *
+	 * @param source  the bytes of the GIF image
+	 * @param file    the animation file
+	 * @param hash    the hash of the source image
+	 * @param maxSize the largest width or height the image may have
+	 * @return the animation
+	 * @throws IOException              if the file could not be written
+	 * @throws IllegalArgumentException if the image is not a readable GIF image,
+	 *                                  or is too big
+	 */
+	public static AnimationFile convert(byte[] source, Path file, byte[] hash, int maxSize) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+			if (input == null || !readers.hasNext()) {
+				throw new IllegalArgumentException("Not a readable image");
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true);
+				return AnimationFile.convert(reader, file, hash, maxSize);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private static AnimationFile convert(ImageReader reader, Path file, byte[] hash, int maxSize) throws IOException {
+		int width;
+		int height;
+		Node screen = AnimationFile.findNode(reader.getStreamMetadata(), AnimationFile.GIF_STREAM_FORMAT,
+				"LogicalScreenDescriptor");
+		if (screen != null) {
+			width = AnimationFile.getIntAttribute(screen, "logicalScreenWidth");
+			height = AnimationFile.getIntAttribute(screen, "logicalScreenHeight");
+		} else {
+			width = reader.getWidth(0);
+			height = reader.getHeight(0);
+		}
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Not a readable image");
+		}
+		if (width > maxSize || height > maxSize) {
+			throw new IllegalArgumentException("Logos can be at most " + maxSize + " pixels wide and high");
+		}
+
+		BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = canvas.createGraphics();
+		int[] delays = new int[AnimationFile.MAX_FRAMES];
+		int frameCount = 0;
+
+		Files.createDirectories(file.getParent());
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer header = ByteBuffer.allocate(AnimationFile.HEADER_LENGTH);
+			header.put(AnimationFile.MAGIC);
+			header.put(AnimationFile.VERSION);
+			header.put(hash);
+			header.putShort((short) width);
+			header.putShort((short) height);
+			header.putShort((short) 0);
+			header.flip();
+			AnimationFile.writeFully(channel, header);
+
+			// What to do with the previous frame before drawing the next one
+			String disposal = "none";
+			int disposeX = 0;
+			int disposeY = 0;
+			int disposeWidth = 0;
+			int disposeHeight = 0;
+			BufferedImage previous = null;
+
+			for (int index = 0;; index++) {
+				BufferedImage frame;
+				IIOMetadata metadata;
+				try {
+					frame = reader.read(index);
+					metadata = reader.getImageMetadata(index);
+				} catch (IndexOutOfBoundsException e) {
+					break;
+				}
+				if (frameCount == AnimationFile.MAX_FRAMES) {
+					throw new IllegalArgumentException(
+							"Animated logos can have at most " + AnimationFile.MAX_FRAMES + " frames");
+				}
+
+				if (disposal.equals("restoreToBackgroundColor")) {
+					graphics.setComposite(AlphaComposite.Clear);
+					graphics.fillRect(disposeX, disposeY, disposeWidth, disposeHeight);
+				} else if (disposal.equals("restoreToPrevious") && previous != null) {
+					graphics.setComposite(AlphaComposite.Src);
+					graphics.drawImage(previous, 0, 0, null);
+				}
+
+				Node descriptor = AnimationFile.findNode(metadata, AnimationFile.GIF_IMAGE_FORMAT, "ImageDescriptor");
+				Node control = AnimationFile.findNode(metadata, AnimationFile.GIF_IMAGE_FORMAT,
+						"GraphicControlExtension");
+				disposal = control != null ? control.getAttributes().getNamedItem("disposalMethod").getNodeValue()
+						: "none";
+				if (disposal.equals("restoreToPrevious")) {
+					previous = AnimationFile.copy(canvas, previous);
+				}
+				disposeX = descriptor != null ? AnimationFile.getIntAttribute(descriptor, "imageLeftPosition") : 0;
+				disposeY = descriptor != null ? AnimationFile.getIntAttribute(descriptor, "imageTopPosition") : 0;
+				disposeWidth = frame.getWidth();
+				disposeHeight = frame.getHeight();
+
+				graphics.setComposite(AlphaComposite.SrcOver);
+				graphics.drawImage(frame, disposeX, disposeY, null);
+
+				// GIF delays are in hundredths of a second, a tick is 5 of them
+				int delay = control != null ? AnimationFile.getIntAttribute(control, "delayTime") : 0;
+				delays[frameCount++] = delay == 0 ? AnimationFile.DEFAULT_DELAY_TICKS : Math.max(1, (delay + 2) / 5);
+				AnimationFile.writeFully(channel, ByteBuffer.wrap(MapTexture.fromImage(canvas).getBuffer()));
+			}
+			if (frameCount == 0) {
+				throw new IllegalArgumentException("Not a readable image");
+			}
+
+			ByteBuffer delayBuffer = ByteBuffer.allocate(2 * frameCount);
+			for (int i = 0; i < frameCount; i++) {
+				delayBuffer.putShort((short) delays[i]);
+			}
+			delayBuffer.flip();
+			AnimationFile.writeFully(channel, delayBuffer);
+
+			ByteBuffer count = ByteBuffer.allocate(2);
+			count.putShort((short) frameCount);
+			count.flip();
+			channel.write(count, AnimationFile.FRAME_COUNT_OFFSET);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		} finally {
+			graphics.dispose();
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return new AnimationFile(file, width, height, Arrays.copyOf(delays, frameCount));
+	}
+
+	/**
+	 * Reads a single frame of the animation
+	 *
+	 * @param index the index of the frame
+	 * @return the frame in map colors
+	 * @throws IOException if the file could not be read
+	 */
+	public MapTexture readFrame(int index) throws IOException {
+		int frameLength = this.width * this.height;
+		ByteBuffer buffer = ByteBuffer.allocate(frameLength);
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			if (AnimationFile.readFully(channel, buffer,
+					AnimationFile.HEADER_LENGTH + (long) index * frameLength) < frameLength) {
+				throw new IOException("Animation file " + this.file + " was cut short");
+			}
+		}
+		return MapTexture.fromRawData(this.width, this.height, buffer.array());
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int getFrameCount() {
+		return this.delays.length;
+	}
+
+	/**
+	 * Gets the number of ticks a frame is shown for
+	 *
+	 * @param index the index of the frame
+	 * @return the number of ticks, at least {@code 1}
+	 */
+	public int getDelay(int index) {
+		return this.delays[index];
+	}
+
+	private static Node findNode(IIOMetadata metadata, String format, String name) {
+		if (metadata == null) {
+			return null;
+		}
+		for (String supported : metadata.getMetadataFormatNames()) {
+			if (supported.equals(format)) {
+				for (Node node = metadata.getAsTree(format).getFirstChild(); node != null; node = node
+						.getNextSibling()) {
+					if (node.getNodeName().equals(name)) {
+						return node;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static int getIntAttribute(Node node, String name) {
+		Node attribute = node.getAttributes().getNamedItem(name);
+		return attribute == null ? 0 : Integer.parseInt(attribute.getNodeValue());
+	}
+
+	private static BufferedImage copy(BufferedImage image, BufferedImage target) {
+		if (target == null) {
+			target = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		}
+		Graphics2D graphics = target.createGraphics();
+		graphics.setComposite(AlphaComposite.Src);
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return target;
+	}
+
+	private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
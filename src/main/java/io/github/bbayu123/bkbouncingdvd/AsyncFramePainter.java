@@ -0,0 +1,167 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * Renders the frames of a {@link LogoPainter} on worker threads
+ * <p>
+ * The logos are rendered into a back buffer off the main thread. Each call to
+ * {@link #paint(MapCanvas)} writes the region of the back buffer changed by the
+ * last finished render to the canvas, then captures the logos and starts the
+ * next render. Frames therefore show up one tick late.
+ * <p>
+ * If the render started on the previous tick has not finished yet, nothing is
+ * written, and no new render is started. The logos keep moving in the
+ * meantime, so a slow render drops frames instead of holding up the server.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class AsyncFramePainter implements FramePainter {
+	/**
+	 * The painter rendering the frames
+	 */
+	private final LogoPainter painter;
+
+	/**
+	 * The executor running the renders
+	 */
+	private final Executor executor;
+
+	/**
+	 * The back buffer the frames are rendered into
+	 */
+	private final MapTexture back;
+
+	/**
+	 * The region of the back buffer changed by the last render
+	 * <p>
+	 * This is written by the worker thread, and only read after the render
+	 * finished.
+	 */
+	private final DirtyRegion rendered = new DirtyRegion();
+
+	/**
+	 * Holds the pixels of a single tile while they are copied
+	 */
+	private final byte[] tilePixels = new byte[DirtyRegion.TILE_SIZE * DirtyRegion.TILE_SIZE];
+
+	/**
+	 * The region written to the canvas by the last call to
+	 * {@link #paint(MapCanvas)}
+	 */
+	private final DirtyRegion dirty = new DirtyRegion();
+
+	/**
+	 * The render currently running, or {@code null} if there is none
+	 */
+	private CompletableFuture<Void> pending = null;
+
+	/**
+	 * The number of frames dropped because the render was not finished in time
+	 */
+	private long droppedFrames = 0;
+
+	/**
+	 * Creates a new asynchronous painter
+	 *
+	 * @param painter  the painter rendering the frames
+	 * @param executor the executor to run the renders on
+	 * @param width    the width of the frames
+	 * @param height   the height of the frames
+	 */
+	public AsyncFramePainter(LogoPainter painter, Executor executor, int width, int height) {
+		this.painter = painter;
+		this.executor = executor;
+		this.back = MapTexture.createEmpty(width, height);
+	}
+
+	@Override
+	public int paint(MapCanvas canvas) {
+		this.dirty.clear();
+		int written = 0;
+		if (this.pending != null) {
+			if (!this.pending.isDone()) {
+				this.droppedFrames++;
+				return 0;
+			}
+			try {
+				this.pending.join();
+				written = this.present(canvas);
+			} catch (CompletionException e) {
+				e.getCause().printStackTrace();
+			}
+			this.pending = null;
+		}
+
+		this.painter.capture();
+		this.pending = CompletableFuture.runAsync(this::renderBack, this.executor);
+		return written;
+	}
+
+	@Override
+	public DirtyRegion getDirtyRegion() {
+		return this.dirty;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If a render is still running, the painter is disposed once it finishes.
+	 */
+	@Override
+	public void dispose() {
+		if (this.pending != null) {
+			this.pending.whenComplete((result, error) -> this.painter.dispose());
+			this.pending = null;
+		} else {
+			this.painter.dispose();
+		}
+	}
+
+	/**
+	 * Gets the number of frames dropped because the render was not finished in
+	 * time
+	 *
+	 * @return the number of dropped frames
+	 */
+	public long getDroppedFrames() {
+		return this.droppedFrames;
+	}
+
+	private void renderBack() {
+		this.painter.render(this.back);
+		this.rendered.clear();
+		this.rendered.include(this.painter.getDirtyRegion());
+	}
+
+	private int present(MapCanvas canvas) {
+		// The next render only starts after this, so the back buffer can be read
+		canvas.setBlendMode(MapBlendMode.NONE);
+		this.dirty.include(this.rendered);
+		return this.rendered.copy(this.back.getBuffer(), this.back.getWidth(), canvas, this.tilePixels);
+	}
+}
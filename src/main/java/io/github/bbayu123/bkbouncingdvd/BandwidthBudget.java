@@ -0,0 +1,233 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Limits how many bytes of map updates every player is sent per tick
+ * <p>
+ * Displays ask the budget before they paint a frame that is due, see
+ * {@link #schedule(Object, List, double, boolean, int)}. The frame is granted
+ * right away if none of the viewers of the display goes over their budget for
+ * this tick. Otherwise it waits, and once per tick the budget grants the
+ * waiting frames for the next tick, most important first, before any new
+ * frames are asked for.
+ * <p>
+ * The priority of a waiting frame is the number of bytes it changes, divided
+ * by the distance to its nearest viewer, and it grows with every tick the
+ * frame waits, so every display is painted eventually. A player that was
+ * granted nothing yet is always granted the next frame they view, no matter
+ * how big it is.
+ * <p>
+ * Waiting loses nothing, since painters always write the region the logos
+ * left since their last frame, and displays of a broadcast group copy the
+ * whole frame if they missed one.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class BandwidthBudget implements Runnable {
+	/**
+	 * The bytes every player may be sent per tick, {@code 0} for no limit
+	 */
+	private final int bytesPerTick;
+
+	/**
+	 * The frames that are waiting, by display
+	 */
+	private final Map<Object, Request> requests = new HashMap<>();
+
+	/**
+	 * The displays granted a waiting frame for this tick
+	 */
+	private final Set<Object> granted = new HashSet<>();
+
+	/**
+	 * The bytes granted to each viewer this tick
+	 */
+	private final Map<Object, Integer> spent = new HashMap<>();
+
+	/**
+	 * The number of frames that had to wait on the last tick
+	 */
+	private int waiting = 0;
+
+	/**
+	 * Creates a new budget
+	 *
+	 * @param bytesPerTick the bytes every player may be sent per tick, {@code 0}
+	 *                     for no limit
+	 */
+	public BandwidthBudget(int bytesPerTick) {
+		this.bytesPerTick = bytesPerTick;
+	}
+
+	/**
+	 * Checks whether a display may paint on this tick
+	 * <p>
+	 * A frame that is due, or that is still waiting, is granted if it fits in
+	 * the budget of every viewer, and waits otherwise.
+	 * <p>
+	 * This should be called on every tick of the display, or its waiting frame
+	 * is dropped.
+	 *
+	 * @param display  the display
+	 * @param viewers  the players viewing the display
+	 * @param distance the distance in blocks from the display to its nearest
+	 *                 viewer, see {@link ItemFrameTracker#getDistance(java.util.UUID, java.util.List)}
+	 * @param due      {@code true} if a frame of the display is due
+	 * @param bytes    the number of bytes the frame changes, about one per pixel
+	 * @return {@code true} if the display may paint, always the same as
+	 *         {@code due} if there is no limit
+	 */
+	public boolean schedule(Object display, List<?> viewers, double distance, boolean due, int bytes) {
+		if (this.bytesPerTick == 0) {
+			return due;
+		}
+		if (this.granted.remove(display)) {
+			return true;
+		}
+		Request request = this.requests.get(display);
+		if (request == null && !due) {
+			return false;
+		}
+		int frameBytes = request != null ? Math.max(request.bytes, bytes) : bytes;
+		if (this.fits(viewers, frameBytes)) {
+			this.spend(viewers, frameBytes);
+			this.requests.remove(display);
+			return true;
+		}
+		if (request == null) {
+			request = new Request();
+			this.requests.put(display, request);
+		}
+		request.viewers = viewers;
+		request.distance = distance;
+		request.bytes = frameBytes;
+		request.seen = true;
+		return false;
+	}
+
+	/**
+	 * Drops the frame a display is waiting with, e.g. because it was detached
+	 *
+	 * @param display the display
+	 */
+	public void cancel(Object display) {
+		this.requests.remove(display);
+		this.granted.remove(display);
+	}
+
+	/**
+	 * Starts the budget of the next tick, and grants the waiting frames as far
+	 * as it allows
+	 * <p>
+	 * This must be run once every tick.
+	 */
+	@Override
+	public void run() {
+		// Grants that were not used belong to displays that stopped ticking
+		this.granted.clear();
+		this.spent.clear();
+		if (this.requests.isEmpty()) {
+			this.waiting = 0;
+			return;
+		}
+
+		List<Map.Entry<Object, Request>> ranked = new ArrayList<>(this.requests.size());
+		for (Iterator<Map.Entry<Object, Request>> iterator = this.requests.entrySet().iterator(); iterator
+				.hasNext();) {
+			Map.Entry<Object, Request> entry = iterator.next();
+			Request request = entry.getValue();
+			if (!request.seen) {
+				iterator.remove();
+				continue;
+			}
+			request.priority = request.bytes * (double) (request.waited + 1) / (request.distance + 1.0);
+			ranked.add(entry);
+		}
+		ranked.sort((a, b) -> Double.compare(b.getValue().priority, a.getValue().priority));
+
+		for (Map.Entry<Object, Request> entry : ranked) {
+			Request request = entry.getValue();
+			if (this.fits(request.viewers, request.bytes)) {
+				this.spend(request.viewers, request.bytes);
+				this.granted.add(entry.getKey());
+				this.requests.remove(entry.getKey());
+			} else {
+				request.waited++;
+				request.seen = false;
+			}
+		}
+		this.waiting = this.requests.size();
+	}
+
+	/**
+	 * Gets the number of frames that had to wait for a later tick on the last
+	 * tick
+	 *
+	 * @return the number of frames
+	 */
+	public int getWaiting() {
+		return this.waiting;
+	}
+
+	/**
+	 * Gets the bytes every player may be sent per tick
+	 *
+	 * @return the bytes, {@code 0} if there is no limit
+	 */
+	public int getBytesPerTick() {
+		return this.bytesPerTick;
+	}
+
+	private boolean fits(List<?> viewers, int bytes) {
+		for (Object viewer : viewers) {
+			int spent = this.spent.getOrDefault(viewer, 0);
+			if (spent != 0 && spent + bytes > this.bytesPerTick) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void spend(List<?> viewers, int bytes) {
+		for (Object viewer : viewers) {
+			this.spent.merge(viewer, bytes, Integer::sum);
+		}
+	}
+
+	/**
+	 * A frame that is waiting
+	 */
+	private static final class Request {
+		private List<?> viewers;
+		private double distance;
+		private int bytes;
+		private int waited = 0;
+		private boolean seen = true;
+		private double priority = 0.0;
+	}
+}
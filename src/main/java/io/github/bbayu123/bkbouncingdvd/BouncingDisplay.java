@@ -0,0 +1,605 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.function.Function;
+
+import org.bukkit.Bukkit;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapDisplay;
+
+import io.github.bbayu123.bkbouncingdvd.event.LogoBounceEvent;
+import io.github.bbayu123.bkbouncingdvd.event.LogoCornerHitEvent;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * The base class of the bouncing DVD displays
+ * <p>
+ * The logos of a display are moved by the plugin-wide {@link BounceSimulation},
+ * this class only keeps track of which logos belong to the display. The
+ * displays themselves only need to draw the logos where the simulation put
+ * them, usually with a {@link FramePainter}.
+ * <p>
+ * The number of logos is read from the {@code logos} property, see
+ * {@link #getLogoCountProperty()}. If the {@code group} property is set, the
+ * display joins the {@link BroadcastGroup} of that name instead of having logos
+ * of its own.
+ * <p>
+ * The logos bounce with their opaque pixels, and off the {@link Obstacle} set
+ * with the {@code obstacle} property, if any.
+ * <p>
+ * The logos are put back where they were when the display is attached again,
+ * e.g. after a restart, see {@link StateJournal}. What each display costs is
+ * measured by its {@link DisplayMetrics}.
+ * <p>
+ * When a logo bounces off the walls, a {@link LogoBounceEvent} is called, and
+ * a {@link LogoCornerHitEvent} if it hit a corner. Plugins can also ask when
+ * the next bounce happens, see {@link #getTicksUntilBounce(int)}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public abstract class BouncingDisplay extends MapDisplay {
+	/**
+	 * The name of the property holding the number of logos
+	 */
+	public static final String LOGOS_PROPERTY = "logos";
+	/**
+	 * The name of the property holding the name of the broadcast group
+	 */
+	public static final String GROUP_PROPERTY = "group";
+	/**
+	 * The name of the property holding the name of the logo
+	 */
+	public static final String LOGO_PROPERTY = "logo";
+	/**
+	 * The name of the property holding whether frames are dithered, only used by
+	 * displays that convert frames to map colors
+	 */
+	public static final String DITHER_PROPERTY = "dither";
+	/**
+	 * The name of the property holding whether every viewer gets a display of
+	 * their own, with their own logos
+	 */
+	public static final String PERSONAL_PROPERTY = "personal";
+	/**
+	 * The name of the property holding the name of the logo drawn as an obstacle
+	 */
+	public static final String OBSTACLE_PROPERTY = "obstacle";
+
+	/**
+	 * The number of ticks between picks of the detail level, see
+	 * {@link DetailLevel}
+	 */
+	private static final int DETAIL_INTERVAL = 20;
+
+	/**
+	 * The logos of this display, if it is not in a broadcast group
+	 */
+	private LogoSet logos = null;
+
+	/**
+	 * The broadcast group of this display, if it is in one
+	 */
+	private BroadcastGroup broadcast = null;
+
+	/**
+	 * The slots of the logos in the simulation
+	 */
+	private int[] slots = new int[0];
+
+	/**
+	 * The number of bounces of each logo seen by {@link #pollColorChange(int)}
+	 */
+	private int[] seenBounces = new int[0];
+
+	/**
+	 * Paints the logos of this display, if it is not in a broadcast group
+	 */
+	private FramePainter painter = null;
+
+	/**
+	 * The simulation step this display last copied a broadcast frame at
+	 */
+	private long copiedStep = -1;
+
+	/**
+	 * The area changed by the last frame painted, or {@code -1} if none was
+	 * painted yet
+	 */
+	private int frameArea = -1;
+	/**
+	 * The area covered by all logos, for displays that draw the logos themselves
+	 */
+	private int logoArea = 0;
+
+	/**
+	 * The size of the display when the logos were attached
+	 */
+	private int attachedWidth = 0;
+	private int attachedHeight = 0;
+
+	/**
+	 * Measures what this display costs, created when the logos are first
+	 * attached
+	 */
+	private DisplayMetrics metrics = null;
+
+	/**
+	 * How often this display is painted, depending on how far away its viewers
+	 * are
+	 */
+	private DetailLevel detail = DetailLevel.FULL;
+	/**
+	 * The distance in blocks to the nearest viewer, measured whenever the
+	 * detail level is picked
+	 */
+	private double viewerDistance = 0.0;
+	/**
+	 * The simulation step the detail level was last picked at
+	 */
+	private long detailStep = -1;
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * We use this method to remove the logos from the simulation, and to stop
+	 * showing the metrics of this display.
+	 */
+	@Override
+	public void onDetached() {
+		this.detachLogos();
+		if (this.metrics != null) {
+			this.metrics.detach();
+		}
+	}
+
+	/**
+	 * Adds the logos of this display to the simulation
+	 * <p>
+	 * This should be called from {@link #onAttached()}. See {@link LogoSet#allocate(BounceSimulation, int, int, int, int, int)
+	 * LogoSet.allocate} for where the logos start.
+	 * <p>
+	 * If this display is in a broadcast group, it shares the logos and painter of
+	 * the group instead.
+	 *
+	 * @param count          the number of logos
+	 * @param logo           the logo
+	 * @param obstacle       the obstacle the logos bounce off, or {@code null} if
+	 *                       there is none, see {@link #getObstacleProperty()}
+	 * @param painterFactory creates the painter from the slots of the logos, or
+	 *                       {@code null} if the display draws the logos itself
+	 */
+	protected final void attachLogos(int count, Logo logo, Obstacle obstacle,
+			Function<int[], FramePainter> painterFactory) {
+		this.detachLogos();
+
+		String groupName = this.isPersonalProperty() ? null
+				: this.properties.get(BouncingDisplay.GROUP_PROPERTY, String.class);
+		if (groupName != null) {
+			this.broadcast = BroadcastGroup.join(this.getClass(), groupName, count, this.getWidth(), this.getHeight(),
+					logo, obstacle, painterFactory);
+			this.slots = this.broadcast.getLogos().getSlots();
+		} else {
+			this.logos = LogoSet.allocate(Main.getSimulation(), count, this.getWidth(), this.getHeight(),
+					logo.getWidth(), logo.getHeight());
+			this.logos.setMasks(Main.getSimulation(), logo.getMask(), obstacle == null ? null : obstacle.getMask());
+			// Every viewer of a personal display has the same map item, so their
+			// logos cannot be told apart in the journal
+			if (!this.isPersonalProperty()) {
+				Main.getStateJournal().track(this.properties.getUniqueId(), this.logos);
+			}
+			this.slots = this.logos.getSlots();
+			this.painter = painterFactory == null ? null : painterFactory.apply(this.slots);
+		}
+		this.seenBounces = new int[this.slots.length];
+		this.logoArea = this.slots.length * logo.getWidth() * logo.getHeight();
+		this.attachedWidth = this.getWidth();
+		this.attachedHeight = this.getHeight();
+
+		if (this.metrics == null) {
+			this.metrics = new DisplayMetrics(this.getMetricsName(groupName));
+		}
+		this.metrics.attach();
+	}
+
+	/**
+	 * Starts the display over if its size changed since the logos were attached
+	 * <p>
+	 * This happens when frames holding the same map item are placed next to the
+	 * frame it is in, and BKCommonLib joins them into one bigger display. The
+	 * logos need new bounds, and the painters need buffers of the new size, so
+	 * the display is simply detached and attached again with cleared layers.
+	 * <p>
+	 * This should be called at the start of {@link #onTick()}.
+	 *
+	 * @return {@code true} if the display was started over
+	 */
+	protected final boolean restartIfResized() {
+		if (this.getWidth() == this.attachedWidth && this.getHeight() == this.attachedHeight) {
+			return false;
+		}
+		this.onDetached();
+		this.clearWidgets();
+		for (int z = -1; z <= 0; z++) {
+			this.getLayer(z).setBlendMode(MapBlendMode.NONE);
+			this.getLayer(z).fillRectangle(0, 0, this.getWidth(), this.getHeight(), MapColorPalette.COLOR_TRANSPARENT);
+		}
+		this.onAttached();
+		return true;
+	}
+
+	/**
+	 * Gets the number of logos this display was created with
+	 * <p>
+	 * This is the {@code logos} property given to the map item when it was
+	 * created, or {@code 1} if there is none.
+	 *
+	 * @return the number of logos
+	 */
+	protected final int getLogoCountProperty() {
+		return Math.max(this.properties.get(BouncingDisplay.LOGOS_PROPERTY, 1), 1);
+	}
+
+	/**
+	 * Gets the logo this display was created with
+	 * <p>
+	 * This is the {@code logo} property given to the map item when it was
+	 * created. If there is none, or the logo no longer exists, this is the
+	 * {@link LogoLibrary#getDefault() default logo}.
+	 *
+	 * @return the logo
+	 */
+	protected final Logo getLogoProperty() {
+		String name = this.properties.get(BouncingDisplay.LOGO_PROPERTY, String.class);
+		Logo logo = name == null ? null : Main.getLogoLibrary().get(name);
+		return logo != null ? logo : Main.getLogoLibrary().getDefault();
+	}
+
+	/**
+	 * Gets the obstacle this display was created with
+	 * <p>
+	 * This is the logo named by the {@code obstacle} property given to the map
+	 * item when it was created, placed in the middle of the display. The display
+	 * should draw it on its background with {@link Obstacle#draw(MapCanvas)}.
+	 *
+	 * @return the obstacle, or {@code null} if there is none, or the logo no
+	 *         longer exists
+	 */
+	protected final Obstacle getObstacleProperty() {
+		String name = this.properties.get(BouncingDisplay.OBSTACLE_PROPERTY, String.class);
+		Logo logo = name == null ? null : Main.getLogoLibrary().get(name);
+		return logo == null ? null : new Obstacle(logo, this.getWidth(), this.getHeight());
+	}
+
+	/**
+	 * Checks whether every viewer gets a display of their own
+	 * <p>
+	 * This is the {@code personal} property given to the map item when it was
+	 * created. Personal displays are not {@link #setGlobal(boolean) global}, so
+	 * BKCommonLib creates a separate display for every player viewing the map,
+	 * each with its own logos. They are not saved in the {@link StateJournal},
+	 * and they cannot be in a broadcast group.
+	 *
+	 * @return {@code true} if the display is personal
+	 */
+	protected final boolean isPersonalProperty() {
+		return this.properties.get(BouncingDisplay.PERSONAL_PROPERTY, false);
+	}
+
+	private String getMetricsName(String groupName) {
+		// e.g. mapcanvas 1b4e28ba@lobby
+		String kind = this.getClass().getPackage().getName();
+		kind = kind.substring(kind.lastIndexOf('.') + 1).replace("_version", "");
+		String id = String.valueOf(this.properties.getUniqueId()).substring(0, 8);
+		return kind + ' ' + id + (groupName != null ? "@" + groupName : "");
+	}
+
+	private void detachLogos() {
+		if (this.broadcast != null) {
+			this.broadcast.leave();
+			this.broadcast = null;
+		}
+		if (this.logos != null) {
+			if (!this.isPersonalProperty()) {
+				Main.getStateJournal().untrack(this.properties.getUniqueId(), this.logos);
+			}
+			this.logos.free(Main.getSimulation());
+			this.logos = null;
+		}
+		if (this.painter != null) {
+			this.painter.dispose();
+			this.painter = null;
+		}
+		this.slots = new int[0];
+		this.seenBounces = new int[0];
+		this.copiedStep = -1;
+		this.frameArea = -1;
+		Main.getBandwidthBudget().cancel(this);
+	}
+
+	/**
+	 * Checks whether the display should be painted on this tick
+	 * <p>
+	 * While the server is struggling, displays are painted less often, see
+	 * {@link FrameRateScheduler}. The displays of a broadcast group are all
+	 * painted on the same ticks.
+	 * <p>
+	 * Displays far away from their viewers are painted less often, or not at all,
+	 * see {@link DetailLevel}. The level is picked again every
+	 * {@value #DETAIL_INTERVAL} ticks.
+	 * <p>
+	 * Frames that are due are only painted once the viewers have the bandwidth
+	 * for them, see {@link BandwidthBudget}.
+	 *
+	 * @return {@code true} if the display should be painted
+	 */
+	protected final boolean isFrameDue() {
+		Object phase = this.broadcast != null ? this.broadcast : this;
+		this.updateDetail();
+		if (this.detail == DetailLevel.FROZEN) {
+			return false;
+		}
+		boolean due = Main.getFrameRateScheduler().isFrameDue(System.identityHashCode(phase),
+				this.detail.getDivisor());
+		return Main.getBandwidthBudget().schedule(this, this.getViewers(), this.viewerDistance, due,
+				this.estimateFrameArea());
+	}
+
+	private int estimateFrameArea() {
+		int fullArea = this.getWidth() * this.getHeight();
+		// A display of a broadcast group that missed a frame of the group copies
+		// the whole frame, see BroadcastGroup#copyFrame
+		if (this.broadcast != null && this.copiedStep != this.broadcast.getPaintedStep()) {
+			return fullArea;
+		}
+		if (this.frameArea != -1) {
+			return Math.max(this.frameArea, 1);
+		}
+		// Logos drawn by the display itself change where they were and where
+		// they are now
+		return this.painter == null && this.broadcast == null ? Math.min(2 * this.logoArea, fullArea) : fullArea;
+	}
+
+	private void updateDetail() {
+		long step = Main.getSimulation().getStepCount();
+		// Pick a level right away when the display starts ticking (again), and
+		// otherwise on a tick of its own, so not all displays pick on the same tick
+		if (this.detailStep != -1 && step - this.detailStep < BouncingDisplay.DETAIL_INTERVAL
+				&& Math.floorMod(step + System.identityHashCode(this), BouncingDisplay.DETAIL_INTERVAL) != 0) {
+			return;
+		}
+		this.detailStep = step;
+		this.detail = Main.getItemFrameTracker().getDetailLevel(this.properties.getUniqueId(), this.getViewers());
+		this.viewerDistance = Main.getItemFrameTracker().getDistance(this.properties.getUniqueId(),
+				this.getViewers());
+	}
+
+	/**
+	 * Paints the logos onto a layer with the painter given to
+	 * {@link #attachLogos(int, Logo, Obstacle, Function)}
+	 * <p>
+	 * In a broadcast group, the frame painted once for the whole group is copied
+	 * instead.
+	 *
+	 * @param layer the layer to paint on
+	 * @return the number of pixels written
+	 */
+	protected final int paintLogos(MapCanvas layer) {
+		int written;
+		DirtyRegion dirty;
+		if (this.broadcast != null) {
+			written = this.broadcast.copyFrame(layer, this.copiedStep);
+			dirty = this.broadcast.getDirtyRegion();
+			this.copiedStep = Main.getSimulation().getStepCount();
+		} else {
+			written = this.painter.paint(layer);
+			dirty = this.painter.getDirtyRegion();
+		}
+		this.recordFrame(written, dirty);
+		for (int i = 0; i < this.slots.length; i++) {
+			this.pollColorChange(i);
+		}
+		return written;
+	}
+
+	/**
+	 * Records a frame the display drew without {@link #paintLogos(MapCanvas)},
+	 * e.g. by moving widgets
+	 * <p>
+	 * The area changed is also used to estimate the next frame, see
+	 * {@link BandwidthBudget}.
+	 *
+	 * @param written the number of pixels written
+	 * @param dirty   the region changed by the frame
+	 */
+	protected final void recordFrame(int written, DirtyRegion dirty) {
+		this.frameArea = written == 0 || dirty.isEmpty() ? 0 : dirty.getArea();
+		this.metrics.recordFrame(written, this.frameArea);
+	}
+
+	/**
+	 * Asks for the logos to be moved on the next simulation step
+	 * <p>
+	 * This should be called from {@link #onTick()}. When the display starts
+	 * ticking again after a while, the logos jump ahead to where they would be
+	 * had it kept ticking, see {@link LogoSet#touch(BounceSimulation)}.
+	 * <p>
+	 * Before that, the bounces off the walls during the last step are called as
+	 * events, and their sounds are played, see {@link SoundMixer}. In a
+	 * broadcast group, the events are called once, by the first display to
+	 * tick, and every display plays the sounds to its own viewers.
+	 * <p>
+	 * While the display is {@link DetailLevel#FROZEN frozen}, the logos are not
+	 * moved, unless another display of its broadcast group moves them.
+	 */
+	protected final void advanceLogos() {
+		LogoSet logos = this.broadcast != null ? this.broadcast.getLogos() : this.logos;
+		if (logos != null && this.detail != DetailLevel.FROZEN) {
+			this.reportWallHits(logos);
+			logos.touch(Main.getSimulation());
+		}
+	}
+
+	private void reportWallHits(LogoSet logos) {
+		BounceSimulation simulation = Main.getSimulation();
+		long step = simulation.getStepCount();
+		// Only if the logos took the last step. The first display of a broadcast
+		// group to tick calls the events, the others only play the sounds of the
+		// same bounces to their own viewers.
+		long touchedStep = logos.getTouchedStep();
+		if (touchedStep == step && this.broadcast != null && this.broadcast.hasBounced(step)) {
+			Main.getSoundMixer().bounce(this, this.broadcast.hasHitCorner());
+			return;
+		}
+		if (touchedStep == -1 || touchedStep != step - 1) {
+			return;
+		}
+		boolean callEvents = LogoBounceEvent.getHandlerList().getRegisteredListeners().length != 0
+				|| LogoCornerHitEvent.getHandlerList().getRegisteredListeners().length != 0;
+
+		boolean bounced = false;
+		boolean cornerHit = false;
+		int[] slots = logos.getSlots();
+		for (int i = 0; i < slots.length; i++) {
+			int walls = simulation.getWallHits(slots[i]);
+			if (walls == 0) {
+				continue;
+			}
+			boolean side = (walls & (BounceSimulation.WALL_LEFT | BounceSimulation.WALL_RIGHT)) != 0;
+			boolean topOrBottom = (walls & (BounceSimulation.WALL_TOP | BounceSimulation.WALL_BOTTOM)) != 0;
+			bounced = true;
+			cornerHit |= side && topOrBottom;
+			if (callEvents) {
+				Bukkit.getPluginManager().callEvent(new LogoBounceEvent(this, i, walls));
+				if (side && topOrBottom) {
+					Bukkit.getPluginManager().callEvent(new LogoCornerHitEvent(this, i, walls));
+				}
+			}
+		}
+		if (bounced) {
+			Main.getSoundMixer().bounce(this, cornerHit);
+			if (this.broadcast != null) {
+				this.broadcast.recordBounce(step, cornerHit);
+			}
+		}
+	}
+
+	/**
+	 * Records the time spent in {@link #onTick()}, see {@link DisplayMetrics}
+	 * <p>
+	 * This should be called at the very end of {@link #onTick()}.
+	 *
+	 * @param startNanos the {@link System#nanoTime()} at the start of the tick
+	 */
+	protected final void recordTick(long startNanos) {
+		this.metrics.recordTick(System.nanoTime() - startNanos, this.getViewers().size());
+	}
+
+	/**
+	 * Gets the number of logos of this display
+	 *
+	 * @return the number of logos
+	 */
+	public final int getLogoCount() {
+		return this.slots.length;
+	}
+
+	/**
+	 * Predicts in how many ticks a logo bounces off a wall next
+	 * <p>
+	 * This assumes the display keeps ticking, which is also what the logo jumps
+	 * ahead to when it does not, see {@link #advanceLogos()}. Plugins can use this
+	 * to schedule a task for the next bounce, instead of checking every tick.
+	 *
+	 * @param index the index of the logo
+	 * @return the number of ticks, or {@code -1} if it cannot be predicted
+	 *         because the logos bounce off each other or off an obstacle
+	 * @see BounceSimulation#predictBounce(int)
+	 */
+	public final long getTicksUntilBounce(int index) {
+		return Main.getSimulation().predictBounce(this.slots[index]);
+	}
+
+	/**
+	 * Predicts in how many ticks a logo hits a corner next
+	 * <p>
+	 * The same assumptions as for {@link #getTicksUntilBounce(int)} are made.
+	 *
+	 * @param index the index of the logo
+	 * @return the number of ticks, or {@code -1} if the logo never hits a corner,
+	 *         or it cannot be predicted because the logos bounce off each other
+	 *         or off an obstacle
+	 * @see BounceSimulation#predictCornerHit(int)
+	 */
+	public final long getTicksUntilCornerHit(int index) {
+		return Main.getSimulation().predictCornerHit(this.slots[index]);
+	}
+
+	/**
+	 * Checks whether a logo changed color since this was last called
+	 * <p>
+	 * This is called for every logo by {@link #paintLogos(MapCanvas)}, so
+	 * displays using a painter should not call it themselves.
+	 *
+	 * @param index the index of the logo
+	 * @return {@code true} if the color changed
+	 */
+	protected final boolean pollColorChange(int index) {
+		int bounces = Main.getSimulation().getBounces(this.slots[index]);
+		if (bounces == this.seenBounces[index]) {
+			return false;
+		}
+		this.seenBounces[index] = bounces;
+		this.metrics.recordRecolor();
+		return true;
+	}
+
+	/**
+	 * Gets the current X position of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the X position
+	 */
+	protected final int getLogoX(int index) {
+		return Main.getSimulation().getX(this.slots[index]);
+	}
+
+	/**
+	 * Gets the current Y position of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the Y position
+	 */
+	protected final int getLogoY(int index) {
+		return Main.getSimulation().getY(this.slots[index]);
+	}
+
+	/**
+	 * Gets the current color of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the RGB color
+	 */
+	protected final int getLogoColor(int index) {
+		return Main.getSimulation().getColor(this.slots[index]);
+	}
+}
@@ -0,0 +1,299 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * A named group of displays that show the exact same logos
+ * <p>
+ * All displays of the same kind, size and logo that are given the same
+ * {@code group} property join the same broadcast group. The group owns the logos in the
+ * simulation, and paints them once per tick into a shared frame. Each display
+ * then only copies the part of the frame that changed onto its own layer, so
+ * the cost of painting does not grow with the number of displays.
+ * <p>
+ * The group is created when its first display is attached, and removed when
+ * its last display is detached. Its logos are saved under the key of the
+ * group, so they are put back where they were when it is created again.
+ * <p>
+ * Groups can also be created without a name, e.g. to share a frame between
+ * stand-in displays without a server.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class BroadcastGroup {
+	/**
+	 * The groups that currently have displays, by key
+	 */
+	private static final Map<String, BroadcastGroup> groups = new HashMap<>();
+
+	/**
+	 * The key of this group in {@link #groups}, or {@code null} if it has no
+	 * name
+	 */
+	private final String key;
+
+	/**
+	 * The id the logos of this group are saved with, see {@link StateJournal},
+	 * or {@code null} if it has no name
+	 */
+	private final UUID id;
+
+	/**
+	 * The simulation moving the logos
+	 */
+	private final BounceSimulation simulation;
+
+	/**
+	 * The logos shared by all displays of this group
+	 */
+	private final LogoSet logos;
+
+	/**
+	 * Paints the logos into {@link #frame}, or {@code null} if the displays draw
+	 * the logos themselves
+	 */
+	private final FramePainter painter;
+
+	/**
+	 * The frame shared by all displays of this group
+	 */
+	private final MapTexture frame;
+
+	/**
+	 * Holds the pixels of a single tile while they are copied
+	 */
+	private final byte[] tilePixels = new byte[DirtyRegion.TILE_SIZE * DirtyRegion.TILE_SIZE];
+
+	/**
+	 * The simulation step the frame was last painted at, and the one before
+	 */
+	private long paintedStep = -1;
+	private long previousPaintedStep = -1;
+
+	/**
+	 * The simulation step the logos last bounced off the walls before, and
+	 * whether one of them hit a corner
+	 */
+	private long bouncedStep = -1;
+	private boolean cornerHit = false;
+
+	/**
+	 * The number of displays in this group
+	 */
+	private int members = 0;
+
+	/**
+	 * Creates a group without a name
+	 * <p>
+	 * Displays cannot join the group by name, and its logos are not saved. It is
+	 * only shared by calling {@link #copyFrame(MapCanvas, long)} directly.
+	 *
+	 * @param simulation the simulation moving the logos
+	 * @param logos      the logos of the group
+	 * @param painter    paints the logos into the shared frame
+	 * @param width      the width of the frame
+	 * @param height     the height of the frame
+	 */
+	public BroadcastGroup(BounceSimulation simulation, LogoSet logos, FramePainter painter, int width, int height) {
+		this(null, simulation, logos, painter, width, height);
+	}
+
+	private BroadcastGroup(String key, BounceSimulation simulation, LogoSet logos, FramePainter painter, int width,
+			int height) {
+		this.key = key;
+		this.id = key == null ? null : UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+		this.simulation = simulation;
+		this.logos = logos;
+		this.painter = painter;
+		this.frame = MapTexture.createEmpty(width, height);
+		this.frame.setBlendMode(MapBlendMode.NONE);
+	}
+
+	/**
+	 * Joins a display to a group, creating the group if it has no displays yet
+	 * <p>
+	 * Only displays of the same type, size, logo and obstacle can share a group. The logos of a
+	 * new group are added to the simulation like those of a single display, see
+	 * {@link LogoSet#allocate(io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation, int, int, int, int, int)
+	 * LogoSet.allocate}. Displays joining an existing group show the logos of that
+	 * group, even if they asked for a different number.
+	 *
+	 * @param type           the type of the display
+	 * @param name           the name of the group
+	 * @param count          the number of logos of a new group
+	 * @param width          the width of the display
+	 * @param height         the height of the display
+	 * @param logo           the logo
+	 * @param obstacle       the obstacle the logos bounce off, or {@code null} if
+	 *                       there is none
+	 * @param painterFactory creates the painter of a new group from the slots of
+	 *                       its logos, or {@code null} if the displays draw the
+	 *                       logos themselves
+	 * @return the group
+	 */
+	public static BroadcastGroup join(Class<? extends BouncingDisplay> type, String name, int count, int width,
+			int height, Logo logo, Obstacle obstacle, Function<int[], FramePainter> painterFactory) {
+		String key = type.getName() + '/' + width + 'x' + height + '/' + logo.getName() + '/'
+				+ (obstacle == null ? "" : obstacle.getLogo().getName()) + '/' + name;
+		BroadcastGroup group = BroadcastGroup.groups.get(key);
+		if (group == null) {
+			LogoSet logos = LogoSet.allocate(Main.getSimulation(), count, width, height, logo.getWidth(),
+					logo.getHeight());
+			logos.setMasks(Main.getSimulation(), logo.getMask(), obstacle == null ? null : obstacle.getMask());
+			FramePainter painter = painterFactory == null ? null : painterFactory.apply(logos.getSlots());
+			group = new BroadcastGroup(key, Main.getSimulation(), logos, painter, width, height);
+			BroadcastGroup.groups.put(key, group);
+			Main.getStateJournal().track(group.id, logos);
+		}
+		group.members++;
+		return group;
+	}
+
+	/**
+	 * Removes a display from this group
+	 * <p>
+	 * When the last display leaves, the logos are removed from the simulation and
+	 * the group is forgotten.
+	 */
+	public void leave() {
+		if (--this.members > 0) {
+			return;
+		}
+		if (this.key != null) {
+			BroadcastGroup.groups.remove(this.key);
+			Main.getStateJournal().untrack(this.id, this.logos);
+		}
+		this.logos.free(this.simulation);
+		if (this.painter != null) {
+			this.painter.dispose();
+		}
+	}
+
+	/**
+	 * Copies the current frame onto the layer of a display
+	 * <p>
+	 * The first display to call this in a tick paints the frame. If the display
+	 * copied the previous frame, only the region that changed since then is
+	 * copied, and only to the tiles that changed. Otherwise, for example because the display had no viewers for a
+	 * while, the whole frame is copied.
+	 *
+	 * @param layer      the layer of the display
+	 * @param copiedStep the simulation step the display last copied a frame at,
+	 *                   or {@code -1} if it never did
+	 * @return the number of pixels written
+	 */
+	public int copyFrame(MapCanvas layer, long copiedStep) {
+		long step = this.simulation.getStepCount();
+		if (this.paintedStep != step) {
+			this.paintFrame(step);
+		}
+		if (copiedStep == step) {
+			return 0;
+		}
+
+		layer.setBlendMode(MapBlendMode.NONE);
+		if (copiedStep != -1 && copiedStep == this.previousPaintedStep) {
+			return this.painter.getDirtyRegion().copy(this.frame.getBuffer(), this.frame.getWidth(), layer,
+					this.tilePixels);
+		}
+
+		layer.writePixels(0, 0, this.frame.getWidth(), this.frame.getHeight(), this.frame.getBuffer());
+		return this.frame.getWidth() * this.frame.getHeight();
+	}
+
+	/**
+	 * Gets the region of the frame changed by the last paint
+	 *
+	 * @return the changed region
+	 */
+	public DirtyRegion getDirtyRegion() {
+		return this.painter.getDirtyRegion();
+	}
+
+	/**
+	 * Gets the simulation step the frame of this group was last painted at
+	 *
+	 * @return the step, or {@code -1} if the frame was never painted
+	 */
+	public long getPaintedStep() {
+		return this.paintedStep;
+	}
+
+	/**
+	 * Gets the logos shared by the displays of this group
+	 *
+	 * @return the logos
+	 */
+	public LogoSet getLogos() {
+		return this.logos;
+	}
+
+	/**
+	 * Remembers that the logos bounced off the walls during the last step
+	 * <p>
+	 * The first display of the group to tick after a step finds the bounces and
+	 * calls their events. The other displays then play the sounds of the same
+	 * bounces to their own viewers, see {@link #hasBounced(long)}.
+	 *
+	 * @param step      the current step count of the simulation
+	 * @param cornerHit {@code true} if a logo hit a corner
+	 */
+	public void recordBounce(long step, boolean cornerHit) {
+		this.bouncedStep = step;
+		this.cornerHit = cornerHit;
+	}
+
+	/**
+	 * Checks whether the logos bounced off the walls during the last step
+	 *
+	 * @param step the current step count of the simulation
+	 * @return {@code true} if a bounce was recorded for the step
+	 */
+	public boolean hasBounced(long step) {
+		return this.bouncedStep == step;
+	}
+
+	/**
+	 * Checks whether a logo hit a corner in the bounce recorded last, see
+	 * {@link #recordBounce(long, boolean)}
+	 *
+	 * @return {@code true} if a logo hit a corner
+	 */
+	public boolean hasHitCorner() {
+		return this.cornerHit;
+	}
+
+	private void paintFrame(long step) {
+		this.painter.paint(this.frame);
+		this.previousPaintedStep = this.paintedStep;
+		this.paintedStep = step;
+	}
+}
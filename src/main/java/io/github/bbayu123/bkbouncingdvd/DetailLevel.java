@@ -0,0 +1,85 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+/**
+ * How often a display is painted, depending on how far away its viewers are
+ * <p>
+ * See {@link ItemFrameTracker#getDetailLevel(java.util.UUID, java.util.List)
+ * ItemFrameTracker.getDetailLevel} for how the level of a display is picked.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public enum DetailLevel {
+	/**
+	 * Painted every tick, because a viewer is close by, or holds the map
+	 */
+	FULL(1),
+	/**
+	 * Painted every fourth tick, because the nearest viewer is further away
+	 */
+	REDUCED(4),
+	/**
+	 * Not painted at all, because every viewer is beyond render distance. The
+	 * logos stop moving too, and jump ahead once the display is painted again.
+	 */
+	FROZEN(0);
+
+	/**
+	 * The distance in blocks up to which displays are painted every tick
+	 */
+	public static final double FULL_DISTANCE = 24.0;
+
+	private final int divisor;
+
+	private DetailLevel(int divisor) {
+		this.divisor = divisor;
+	}
+
+	/**
+	 * Gets the number of ticks between frames at this level
+	 * <p>
+	 * This comes on top of the rate set by the {@link FrameRateScheduler}.
+	 *
+	 * @return the number of ticks, or {@code 0} if the display is not painted
+	 */
+	public int getDivisor() {
+		return this.divisor;
+	}
+
+	/**
+	 * Picks the level of a display from the distance to its nearest viewer
+	 *
+	 * @param distance     the distance in blocks from the nearest viewer to the
+	 *                     display
+	 * @param viewDistance the view distance of the server in blocks
+	 * @return {@link #FULL} up to {@value #FULL_DISTANCE} blocks,
+	 *         {@link #REDUCED} up to the view distance, and {@link #FROZEN}
+	 *         beyond it
+	 */
+	public static DetailLevel of(double distance, double viewDistance) {
+		if (distance <= DetailLevel.FULL_DISTANCE) {
+			return FULL;
+		} else if (distance <= viewDistance) {
+			return REDUCED;
+		} else {
+			return FROZEN;
+		}
+	}
+}
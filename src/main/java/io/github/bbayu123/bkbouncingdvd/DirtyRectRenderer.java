@@ -0,0 +1,305 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+/**
+ * Draws sprites onto a layer, only touching the pixels that change
+ * <p>
+ * Instead of clearing the whole layer every frame, this remembers where each
+ * sprite was drawn last. For a single sprite, only the strips of the old
+ * bounding box that the new one does not cover are cleared, and the sprite is
+ * drawn at its new position. With more sprites, which may overlap each other,
+ * the old bounding boxes are cleared fully before all sprites are drawn again.
+ * Pixels outside of these regions are never written, so they are never marked
+ * dirty.
+ * <p>
+ * The layer is expected to only contain the sprites, with a background on a
+ * layer below it. Otherwise, a background can be given, which the pixels the
+ * sprites leave are restored from, see {@link #setBackground(MapCanvas)}. A
+ * single sprite is then drawn over a copy of the background of its box, so its
+ * transparent pixels show the background, and written in one go.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class DirtyRectRenderer {
+	/**
+	 * The bounding boxes of the sprites as they were last drawn, the width is
+	 * {@code 0} if nothing was drawn yet
+	 */
+	private int[] lastX = new int[1];
+	private int[] lastY = new int[1];
+	private int[] lastWidth = new int[1];
+	private int[] lastHeight = new int[1];
+
+	/**
+	 * Scratch arrays used when drawing a single sprite
+	 */
+	private final MapCanvas[] singleSprite = new MapCanvas[1];
+	private final int[] singleX = new int[1];
+	private final int[] singleY = new int[1];
+
+	/**
+	 * The region changed by the last render
+	 */
+	private final DirtyRegion dirty = new DirtyRegion();
+
+	/**
+	 * The background the pixels left by the sprites are restored from, or
+	 * {@code null} to make them transparent
+	 */
+	private MapCanvas background = null;
+	/**
+	 * A row of the background being restored
+	 */
+	private byte[] rowBuffer = new byte[0];
+	/**
+	 * The background of a single sprite with the sprite drawn over it
+	 */
+	private byte[] spriteBuffer = new byte[0];
+
+	/**
+	 * Sets the background the pixels left by the sprites are restored from
+	 * <p>
+	 * The background is only read, so it can be shared with other renderers. It
+	 * must be at least as big as the layer.
+	 *
+	 * @param background the background, or {@code null} to make the pixels
+	 *                   transparent
+	 */
+	public void setBackground(MapCanvas background) {
+		this.background = background;
+	}
+
+	/**
+	 * Draws a single sprite at a new position
+	 *
+	 * @param layer  the layer to draw on
+	 * @param sprite the sprite to draw
+	 * @param x      the X position of the sprite
+	 * @param y      the Y position of the sprite
+	 * @return the number of pixels written
+	 */
+	public int render(MapCanvas layer, MapCanvas sprite, int x, int y) {
+		this.singleSprite[0] = sprite;
+		this.singleX[0] = x;
+		this.singleY[0] = y;
+		return this.render(layer, this.singleSprite, this.singleX, this.singleY, 1);
+	}
+
+	/**
+	 * Draws a number of sprites at new positions
+	 * <p>
+	 * The number of sprites should stay the same between calls, otherwise the
+	 * sprites drawn before are forgotten and left on the layer.
+	 *
+	 * @param layer   the layer to draw on
+	 * @param sprites the sprites to draw
+	 * @param xs      the X positions of the sprites
+	 * @param ys      the Y positions of the sprites
+	 * @param count   the number of sprites
+	 * @return the number of pixels written
+	 */
+	public int render(MapCanvas layer, MapCanvas[] sprites, int[] xs, int[] ys, int count) {
+		if (this.lastX.length != count) {
+			this.lastX = new int[count];
+			this.lastY = new int[count];
+			this.lastWidth = new int[count];
+			this.lastHeight = new int[count];
+		}
+
+		this.dirty.clear();
+		layer.setBlendMode(MapBlendMode.NONE);
+		if (count == 1) {
+			int written = 0;
+			if (this.lastWidth[0] > 0) {
+				this.dirty.include(this.lastX[0], this.lastY[0], this.lastWidth[0], this.lastHeight[0]);
+				written += this.clearExposed(layer, xs[0], ys[0], sprites[0].getWidth(), sprites[0].getHeight());
+			}
+
+			// With no blending, the transparent pixels of the sprite also erase what
+			// was left of the old sprite inside the new bounding box, so they must
+			// show the background if there is one
+			if (this.background == null) {
+				written += this.draw(layer, 0, sprites[0], xs[0], ys[0]);
+			} else {
+				written += this.drawOverBackground(layer, sprites[0], xs[0], ys[0]);
+			}
+			this.dirty.clip(layer.getWidth(), layer.getHeight());
+			return written;
+		}
+
+		int written = 0;
+		for (int i = 0; i < count; i++) {
+			if (this.lastWidth[i] > 0) {
+				this.clear(layer, this.lastX[i], this.lastY[i], this.lastWidth[i], this.lastHeight[i]);
+				this.dirty.include(this.lastX[i], this.lastY[i], this.lastWidth[i], this.lastHeight[i]);
+				written += this.lastWidth[i] * this.lastHeight[i];
+			}
+		}
+
+		// Sprites may overlap, so their transparent pixels must not erase each other
+		layer.setBlendMode(MapBlendMode.OVERLAY);
+		for (int i = 0; i < count; i++) {
+			written += this.draw(layer, i, sprites[i], xs[i], ys[i]);
+		}
+		layer.setBlendMode(MapBlendMode.NONE);
+		this.dirty.clip(layer.getWidth(), layer.getHeight());
+		return written;
+	}
+
+	/**
+	 * Gets the bounding box of the pixels written by the last render
+	 *
+	 * @return the changed region
+	 */
+	public DirtyRegion getDirtyRegion() {
+		return this.dirty;
+	}
+
+	/**
+	 * Clears the sprites from the layer, and forgets where they were drawn
+	 *
+	 * @param layer the layer to clear the sprites from
+	 */
+	public void reset(MapCanvas layer) {
+		this.dirty.clear();
+		layer.setBlendMode(MapBlendMode.NONE);
+		for (int i = 0; i < this.lastX.length; i++) {
+			if (this.lastWidth[i] > 0) {
+				this.clear(layer, this.lastX[i], this.lastY[i], this.lastWidth[i], this.lastHeight[i]);
+			}
+			this.lastWidth[i] = 0;
+			this.lastHeight[i] = 0;
+		}
+	}
+
+	private int draw(MapCanvas layer, int index, MapCanvas sprite, int x, int y) {
+		layer.draw(sprite, x, y);
+		this.lastX[index] = x;
+		this.lastY[index] = y;
+		this.lastWidth[index] = sprite.getWidth();
+		this.lastHeight[index] = sprite.getHeight();
+		this.dirty.include(x, y, sprite.getWidth(), sprite.getHeight());
+		return sprite.getWidth() * sprite.getHeight();
+	}
+
+	private int drawOverBackground(MapCanvas layer, MapCanvas sprite, int x, int y) {
+		this.lastX[0] = x;
+		this.lastY[0] = y;
+		this.lastWidth[0] = sprite.getWidth();
+		this.lastHeight[0] = sprite.getHeight();
+		this.dirty.include(x, y, sprite.getWidth(), sprite.getHeight());
+
+		// Only the part on the layer is drawn
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + sprite.getWidth(), layer.getWidth());
+		int bottom = Math.min(y + sprite.getHeight(), layer.getHeight());
+		if (left >= right || top >= bottom) {
+			return 0;
+		}
+		int width = right - left;
+		int height = bottom - top;
+		if (this.spriteBuffer.length < width * height) {
+			this.spriteBuffer = new byte[width * height];
+		}
+		this.background.readPixels(left, top, width, height, this.spriteBuffer);
+		PixelKernels.blit(sprite.getBuffer(), sprite.getWidth(), sprite.getHeight(), this.spriteBuffer, width,
+				height, x - left, y - top);
+		layer.writePixels(left, top, width, height, this.spriteBuffer);
+		return width * height;
+	}
+
+	private int clearExposed(MapCanvas layer, int x, int y, int width, int height) {
+		int oldX = this.lastX[0];
+		int oldY = this.lastY[0];
+		int oldWidth = this.lastWidth[0];
+		int oldHeight = this.lastHeight[0];
+		int oldRight = oldX + oldWidth;
+		int oldBottom = oldY + oldHeight;
+
+		if (x >= oldRight || y >= oldBottom || x + width <= oldX || y + height <= oldY) {
+			// No overlap, the whole old box is exposed
+			this.clear(layer, oldX, oldY, oldWidth, oldHeight);
+			return oldWidth * oldHeight;
+		}
+
+		int written = 0;
+
+		// Vertical strip left or right of the new box
+		int stripX = oldX;
+		int stripWidth = 0;
+		if (x > oldX) {
+			stripWidth = x - oldX;
+		} else if (x + width < oldRight) {
+			stripX = x + width;
+			stripWidth = oldRight - stripX;
+		}
+		if (stripWidth > 0) {
+			this.clear(layer, stripX, oldY, stripWidth, oldHeight);
+			written += stripWidth * oldHeight;
+		}
+
+		// Horizontal strip above or below the new box, skipping the columns the
+		// vertical strip already cleared
+		int spanX = Math.max(oldX, x);
+		int spanWidth = Math.min(oldRight, x + width) - spanX;
+		int stripY = oldY;
+		int stripHeight = 0;
+		if (y > oldY) {
+			stripHeight = y - oldY;
+		} else if (y + height < oldBottom) {
+			stripY = y + height;
+			stripHeight = oldBottom - stripY;
+		}
+		if (stripHeight > 0 && spanWidth > 0) {
+			this.clear(layer, spanX, stripY, spanWidth, stripHeight);
+			written += spanWidth * stripHeight;
+		}
+
+		return written;
+	}
+
+	private void clear(MapCanvas layer, int x, int y, int width, int height) {
+		if (this.background == null) {
+			layer.fillRectangle(x, y, width, height, MapColorPalette.COLOR_TRANSPARENT);
+			return;
+		}
+
+		// Only the part on the layer can be restored
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, layer.getWidth());
+		int bottom = Math.min(y + height, layer.getHeight());
+		if (left >= right || top >= bottom) {
+			return;
+		}
+		if (this.rowBuffer.length < right - left) {
+			this.rowBuffer = new byte[right - left];
+		}
+		for (int row = top; row < bottom; row++) {
+			this.background.readPixels(left, row, right - left, 1, this.rowBuffer);
+			layer.writePixels(left, row, right - left, 1, this.rowBuffer);
+		}
+	}
+}
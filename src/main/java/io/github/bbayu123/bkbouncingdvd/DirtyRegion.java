@@ -0,0 +1,253 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+
+/**
+ * The pixels that changed on a canvas
+ * <p>
+ * The region keeps the bounding box of everything that is
+ * {@link #include(int, int, int, int) included}, as well as which of the
+ * {@value #TILE_SIZE} by {@value #TILE_SIZE} pixel tiles it touched and the
+ * bounding box within each of them, until it is {@link #clear() cleared}
+ * again. A display shown on several maps has one
+ * map per tile, so pixels are only written to the tiles that actually changed,
+ * see {@link #forEachRect(RectConsumer)}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class DirtyRegion {
+	/**
+	 * The width and height of a tile, the size of a single map
+	 */
+	public static final int TILE_SIZE = 128;
+	/**
+	 * The number of tiles in a row of {@link #tiles}
+	 */
+	private static final int TILE_STRIDE = 64;
+
+	private int minX = Integer.MAX_VALUE;
+	private int minY = Integer.MAX_VALUE;
+	private int maxX = Integer.MIN_VALUE;
+	private int maxY = Integer.MIN_VALUE;
+
+	/**
+	 * The tiles touched, indexed by {@code row * TILE_STRIDE + column}
+	 */
+	private final BitSet tiles = new BitSet();
+	/**
+	 * The bounding box of what was included inside each touched tile
+	 */
+	private int[] tileMinX = new int[0];
+	private int[] tileMinY = new int[0];
+	private int[] tileMaxX = new int[0];
+	private int[] tileMaxY = new int[0];
+
+	/**
+	 * Empties the region
+	 */
+	public void clear() {
+		this.minX = Integer.MAX_VALUE;
+		this.minY = Integer.MAX_VALUE;
+		this.maxX = Integer.MIN_VALUE;
+		this.maxY = Integer.MIN_VALUE;
+		this.tiles.clear();
+	}
+
+	/**
+	 * Grows the region to include a rectangle
+	 *
+	 * @param x      the X position of the rectangle
+	 * @param y      the Y position of the rectangle
+	 * @param width  the width of the rectangle
+	 * @param height the height of the rectangle
+	 */
+	public void include(int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		this.minX = Math.min(this.minX, x);
+		this.minY = Math.min(this.minY, y);
+		this.maxX = Math.max(this.maxX, x + width);
+		this.maxY = Math.max(this.maxY, y + height);
+
+		int firstColumn = Math.max(x, 0) / DirtyRegion.TILE_SIZE;
+		int lastColumn = Math.min((x + width - 1) / DirtyRegion.TILE_SIZE, DirtyRegion.TILE_STRIDE - 1);
+		int firstRow = Math.max(y, 0) / DirtyRegion.TILE_SIZE;
+		int lastRow = (y + height - 1) / DirtyRegion.TILE_SIZE;
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				this.includeInTile(row * DirtyRegion.TILE_STRIDE + column, x, y, x + width, y + height);
+			}
+		}
+	}
+
+	/**
+	 * Grows the region to include another region
+	 *
+	 * @param other the other region
+	 */
+	public void include(DirtyRegion other) {
+		if (other.isEmpty()) {
+			return;
+		}
+		this.minX = Math.min(this.minX, other.minX);
+		this.minY = Math.min(this.minY, other.minY);
+		this.maxX = Math.max(this.maxX, other.maxX);
+		this.maxY = Math.max(this.maxY, other.maxY);
+		for (int tile = other.tiles.nextSetBit(0); tile >= 0; tile = other.tiles.nextSetBit(tile + 1)) {
+			this.includeInTile(tile, other.tileMinX[tile], other.tileMinY[tile], other.tileMaxX[tile],
+					other.tileMaxY[tile]);
+		}
+	}
+
+	/**
+	 * Shrinks the region to fit inside a canvas
+	 *
+	 * @param width  the width of the canvas
+	 * @param height the height of the canvas
+	 */
+	public void clip(int width, int height) {
+		this.minX = Math.max(this.minX, 0);
+		this.minY = Math.max(this.minY, 0);
+		this.maxX = Math.min(this.maxX, width);
+		this.maxY = Math.min(this.maxY, height);
+	}
+
+	/**
+	 * Checks whether the region is empty
+	 *
+	 * @return {@code true} if no pixels are in the region
+	 */
+	public boolean isEmpty() {
+		return this.minX >= this.maxX || this.minY >= this.maxY;
+	}
+
+	public int getX() {
+		return this.minX;
+	}
+
+	public int getY() {
+		return this.minY;
+	}
+
+	public int getWidth() {
+		return this.isEmpty() ? 0 : this.maxX - this.minX;
+	}
+
+	public int getHeight() {
+		return this.isEmpty() ? 0 : this.maxY - this.minY;
+	}
+
+	/**
+	 * Gets the number of pixels in the bounding box of the region
+	 *
+	 * @return the number of pixels
+	 */
+	public int getArea() {
+		return this.getWidth() * this.getHeight();
+	}
+
+	/**
+	 * Calls a function for every touched tile, with the bounding box of what was
+	 * included inside that tile
+	 * <p>
+	 * Tiles in between the rectangles that were included are skipped, even if
+	 * they are inside the bounding box of the whole region.
+	 *
+	 * @param consumer the function to call
+	 * @return the number of pixels in all rectangles
+	 */
+	public int forEachRect(RectConsumer consumer) {
+		if (this.isEmpty()) {
+			return 0;
+		}
+		int area = 0;
+		for (int tile = this.tiles.nextSetBit(0); tile >= 0; tile = this.tiles.nextSetBit(tile + 1)) {
+			int x = Math.max(this.tileMinX[tile], this.minX);
+			int y = Math.max(this.tileMinY[tile], this.minY);
+			int width = Math.min(this.tileMaxX[tile], this.maxX) - x;
+			int height = Math.min(this.tileMaxY[tile], this.maxY) - y;
+			if (width > 0 && height > 0) {
+				consumer.accept(x, y, width, height);
+				area += width * height;
+			}
+		}
+		return area;
+	}
+
+	/**
+	 * Copies the pixels of the region from a buffer to a canvas
+	 *
+	 * @param source  the buffer to copy from, a whole canvas of map colors
+	 * @param stride  the width of the canvas the buffer holds
+	 * @param target  the canvas to copy to
+	 * @param scratch a buffer large enough for one tile, used while copying
+	 * @return the number of pixels written
+	 */
+	public int copy(byte[] source, int stride, MapCanvas target, byte[] scratch) {
+		return this.forEachRect((x, y, width, height) -> {
+			for (int row = 0; row < height; row++) {
+				System.arraycopy(source, (y + row) * stride + x, scratch, row * width, width);
+			}
+			target.writePixels(x, y, width, height, scratch);
+		});
+	}
+
+	private void includeInTile(int tile, int minX, int minY, int maxX, int maxY) {
+		int tileX = (tile % DirtyRegion.TILE_STRIDE) * DirtyRegion.TILE_SIZE;
+		int tileY = (tile / DirtyRegion.TILE_STRIDE) * DirtyRegion.TILE_SIZE;
+		minX = Math.max(minX, tileX);
+		minY = Math.max(minY, tileY);
+		maxX = Math.min(maxX, tileX + DirtyRegion.TILE_SIZE);
+		maxY = Math.min(maxY, tileY + DirtyRegion.TILE_SIZE);
+
+		if (tile >= this.tileMinX.length) {
+			int length = Math.max(tile + 1, this.tileMinX.length * 2);
+			this.tileMinX = Arrays.copyOf(this.tileMinX, length);
+			this.tileMinY = Arrays.copyOf(this.tileMinY, length);
+			this.tileMaxX = Arrays.copyOf(this.tileMaxX, length);
+			this.tileMaxY = Arrays.copyOf(this.tileMaxY, length);
+		}
+		if (!this.tiles.get(tile)) {
+			this.tiles.set(tile);
+			this.tileMinX[tile] = minX;
+			this.tileMinY[tile] = minY;
+			this.tileMaxX[tile] = maxX;
+			this.tileMaxY[tile] = maxY;
+		} else {
+			this.tileMinX[tile] = Math.min(this.tileMinX[tile], minX);
+			this.tileMinY[tile] = Math.min(this.tileMinY[tile], minY);
+			this.tileMaxX[tile] = Math.max(this.tileMaxX[tile], maxX);
+			this.tileMaxY[tile] = Math.max(this.tileMaxY[tile], maxY);
+		}
+	}
+
+	/**
+	 * A function called with a rectangle
+	 */
+	@FunctionalInterface
+	public interface RectConsumer {
+		void accept(int x, int y, int width, int height);
+	}
+}
@@ -0,0 +1,286 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures what a single display costs
+ * <p>
+ * For every tick, the time spent in {@link BouncingDisplay#onTick()}, the
+ * number of pixels written, the area of the region that changed, the number of
+ * logos that changed color and the number of viewers are recorded. The totals
+ * are kept in {@link LongAdder}s, and the tick times also in a histogram with
+ * buckets that double in size, so recording costs a few additions and the
+ * totals can be read from any thread.
+ * <p>
+ * When the JVM has the flight recorder, every tick is also emitted as a
+ * {@code io.github.bbayu123.bkbouncingdvd.DisplayTick} event, see
+ * {@link DisplayTickEvent}. Recordings can then be searched for the displays
+ * that take up the most of a tick.
+ * <p>
+ * The metrics of all attached displays are shown by
+ * {@code /<command> stats}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class DisplayMetrics {
+	/**
+	 * The metrics of the displays that are currently attached
+	 */
+	private static final Set<DisplayMetrics> attached = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * Whether flight recorder events can be emitted
+	 */
+	private static final boolean FLIGHT_RECORDER = DisplayMetrics.isFlightRecorderPresent();
+
+	/**
+	 * The number of buckets of the tick time histogram
+	 * <p>
+	 * Bucket {@code i} holds the ticks that took less than {@code 2^i}
+	 * microseconds, but not less than {@code 2^(i-1)}. The last bucket holds
+	 * everything slower.
+	 */
+	private static final int BUCKETS = 24;
+
+	private final String name;
+
+	private final LongAdder ticks = new LongAdder();
+	private final LongAdder tickNanos = new LongAdder();
+	private final LongAdder pixels = new LongAdder();
+	private final LongAdder dirtyArea = new LongAdder();
+	private final LongAdder recolors = new LongAdder();
+	private final LongAdder[] tickHistogram = new LongAdder[DisplayMetrics.BUCKETS];
+	private volatile int viewers = 0;
+
+	/**
+	 * What was recorded during the current tick, only used on the main thread
+	 */
+	private int tickPixels = 0;
+	private int tickDirtyArea = 0;
+	private int tickRecolors = 0;
+
+	/**
+	 * Creates new, empty metrics
+	 *
+	 * @param name the name the display is shown with
+	 */
+	public DisplayMetrics(String name) {
+		this.name = name;
+		for (int i = 0; i < this.tickHistogram.length; i++) {
+			this.tickHistogram[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Adds these metrics to those shown by {@link #getAttached()}
+	 */
+	public void attach() {
+		DisplayMetrics.attached.add(this);
+	}
+
+	/**
+	 * Removes these metrics from those shown by {@link #getAttached()}
+	 */
+	public void detach() {
+		DisplayMetrics.attached.remove(this);
+	}
+
+	/**
+	 * Gets the metrics of the displays that are currently attached
+	 *
+	 * @return a copy of the metrics
+	 */
+	public static List<DisplayMetrics> getAttached() {
+		return new ArrayList<>(DisplayMetrics.attached);
+	}
+
+	/**
+	 * Records a frame painted during the current tick
+	 *
+	 * @param pixels    the number of pixels written
+	 * @param dirtyArea the area of the bounding box of the changed region
+	 */
+	public void recordFrame(int pixels, int dirtyArea) {
+		this.tickPixels += pixels;
+		this.tickDirtyArea += dirtyArea;
+	}
+
+	/**
+	 * Records a logo that changed color during the current tick
+	 */
+	public void recordRecolor() {
+		this.tickRecolors++;
+	}
+
+	/**
+	 * Records the end of a tick, together with what was recorded during it
+	 *
+	 * @param nanos   the time the tick took, in nanoseconds
+	 * @param viewers the number of players viewing the display
+	 */
+	public void recordTick(long nanos, int viewers) {
+		this.ticks.increment();
+		this.tickNanos.add(nanos);
+		this.tickHistogram[DisplayMetrics.bucket(nanos)].increment();
+		this.pixels.add(this.tickPixels);
+		this.dirtyArea.add(this.tickDirtyArea);
+		this.recolors.add(this.tickRecolors);
+		this.viewers = viewers;
+
+		if (DisplayMetrics.FLIGHT_RECORDER) {
+			DisplayTickEvent.emit(this.name, nanos, this.tickPixels, this.tickDirtyArea, this.tickRecolors, viewers);
+		}
+		this.tickPixels = 0;
+		this.tickDirtyArea = 0;
+		this.tickRecolors = 0;
+	}
+
+	/**
+	 * Gets the name the display is shown with
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the number of ticks recorded
+	 *
+	 * @return the number of ticks
+	 */
+	public long getTicks() {
+		return this.ticks.sum();
+	}
+
+	/**
+	 * Gets the total time of all ticks recorded
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getTickNanos() {
+		return this.tickNanos.sum();
+	}
+
+	/**
+	 * Gets the average time of a tick
+	 *
+	 * @return the time in nanoseconds, or {@code 0} if no tick was recorded
+	 */
+	public long getAverageTickNanos() {
+		long ticks = this.getTicks();
+		return ticks == 0 ? 0 : this.getTickNanos() / ticks;
+	}
+
+	/**
+	 * Gets an upper bound of the time a fraction of the ticks took at most
+	 * <p>
+	 * This is the upper end of the histogram bucket the percentile falls in, so
+	 * it is off by at most a factor two.
+	 *
+	 * @param fraction the fraction of ticks, e.g. {@code 0.99}
+	 * @return the time in nanoseconds, or {@code 0} if no tick was recorded
+	 */
+	public long getTickNanosPercentile(double fraction) {
+		long[] counts = new long[this.tickHistogram.length];
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = this.tickHistogram[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long wanted = (long) Math.ceil(total * fraction);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= wanted) {
+				return 1000L << i;
+			}
+		}
+		return 1000L << (counts.length - 1);
+	}
+
+	/**
+	 * Gets the total number of pixels written
+	 *
+	 * @return the number of pixels
+	 */
+	public long getPixelsWritten() {
+		return this.pixels.sum();
+	}
+
+	/**
+	 * Gets the total area of the regions that changed
+	 *
+	 * @return the number of pixels
+	 */
+	public long getDirtyArea() {
+		return this.dirtyArea.sum();
+	}
+
+	/**
+	 * Gets the total number of times a logo changed color
+	 *
+	 * @return the number of color changes
+	 */
+	public long getRecolors() {
+		return this.recolors.sum();
+	}
+
+	/**
+	 * Gets the number of players that viewed the display on the last tick
+	 *
+	 * @return the number of viewers
+	 */
+	public int getViewers() {
+		return this.viewers;
+	}
+
+	private static int bucket(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, DisplayMetrics.BUCKETS - 1);
+	}
+
+	/**
+	 * Checks whether the flight recorder API exists in this JVM
+	 * <p>
+	 * It was only added to Java 8 in a later update, so {@link DisplayTickEvent}
+	 * must never be touched if it is missing.
+	 *
+	 * @return {@code true} if the flight recorder API exists
+	 */
+	private static boolean isFlightRecorderPresent() {
+		try {
+			Class.forName("jdk.jfr.Event", false, DisplayMetrics.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+}
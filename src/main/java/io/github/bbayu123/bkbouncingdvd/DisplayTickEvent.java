@@ -0,0 +1,85 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder event emitted for every tick of a display
+ * <p>
+ * This class must only be loaded if the JVM has the flight recorder API, see
+ * {@link DisplayMetrics}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+@Name("io.github.bbayu123.bkbouncingdvd.DisplayTick")
+@Label("Display Tick")
+@Category("BKBouncingDVD")
+@Description("The work done by a bouncing DVD display during a single tick")
+final class DisplayTickEvent extends Event {
+	@Label("Display")
+	String display;
+
+	@Label("Tick Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long tickTime;
+
+	@Label("Pixels Written")
+	int pixels;
+
+	@Label("Dirty Area")
+	@Description("The area of the bounding box of the region that changed, in pixels")
+	int dirtyArea;
+
+	@Label("Recolors")
+	@Description("The number of logos that changed color")
+	int recolors;
+
+	@Label("Viewers")
+	int viewers;
+
+	/**
+	 * Emits an event, if the event is enabled in a running recording
+	 *
+	 * @param display   the name of the display
+	 * @param tickTime  the time the tick took, in nanoseconds
+	 * @param pixels    the number of pixels written
+	 * @param dirtyArea the area of the region that changed
+	 * @param recolors  the number of logos that changed color
+	 * @param viewers   the number of viewers
+	 */
+	static void emit(String display, long tickTime, int pixels, int dirtyArea, int recolors, int viewers) {
+		DisplayTickEvent event = new DisplayTickEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.display = display;
+		event.tickTime = tickTime;
+		event.pixels = pixels;
+		event.dirtyArea = dirtyArea;
+		event.recolors = recolors;
+		event.viewers = viewers;
+		event.commit();
+	}
+}
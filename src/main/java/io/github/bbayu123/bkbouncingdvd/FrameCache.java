@@ -0,0 +1,187 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * A plugin-wide cache of the frames of animated logos
+ * <p>
+ * Frames are read from their {@link AnimationFile} when first needed, and
+ * tinted copies are made from them the same way {@link TintedLogoCache} does
+ * for still logos. Every display showing the same logo in the same color
+ * shares the same frames.
+ * <p>
+ * Unlike the tinted logo cache, this cache is limited by the memory its frames
+ * take up, one byte per pixel, since the frames of a long animation may not
+ * all fit. The least recently used frames are evicted first, and simply read
+ * again when needed. Frames handed out must be treated as read-only.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class FrameCache {
+	/**
+	 * The maximum number of bytes of frames to keep
+	 */
+	private final long budget;
+	private final Logger logger;
+
+	/**
+	 * The cached frames, in least to most recently used order
+	 */
+	private final Map<Key, MapTexture> frames = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * The number of bytes of the cached frames
+	 */
+	private long size = 0;
+
+	/**
+	 * Creates a new, empty cache
+	 *
+	 * @param budget the maximum number of bytes of frames to keep
+	 * @param logger the logger to report frames that could not be read to
+	 */
+	public FrameCache(long budget, Logger logger) {
+		this.budget = budget;
+		this.logger = logger;
+	}
+
+	/**
+	 * Gets a frame of an animated logo, tinted with a color
+	 * <p>
+	 * If the frame is not cached, it is read and tinted on the calling thread,
+	 * without holding up other threads using the cache.
+	 *
+	 * @param animation the animation of the logo
+	 * @param index     the index of the frame
+	 * @param color     the color to tint with, or
+	 *                  {@link MapColorPalette#COLOR_TRANSPARENT} for the frame as
+	 *                  it is
+	 * @return the frame, which must not be modified
+	 */
+	public MapTexture get(AnimationFile animation, int index, byte color) {
+		Key key = new Key(animation, index, color);
+		synchronized (this) {
+			MapTexture frame = this.frames.get(key);
+			if (frame != null) {
+				return frame;
+			}
+		}
+
+		MapTexture frame;
+		if (color != MapColorPalette.COLOR_TRANSPARENT) {
+			frame = TintedLogoCache.tint(this.get(animation, index, MapColorPalette.COLOR_TRANSPARENT), color);
+		} else {
+			try {
+				frame = animation.readFrame(index);
+			} catch (IOException e) {
+				// Show nothing rather than failing every tick
+				this.logger.log(Level.WARNING, "Could not read frame " + index + " of an animated logo", e);
+				frame = MapTexture.createEmpty(animation.getWidth(), animation.getHeight());
+			}
+		}
+
+		synchronized (this) {
+			// Another thread may have read the frame in the meantime
+			MapTexture existing = this.frames.putIfAbsent(key, frame);
+			if (existing != null) {
+				return existing;
+			}
+			this.size += FrameCache.sizeOf(frame);
+			this.evict();
+		}
+		return frame;
+	}
+
+	/**
+	 * Gets the number of bytes of the cached frames
+	 *
+	 * @return the number of bytes
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the maximum number of bytes of frames kept
+	 *
+	 * @return the number of bytes
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Removes all cached frames
+	 */
+	public synchronized void clear() {
+		this.frames.clear();
+		this.size = 0;
+	}
+
+	private void evict() {
+		Iterator<MapTexture> iterator = this.frames.values().iterator();
+		// Always keep the frame just added, even if it alone is over budget
+		while (this.size > this.budget && this.frames.size() > 1) {
+			this.size -= FrameCache.sizeOf(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	private static long sizeOf(MapTexture frame) {
+		return (long) frame.getWidth() * frame.getHeight();
+	}
+
+	/**
+	 * The frame of an animation in a color
+	 */
+	private static final class Key {
+		private final AnimationFile animation;
+		private final int index;
+		private final byte color;
+
+		Key(AnimationFile animation, int index, byte color) {
+			this.animation = animation;
+			this.index = index;
+			this.color = color;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.animation == other.animation && this.index == other.index && this.color == other.color;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(this.animation) * 31 + this.index) * 31 + this.color;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+
+/**
+ * Paints the logos of a display onto a canvas
+ * <p>
+ * A painter reads the logos straight from the simulation, so the same painter
+ * can paint onto the layer of a single display, or onto a frame shared by a
+ * {@link BroadcastGroup}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public interface FramePainter {
+	/**
+	 * Paints the logos at their current positions and colors
+	 * <p>
+	 * The canvas must be the same one every time, since only what changed since
+	 * the last call is painted.
+	 *
+	 * @param canvas the canvas to paint on
+	 * @return the number of pixels written
+	 */
+	int paint(MapCanvas canvas);
+
+	/**
+	 * Gets the region changed by the last call to {@link #paint(MapCanvas)}
+	 *
+	 * @return the changed region
+	 */
+	DirtyRegion getDirtyRegion();
+
+	/**
+	 * Releases any resources held by this painter
+	 */
+	default void dispose() {
+	}
+}
@@ -0,0 +1,172 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.logging.Logger;
+
+/**
+ * Lowers how often the displays are painted while the server is struggling
+ * <p>
+ * This runs once per tick, and keeps an average of the time between ticks. If
+ * the server falls behind its 20 ticks per second, the displays are painted
+ * only every second tick, and then only every fourth tick. Once the server has
+ * kept up for a while again, the rate is raised one step at a time.
+ * <p>
+ * Only the painting is slowed down, the logos still move every tick. They keep
+ * their speed, and just jump further between frames.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class FrameRateScheduler implements Runnable {
+	/**
+	 * The number of ticks between frames at each level
+	 */
+	private static final int[] DIVISORS = { 1, 2, 4 };
+
+	/**
+	 * The time between ticks when the server keeps up
+	 */
+	private static final double TICK_MILLIS = 50.0;
+	/**
+	 * The average time between ticks above which the rate is lowered
+	 */
+	private static final double LOWER_MILLIS = 52.5;
+	/**
+	 * The average time between ticks below which the rate may be raised
+	 */
+	private static final double RAISE_MILLIS = 50.5;
+	/**
+	 * How strongly a single tick counts towards the average
+	 */
+	private static final double SMOOTHING = 0.05;
+
+	/**
+	 * The number of ticks between two decisions
+	 */
+	private static final int CHECK_TICKS = 20;
+	/**
+	 * The number of decisions in a row that must find headroom before the rate
+	 * is raised
+	 */
+	private static final int RAISE_CHECKS = 5;
+
+	private final Logger logger;
+
+	private long lastTickNanos = 0;
+	private double averageMillis = FrameRateScheduler.TICK_MILLIS;
+	private int ticksUntilCheck = FrameRateScheduler.CHECK_TICKS;
+	private int headroomChecks = 0;
+	private int level = 0;
+	private long tick = 0;
+
+	/**
+	 * Creates a new scheduler
+	 *
+	 * @param logger the logger to report rate changes to
+	 */
+	public FrameRateScheduler(Logger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * Measures the time since the last tick, and changes the rate if needed
+	 * <p>
+	 * This must be run once every tick.
+	 */
+	@Override
+	public void run() {
+		long now = System.nanoTime();
+		this.tick++;
+		if (this.lastTickNanos != 0) {
+			double millis = (now - this.lastTickNanos) / 1_000_000.0;
+			this.averageMillis += (millis - this.averageMillis) * FrameRateScheduler.SMOOTHING;
+		}
+		this.lastTickNanos = now;
+
+		if (--this.ticksUntilCheck > 0) {
+			return;
+		}
+		this.ticksUntilCheck = FrameRateScheduler.CHECK_TICKS;
+
+		if (this.averageMillis > FrameRateScheduler.LOWER_MILLIS) {
+			this.headroomChecks = 0;
+			if (this.level < FrameRateScheduler.DIVISORS.length - 1) {
+				this.setLevel(this.level + 1);
+			}
+		} else if (this.averageMillis < FrameRateScheduler.RAISE_MILLIS && this.level > 0) {
+			if (++this.headroomChecks >= FrameRateScheduler.RAISE_CHECKS) {
+				this.headroomChecks = 0;
+				this.setLevel(this.level - 1);
+			}
+		} else {
+			this.headroomChecks = 0;
+		}
+	}
+
+	/**
+	 * Checks whether a display should be painted on this tick
+	 * <p>
+	 * Displays with different phases are painted on different ticks, so that
+	 * not every display is painted on the same tick when the rate is lowered.
+	 *
+	 * @param phase the phase of the display, any number
+	 * @return {@code true} if the display should be painted
+	 */
+	public boolean isFrameDue(int phase) {
+		return this.isFrameDue(phase, 1);
+	}
+
+	/**
+	 * Checks whether a display should be painted on this tick, at a rate
+	 * lowered further by its {@link DetailLevel}
+	 *
+	 * @param phase         the phase of the display, any number
+	 * @param detailDivisor the number of ticks between frames of the display
+	 *                      while the server keeps up
+	 * @return {@code true} if the display should be painted
+	 */
+	public boolean isFrameDue(int phase, int detailDivisor) {
+		long divisor = (long) this.getDivisor() * detailDivisor;
+		return Math.floorMod(this.tick + phase, divisor) == 0;
+	}
+
+	/**
+	 * Gets the number of ticks between frames
+	 *
+	 * @return the number of ticks, {@code 1} if the server keeps up
+	 */
+	public int getDivisor() {
+		return FrameRateScheduler.DIVISORS[this.level];
+	}
+
+	/**
+	 * Gets the average time between ticks
+	 *
+	 * @return the average time in milliseconds
+	 */
+	public double getAverageTickMillis() {
+		return this.averageMillis;
+	}
+
+	private void setLevel(int level) {
+		this.level = level;
+		this.logger.info(String.format("Painting maps %d times per second, ticks take %.1f ms on average",
+				20 / this.getDivisor(), this.averageMillis));
+	}
+}
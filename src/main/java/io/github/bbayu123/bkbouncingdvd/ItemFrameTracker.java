@@ -0,0 +1,279 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import com.bergerkiller.bukkit.common.map.MapDisplayProperties;
+
+/**
+ * Keeps track of the item frames in loaded chunks that hold map items, to
+ * pick the {@link DetailLevel} of the displays
+ * <p>
+ * The frames are found when their chunk loads, when a player puts an item in
+ * one, or when a {@link VideoWall} is placed, and forgotten when their chunk
+ * unloads. Frames that broke or were given another item are dropped the next
+ * time the level of their display is picked. So no chunks or players are ever
+ * searched, and picking a level only looks at the frames and viewers of that
+ * one display.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class ItemFrameTracker implements Listener {
+	private final Plugin plugin;
+
+	/**
+	 * The frames holding each display, by the unique ID of the display
+	 */
+	private final Map<UUID, List<ItemFrame>> frames = new HashMap<>();
+
+	/**
+	 * Creates a new tracker
+	 *
+	 * @param plugin the plugin to schedule tasks for
+	 */
+	public ItemFrameTracker(Plugin plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Adds the frames in all chunks that are already loaded
+	 * <p>
+	 * This should be called once when the plugin is enabled, after which the
+	 * events keep track of the chunks.
+	 *
+	 * @param server the server to find the chunks on
+	 */
+	public void addLoadedChunks(Server server) {
+		for (World world : server.getWorlds()) {
+			for (Chunk chunk : world.getLoadedChunks()) {
+				this.addChunk(chunk);
+			}
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkLoad(ChunkLoadEvent event) {
+		this.addChunk(event.getChunk());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		for (Entity entity : event.getChunk().getEntities()) {
+			if (entity instanceof ItemFrame) {
+				this.remove((ItemFrame) entity);
+			}
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onInteractEntity(PlayerInteractEntityEvent event) {
+		if (event.getRightClicked() instanceof ItemFrame) {
+			ItemFrame frame = (ItemFrame) event.getRightClicked();
+			// The item is only put in the frame after the event
+			Bukkit.getScheduler().runTask(this.plugin, () -> this.add(frame));
+		}
+	}
+
+	/**
+	 * Adds a frame, if it holds a map item
+	 *
+	 * @param frame the item frame
+	 */
+	public void add(ItemFrame frame) {
+		UUID id = ItemFrameTracker.getDisplayId(frame.getItem());
+		if (id == null) {
+			return;
+		}
+		List<ItemFrame> displayFrames = this.frames.computeIfAbsent(id, key -> new ArrayList<>(1));
+		if (!displayFrames.contains(frame)) {
+			displayFrames.add(frame);
+		}
+	}
+
+	/**
+	 * Picks how often a display is painted
+	 * <p>
+	 * A display is painted every tick if one of its viewers holds the map, or is
+	 * within {@value DetailLevel#FULL_DISTANCE} blocks of a frame holding it. It
+	 * is painted less often if the nearest viewer is further away, and not at
+	 * all if every viewer is beyond the view distance of the server, see
+	 * {@link DetailLevel#of(double, double)}. If none of the frames are known,
+	 * the display is painted every tick, as it would be without this tracker.
+	 * <p>
+	 * This should only be called every so often, since it looks at every frame
+	 * and viewer of the display.
+	 *
+	 * @param id      the unique ID of the display
+	 * @param viewers the players viewing the display
+	 * @return the detail level
+	 */
+	public DetailLevel getDetailLevel(UUID id, List<Player> viewers) {
+		if (viewers.isEmpty()) {
+			return DetailLevel.FROZEN;
+		}
+		for (Player viewer : viewers) {
+			if (ItemFrameTracker.isHeldBy(id, viewer)) {
+				return DetailLevel.FULL;
+			}
+		}
+
+		List<ItemFrame> displayFrames = this.frames.get(id);
+		if (displayFrames == null) {
+			return DetailLevel.FULL;
+		}
+		double nearest = Double.MAX_VALUE;
+		for (Iterator<ItemFrame> iterator = displayFrames.iterator(); iterator.hasNext();) {
+			ItemFrame frame = iterator.next();
+			if (!frame.isValid() || !id.equals(ItemFrameTracker.getDisplayId(frame.getItem()))) {
+				iterator.remove();
+				continue;
+			}
+			Location location = frame.getLocation();
+			for (Player viewer : viewers) {
+				if (viewer.getWorld() == location.getWorld()) {
+					nearest = Math.min(nearest, location.distanceSquared(viewer.getLocation()));
+				}
+			}
+		}
+		if (displayFrames.isEmpty()) {
+			this.frames.remove(id);
+			return DetailLevel.FULL;
+		}
+
+		return DetailLevel.of(Math.sqrt(nearest), Bukkit.getViewDistance() * 16.0);
+	}
+
+	/**
+	 * Finds the frame holding a display that is nearest to a location
+	 * <p>
+	 * Frames that broke or were given another item are skipped, but only
+	 * dropped by {@link #getDetailLevel(UUID, List)}.
+	 *
+	 * @param id       the unique ID of the display
+	 * @param location the location to measure from
+	 * @return the location of the nearest frame in the same world, or
+	 *         {@code null} if there is none
+	 */
+	public Location getNearestFrame(UUID id, Location location) {
+		List<ItemFrame> displayFrames = this.frames.get(id);
+		if (displayFrames == null) {
+			return null;
+		}
+		Location nearest = null;
+		double nearestDistance = Double.MAX_VALUE;
+		for (ItemFrame frame : displayFrames) {
+			if (!frame.isValid() || frame.getWorld() != location.getWorld()) {
+				continue;
+			}
+			Location frameLocation = frame.getLocation();
+			double distance = frameLocation.distanceSquared(location);
+			if (distance < nearestDistance) {
+				nearest = frameLocation;
+				nearestDistance = distance;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Measures how far the nearest viewer is from a display
+	 * <p>
+	 * A viewer holding the map is right at the display, and so is every viewer
+	 * if none of the frames are known, like in
+	 * {@link #getDetailLevel(UUID, List)}.
+	 *
+	 * @param id      the unique ID of the display
+	 * @param viewers the players viewing the display
+	 * @return the distance in blocks from the nearest viewer to the nearest frame
+	 *         holding the display, or the view distance of the server if there
+	 *         is none in the world of any viewer
+	 */
+	public double getDistance(UUID id, List<Player> viewers) {
+		if (!this.frames.containsKey(id)) {
+			return 0.0;
+		}
+		double nearest = Bukkit.getViewDistance() * 16.0;
+		for (Player viewer : viewers) {
+			if (ItemFrameTracker.isHeldBy(id, viewer)) {
+				return 0.0;
+			}
+			Location location = this.getNearestFrame(id, viewer.getLocation());
+			if (location != null) {
+				nearest = Math.min(nearest, Math.sqrt(location.distanceSquared(viewer.getLocation())));
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Checks whether a player holds the map of a display in either hand
+	 *
+	 * @param id     the unique ID of the display
+	 * @param player the player
+	 * @return {@code true} if the player holds the map
+	 */
+	public static boolean isHeldBy(UUID id, Player player) {
+		return id.equals(ItemFrameTracker.getDisplayId(player.getInventory().getItemInMainHand()))
+				|| id.equals(ItemFrameTracker.getDisplayId(player.getInventory().getItemInOffHand()));
+	}
+
+	private void addChunk(Chunk chunk) {
+		for (Entity entity : chunk.getEntities()) {
+			if (entity instanceof ItemFrame) {
+				this.add((ItemFrame) entity);
+			}
+		}
+	}
+
+	private void remove(ItemFrame frame) {
+		UUID id = ItemFrameTracker.getDisplayId(frame.getItem());
+		List<ItemFrame> displayFrames = id == null ? null : this.frames.get(id);
+		if (displayFrames != null && displayFrames.remove(frame) && displayFrames.isEmpty()) {
+			this.frames.remove(id);
+		}
+	}
+
+	private static UUID getDisplayId(ItemStack item) {
+		MapDisplayProperties properties = item == null ? null : MapDisplayProperties.of(item);
+		return properties == null ? null : properties.getUniqueId();
+	}
+}
@@ -0,0 +1,258 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * A logo that can be bounced around on the displays
+ * <p>
+ * A still logo is kept in map colors, along with a cache of tinted copies, see
+ * {@link TintedLogoCache}. The frames of an animated logo are only read from
+ * its {@link AnimationFile} when they are needed, and kept in the plugin-wide
+ * {@link FrameCache}. A Java2D image of the logo is only made when it is first
+ * asked for.
+ * <p>
+ * Animated logos play in step with the server ticks, so every display shows
+ * the same frame of a logo at the same time, see {@link #getFrameIndex(long)}.
+ * <p>
+ * Logos bounce with their opaque pixels, see {@link #getMask()}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class Logo {
+	/**
+	 * The maximum number of tinted copies kept in the cache
+	 */
+	private static final int TINTED_CACHE_SIZE = 64;
+
+	private final String name;
+	private final int width;
+	private final int height;
+
+	/**
+	 * The still logo and its tinted copies, {@code null} if the logo is animated
+	 */
+	private final MapTexture texture;
+	private final TintedLogoCache tinted;
+
+	/**
+	 * The frames of the animated logo, {@code null} if the logo is still
+	 */
+	private final AnimationFile animation;
+	private final FrameCache frameCache;
+	/**
+	 * The tick each frame ends at, counted from the start of the animation
+	 */
+	private final long[] frameEnds;
+
+	private BufferedImage image = null;
+	private CollisionMask mask = null;
+
+	/**
+	 * Creates a new still logo
+	 *
+	 * @param name    the name of the logo
+	 * @param texture the logo in map colors
+	 */
+	public Logo(String name, MapTexture texture) {
+		this.name = name;
+		this.width = texture.getWidth();
+		this.height = texture.getHeight();
+		this.texture = texture;
+		this.tinted = new TintedLogoCache(texture, Logo.TINTED_CACHE_SIZE);
+		this.animation = null;
+		this.frameCache = null;
+		this.frameEnds = null;
+	}
+
+	/**
+	 * Creates a new animated logo
+	 *
+	 * @param name       the name of the logo
+	 * @param animation  the frames of the logo in map colors
+	 * @param frameCache the cache to keep the frames in
+	 */
+	public Logo(String name, AnimationFile animation, FrameCache frameCache) {
+		this.name = name;
+		this.width = animation.getWidth();
+		this.height = animation.getHeight();
+		this.texture = null;
+		this.tinted = null;
+		this.animation = animation;
+		this.frameCache = frameCache;
+		this.frameEnds = new long[animation.getFrameCount()];
+		long end = 0;
+		for (int i = 0; i < this.frameEnds.length; i++) {
+			end += animation.getDelay(i);
+			this.frameEnds[i] = end;
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Checks whether the logo is animated
+	 *
+	 * @return {@code true} if the logo has more than one frame
+	 */
+	public boolean isAnimated() {
+		return this.animation != null;
+	}
+
+	/**
+	 * Gets the number of frames of the logo
+	 *
+	 * @return the number of frames, {@code 1} for a still logo
+	 */
+	public int getFrameCount() {
+		return this.frameEnds == null ? 1 : this.frameEnds.length;
+	}
+
+	/**
+	 * Gets the frame shown at a tick
+	 * <p>
+	 * The animation loops forever, starting at tick {@code 0}.
+	 *
+	 * @param tick the tick, e.g. the
+	 *             {@link io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation#getStepCount()
+	 *             step count} of the simulation
+	 * @return the index of the frame, always {@code 0} for a still logo
+	 */
+	public int getFrameIndex(long tick) {
+		if (this.frameEnds == null) {
+			return 0;
+		}
+		long time = Math.floorMod(tick, this.frameEnds[this.frameEnds.length - 1]);
+		int found = Arrays.binarySearch(this.frameEnds, time);
+		return found >= 0 ? found + 1 : -found - 1;
+	}
+
+	/**
+	 * Gets the first frame of the logo in map colors
+	 *
+	 * @return the logo, which must not be modified
+	 * @see #getFrame(int)
+	 */
+	public MapTexture getTexture() {
+		return this.getFrame(0);
+	}
+
+	/**
+	 * Gets a frame of the logo in map colors
+	 *
+	 * @param index the index of the frame
+	 * @return the frame, which must not be modified
+	 */
+	public MapTexture getFrame(int index) {
+		if (this.animation == null) {
+			return this.texture;
+		}
+		return this.frameCache.get(this.animation, index, MapColorPalette.COLOR_TRANSPARENT);
+	}
+
+	/**
+	 * Gets a frame of the logo tinted with a color
+	 * <p>
+	 * All non-transparent pixels of the frame are replaced with the color.
+	 *
+	 * @param index the index of the frame
+	 * @param color the color to tint with
+	 * @return the tinted frame, which must not be modified
+	 */
+	public MapTexture getTinted(int index, byte color) {
+		if (this.animation == null) {
+			return this.tinted.get(color);
+		}
+		return this.frameCache.get(this.animation, index, color);
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Gets the opaque pixels of the logo, which it bounces with
+	 * <p>
+	 * For an animated logo, these are the pixels opaque in any of its frames, so
+	 * that the logo keeps bouncing off the same walls while it plays. The mask
+	 * is only made when it is first asked for.
+	 *
+	 * @return the mask, which must not be modified
+	 */
+	public synchronized CollisionMask getMask() {
+		if (this.mask == null) {
+			CollisionMask mask = new CollisionMask(this.width, this.height);
+			for (int i = 0; i < this.getFrameCount(); i++) {
+				mask.add(CollisionMask.of(this.width, this.height, this.getFrame(i).getBuffer(),
+						MapColorPalette.COLOR_TRANSPARENT), 0, 0);
+			}
+			this.mask = mask;
+		}
+		return this.mask;
+	}
+
+	/**
+	 * Gets the first frame of the logo as a Java2D image
+	 * <p>
+	 * The image is made from the map colors of the logo, with every transparent
+	 * map color fully transparent, and every other color fully opaque.
+	 *
+	 * @return the image, which must not be modified
+	 * @see #drawImage(int, BufferedImage)
+	 */
+	public synchronized BufferedImage getImage() {
+		if (this.image == null) {
+			this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
+			this.drawImage(0, this.image);
+		}
+		return this.image;
+	}
+
+	/**
+	 * Draws a frame of the logo into a Java2D image
+	 * <p>
+	 * The same colors are used as for {@link #getImage()}.
+	 *
+	 * @param index  the index of the frame
+	 * @param target the image to draw into, of the same size as the logo
+	 */
+	public void drawImage(int index, BufferedImage target) {
+		byte[] pixels = this.getFrame(index).getBuffer();
+		int[] argb = new int[pixels.length];
+		for (int i = 0; i < pixels.length; i++) {
+			if (pixels[i] != MapColorPalette.COLOR_TRANSPARENT) {
+				argb[i] = 0xFF000000 | MapColorPalette.getRealColor(pixels[i]).getRGB();
+			}
+		}
+		target.setRGB(0, 0, this.width, this.height, argb, 0, this.width);
+	}
+}
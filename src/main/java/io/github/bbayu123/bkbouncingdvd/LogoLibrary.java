@@ -0,0 +1,240 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * All logos that can be bounced around on the displays
+ * <p>
+ * Besides the bundled DVD logo, every PNG or GIF image in the {@code logos}
+ * folder of the plugin is a logo, named after the file. Converting an image to
+ * map colors is slow, so each logo is converted only once, and stored as a
+ * {@link SpriteFile} in the {@code cache} folder. On later starts, only the
+ * hash of the image is computed, and the converted logo is read back from the
+ * cache, unless the image changed.
+ * <p>
+ * GIF images with more than one frame are animated logos. They are stored as
+ * an {@link AnimationFile} instead, and only their header is read on later
+ * starts. Their frames are read when needed, see {@link FrameCache}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class LogoLibrary {
+	/**
+	 * The name of the bundled DVD logo
+	 */
+	public static final String DEFAULT_LOGO = "dvd";
+
+	/**
+	 * The largest width or height a logo may have
+	 */
+	private static final int MAX_SIZE = 1024;
+
+	private static final String SOURCE_EXTENSION = ".png";
+	private static final String ANIMATED_SOURCE_EXTENSION = ".gif";
+	private static final String SPRITE_EXTENSION = ".sprite";
+	private static final String ANIMATION_EXTENSION = ".animation";
+
+	/**
+	 * The logos, by name
+	 */
+	private final Map<String, Logo> logos = new TreeMap<>();
+
+	private final Path logoFolder;
+	private final Path cacheFolder;
+	private final Logger logger;
+	private final FrameCache frameCache;
+
+	/**
+	 * Creates a new, empty library
+	 *
+	 * @param dataFolder the data folder of the plugin
+	 * @param logger     the logger to report logos that could not be loaded to
+	 * @param frameCache the cache to keep the frames of animated logos in
+	 */
+	public LogoLibrary(File dataFolder, Logger logger, FrameCache frameCache) {
+		this.logoFolder = dataFolder.toPath().resolve("logos");
+		this.cacheFolder = dataFolder.toPath().resolve("cache");
+		this.logger = logger;
+		this.frameCache = frameCache;
+	}
+
+	/**
+	 * Loads the bundled logo, and all logos in the {@code logos} folder
+	 * <p>
+	 * Logos in the folder with the same name as the bundled logo replace it, and
+	 * the bundled logo is then not loaded. If the replacing logo cannot be
+	 * loaded, the bundled logo is used after all. Cached logos whose image is
+	 * gone are removed from the cache.
+	 *
+	 * @param defaultLogo the bundled DVD logo image
+	 * @throws IOException if the bundled logo could not be loaded
+	 */
+	public void load(InputStream defaultLogo) throws IOException {
+		this.logos.clear();
+		this.frameCache.clear();
+
+		Files.createDirectories(this.logoFolder);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.logoFolder,
+				"*{" + LogoLibrary.SOURCE_EXTENSION + "," + LogoLibrary.ANIMATED_SOURCE_EXTENSION + "}")) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				boolean animated = fileName.endsWith(LogoLibrary.ANIMATED_SOURCE_EXTENSION);
+				String name = fileName.substring(0, fileName.lastIndexOf('.')).toLowerCase();
+				if (!LogoLibrary.isValidName(name)) {
+					this.logger.warning("Skipped logo " + fileName
+							+ ", names must be 1 to 32 letters, digits, underscores or dashes");
+					continue;
+				}
+				try {
+					this.load(name, Files.readAllBytes(file), animated);
+				} catch (IOException | IllegalArgumentException e) {
+					this.logger.log(Level.WARNING, "Could not load logo " + fileName, e);
+				}
+			}
+		}
+
+		// The bundled logo shares its cache file with a logo replacing it, so it
+		// is not loaded at all then, otherwise each would keep overwriting the
+		// cache of the other
+		if (!this.logos.containsKey(LogoLibrary.DEFAULT_LOGO)) {
+			this.load(LogoLibrary.DEFAULT_LOGO, LogoLibrary.readAll(defaultLogo), false);
+		}
+
+		this.pruneCache();
+	}
+
+	/**
+	 * Gets a logo
+	 *
+	 * @param name the name of the logo
+	 * @return the logo, or {@code null} if there is none with that name
+	 */
+	public Logo get(String name) {
+		return this.logos.get(name);
+	}
+
+	/**
+	 * Gets the bundled DVD logo, or the logo replacing it
+	 *
+	 * @return the default logo
+	 */
+	public Logo getDefault() {
+		return this.logos.get(LogoLibrary.DEFAULT_LOGO);
+	}
+
+	/**
+	 * Gets the names of all logos
+	 *
+	 * @return the names, in alphabetical order
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(new ArrayList<>(this.logos.keySet()));
+	}
+
+	/**
+	 * Checks whether a logo name is valid
+	 * <p>
+	 * Names are 1 to 32 letters, digits, underscores or dashes.
+	 *
+	 * @param name the name
+	 * @return {@code true} if the name is valid
+	 */
+	public static boolean isValidName(String name) {
+		return name.matches("[A-Za-z0-9_-]{1,32}");
+	}
+
+	private void load(String name, byte[] source, boolean animated) throws IOException {
+		byte[] hash = SpriteFile.hash(source);
+		if (animated) {
+			Path animationFile = this.cacheFolder.resolve(name + LogoLibrary.ANIMATION_EXTENSION);
+			AnimationFile animation = AnimationFile.open(animationFile, hash);
+			if (animation == null) {
+				animation = AnimationFile.convert(source, animationFile, hash, LogoLibrary.MAX_SIZE);
+			}
+			// A GIF image with a single frame is just a still logo
+			this.logos.put(name, animation.getFrameCount() > 1 ? new Logo(name, animation, this.frameCache)
+					: new Logo(name, animation.readFrame(0)));
+			return;
+		}
+
+		Path spriteFile = this.cacheFolder.resolve(name + LogoLibrary.SPRITE_EXTENSION);
+
+		MapTexture texture = SpriteFile.read(spriteFile, hash);
+		if (texture == null) {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+			if (image == null) {
+				throw new IllegalArgumentException("Not a readable image");
+			}
+			if (image.getWidth() > LogoLibrary.MAX_SIZE || image.getHeight() > LogoLibrary.MAX_SIZE) {
+				throw new IllegalArgumentException(
+						"Logos can be at most " + LogoLibrary.MAX_SIZE + " pixels wide and high");
+			}
+			texture = MapTexture.fromImage(image);
+			SpriteFile.write(spriteFile, hash, texture);
+		}
+		this.logos.put(name, new Logo(name, texture));
+	}
+
+	private void pruneCache() throws IOException {
+		if (!Files.isDirectory(this.cacheFolder)) {
+			return;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.cacheFolder,
+				"*{" + LogoLibrary.SPRITE_EXTENSION + "," + LogoLibrary.ANIMATION_EXTENSION + "}")) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				String name = fileName.substring(0, fileName.lastIndexOf('.'));
+				if (!this.logos.containsKey(name)) {
+					Files.delete(file);
+				}
+			}
+		}
+	}
+
+	private static byte[] readAll(InputStream stream) throws IOException {
+		byte[] buffer = new byte[8192];
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int read;
+		while ((read = stream.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,180 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * A {@link FramePainter} that paints logos moved by the simulation
+ * <p>
+ * Painting happens in two parts. The positions and colors of the logos are
+ * first {@link #capture() captured} from the simulation, which must happen on
+ * the main thread. The captured logos are then {@link #render(MapCanvas)
+ * rendered}, which only reads what was captured, so it may happen on any
+ * thread, see {@link AsyncFramePainter}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public abstract class LogoPainter implements FramePainter {
+	/**
+	 * The simulation moving the logos
+	 */
+	private final BounceSimulation simulation;
+
+	/**
+	 * The slots of the logos in the simulation
+	 */
+	private final int[] slots;
+
+	/**
+	 * The positions, colors and number of bounces of the logos when they were
+	 * last captured
+	 */
+	private final int[] capturedX;
+	private final int[] capturedY;
+	private final int[] capturedColor;
+	private final int[] capturedBounces;
+	/**
+	 * The simulation step the logos were last captured at
+	 */
+	private long capturedStep = 0;
+
+	/**
+	 * The number of bounces of each logo seen by {@link #pollColorChange(int)}
+	 */
+	private final int[] seenBounces;
+
+	/**
+	 * Creates a new painter
+	 *
+	 * @param simulation the simulation moving the logos, on a server the one of
+	 *                   the plugin, see {@link Main#getSimulation()}
+	 * @param slots      the slots of the logos in the simulation
+	 */
+	protected LogoPainter(BounceSimulation simulation, int[] slots) {
+		this.simulation = simulation;
+		this.slots = slots;
+		this.capturedX = new int[slots.length];
+		this.capturedY = new int[slots.length];
+		this.capturedColor = new int[slots.length];
+		this.capturedBounces = new int[slots.length];
+		this.seenBounces = new int[slots.length];
+	}
+
+	@Override
+	public final int paint(MapCanvas canvas) {
+		this.capture();
+		return this.render(canvas);
+	}
+
+	/**
+	 * Captures the current positions and colors of the logos
+	 * <p>
+	 * This must be called on the main thread, while no render is running.
+	 */
+	public final void capture() {
+		BounceSimulation simulation = this.simulation;
+		this.capturedStep = simulation.getStepCount();
+		for (int i = 0; i < this.slots.length; i++) {
+			int slot = this.slots[i];
+			this.capturedX[i] = simulation.getX(slot);
+			this.capturedY[i] = simulation.getY(slot);
+			this.capturedColor[i] = simulation.getColor(slot);
+			this.capturedBounces[i] = simulation.getBounces(slot);
+		}
+	}
+
+	/**
+	 * Paints the logos as they were last {@link #capture() captured}
+	 *
+	 * @param canvas the canvas to paint on
+	 * @return the number of pixels written
+	 * @see #paint(MapCanvas)
+	 */
+	public abstract int render(MapCanvas canvas);
+
+	/**
+	 * Gets the number of logos painted
+	 *
+	 * @return the number of logos
+	 */
+	protected final int getLogoCount() {
+		return this.slots.length;
+	}
+
+	/**
+	 * Checks whether a logo changed color since this was last called
+	 *
+	 * @param index the index of the logo
+	 * @return {@code true} if the color changed
+	 */
+	protected final boolean pollColorChange(int index) {
+		int bounces = this.capturedBounces[index];
+		if (bounces == this.seenBounces[index]) {
+			return false;
+		}
+		this.seenBounces[index] = bounces;
+		return true;
+	}
+
+	/**
+	 * Gets the captured X position of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the X position
+	 */
+	protected final int getLogoX(int index) {
+		return this.capturedX[index];
+	}
+
+	/**
+	 * Gets the captured Y position of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the Y position
+	 */
+	protected final int getLogoY(int index) {
+		return this.capturedY[index];
+	}
+
+	/**
+	 * Gets the simulation step the logos were captured at
+	 * <p>
+	 * This is the tick to show the frame of an animated logo for, see
+	 * {@link Logo#getFrameIndex(long)}.
+	 *
+	 * @return the step
+	 */
+	protected final long getCapturedStep() {
+		return this.capturedStep;
+	}
+
+	/**
+	 * Gets the captured color of a logo
+	 *
+	 * @param index the index of the logo
+	 * @return the RGB color
+	 * @see BounceSimulation#getColor(int)
+	 */
+	protected final int getLogoColor(int index) {
+		return this.capturedColor[index];
+	}
+}
@@ -0,0 +1,218 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * The logos of a single display in the simulation
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class LogoSet {
+	/**
+	 * The number of bytes {@link #save(BounceSimulation)} needs per logo
+	 */
+	private static final int SAVED_LOGO_BYTES = 2 + 2 + 1 + 4 + 8;
+
+	/**
+	 * The slots of the logos in the simulation
+	 */
+	private final int[] slots;
+	/**
+	 * The collision group of the logos, or {@code -1} if there is only one logo
+	 */
+	private final int collisionGroup;
+	/**
+	 * The simulation step the logos were last touched at, or {@code -1} if they
+	 * never were
+	 */
+	private long touchedStep = -1;
+
+	private LogoSet(int[] slots, int collisionGroup) {
+		this.slots = slots;
+		this.collisionGroup = collisionGroup;
+	}
+
+	/**
+	 * Adds a number of logos to the simulation
+	 * <p>
+	 * A single logo starts at the usual spot. When there are more, they start at
+	 * random positions and directions, and bounce off each other as well as off
+	 * the walls.
+	 *
+	 * @param simulation   the simulation to add the logos to
+	 * @param count        the number of logos
+	 * @param boundsWidth  the width of the area the logos bounce in
+	 * @param boundsHeight the height of the area the logos bounce in
+	 * @param logoWidth    the width of the logo
+	 * @param logoHeight   the height of the logo
+	 * @return the new logos
+	 */
+	public static LogoSet allocate(BounceSimulation simulation, int count, int boundsWidth, int boundsHeight,
+			int logoWidth, int logoHeight) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int[] slots = new int[count];
+		int collisionGroup = count > 1 ? simulation.createGroup() : -1;
+
+		for (int i = 0; i < count; i++) {
+			int slot = simulation.allocate(boundsWidth, boundsHeight, logoWidth, logoHeight, random.nextLong());
+			if (count > 1) {
+				int x = random.nextInt(Math.max(boundsWidth - logoWidth - 1, 1));
+				int y = random.nextInt(Math.max(boundsHeight - logoHeight - 1, 1));
+				simulation.place(slot, x, y, random.nextBoolean(), random.nextBoolean());
+				simulation.addToGroup(collisionGroup, slot);
+			}
+			slots[i] = slot;
+		}
+		return new LogoSet(slots, collisionGroup);
+	}
+
+	/**
+	 * Removes the logos from the simulation
+	 *
+	 * @param simulation the simulation the logos were added to
+	 */
+	public void free(BounceSimulation simulation) {
+		for (int slot : this.slots) {
+			simulation.free(slot);
+		}
+		if (this.collisionGroup != -1) {
+			simulation.freeGroup(this.collisionGroup);
+		}
+	}
+
+	/**
+	 * Makes the logos bounce with their opaque pixels, and off obstacles
+	 * <p>
+	 * This should be called right after {@link #allocate(BounceSimulation, int, int, int, int, int)
+	 * allocate}, before the logos are restored, so they are restored within the
+	 * walls they bounce off. See {@link BounceSimulation#setMask(int, CollisionMask)}
+	 * and {@link BounceSimulation#setObstacles(int, CollisionMask)}.
+	 *
+	 * @param simulation the simulation the logos were added to
+	 * @param mask       the opaque pixels of the logo
+	 * @param obstacles  the obstacles, or {@code null} if there are none
+	 */
+	public void setMasks(BounceSimulation simulation, CollisionMask mask, CollisionMask obstacles) {
+		for (int slot : this.slots) {
+			simulation.setMask(slot, mask);
+			simulation.setObstacles(slot, obstacles);
+		}
+	}
+
+	/**
+	 * Asks for the logos to be moved on the next simulation step
+	 * <p>
+	 * If steps were skipped since the logos were last touched, e.g. because the
+	 * display had no viewers, the logos first jump ahead to where they would be
+	 * now, see {@link BounceSimulation#advance(int, long)}. Logos that bounce off
+	 * each other or off obstacles cannot jump, so they continue from where they
+	 * stopped.
+	 *
+	 * @param simulation the simulation the logos were added to
+	 */
+	public void touch(BounceSimulation simulation) {
+		long step = simulation.getStepCount();
+		if (step == this.touchedStep) {
+			return;
+		}
+		if (this.touchedStep != -1 && this.collisionGroup == -1) {
+			long skipped = step - this.touchedStep - 1;
+			for (int slot : this.slots) {
+				simulation.advance(slot, skipped);
+			}
+		}
+		this.touchedStep = step;
+
+		for (int slot : this.slots) {
+			simulation.touch(slot);
+		}
+	}
+
+	/**
+	 * Saves the positions, directions and colors of the logos
+	 * <p>
+	 * Each logo takes up 17 bytes: the X and Y position as 2 bytes each, the
+	 * directions as 1 byte, the number of bounces as 4 bytes and the seed of the
+	 * colors as 8 bytes.
+	 *
+	 * @param simulation the simulation the logos were added to
+	 * @return the saved logos
+	 * @see #restore(BounceSimulation, byte[])
+	 */
+	public byte[] save(BounceSimulation simulation) {
+		ByteBuffer buffer = ByteBuffer.allocate(this.slots.length * LogoSet.SAVED_LOGO_BYTES);
+		for (int slot : this.slots) {
+			buffer.putShort((short) simulation.getX(slot));
+			buffer.putShort((short) simulation.getY(slot));
+			int directions = (simulation.getVelocityX(slot) > 0 ? 1 : 0) | (simulation.getVelocityY(slot) > 0 ? 2 : 0);
+			buffer.put((byte) directions);
+			buffer.putInt(simulation.getBounces(slot));
+			buffer.putLong(simulation.getSeed(slot));
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Puts the logos back the way they were saved
+	 * <p>
+	 * If fewer logos were saved than there are now, the remaining logos are left
+	 * where they are, see {@link BounceSimulation#restore(int, int, int, boolean, boolean, int, long)
+	 * BounceSimulation.restore}.
+	 *
+	 * @param simulation the simulation the logos were added to
+	 * @param saved      the logos saved by {@link #save(BounceSimulation)}
+	 */
+	public void restore(BounceSimulation simulation, byte[] saved) {
+		ByteBuffer buffer = ByteBuffer.wrap(saved);
+		int count = Math.min(this.slots.length, saved.length / LogoSet.SAVED_LOGO_BYTES);
+		for (int i = 0; i < count; i++) {
+			int x = buffer.getShort();
+			int y = buffer.getShort();
+			byte directions = buffer.get();
+			int bounces = buffer.getInt();
+			long seed = buffer.getLong();
+			simulation.restore(this.slots[i], x, y, (directions & 1) != 0, (directions & 2) != 0, bounces, seed);
+		}
+	}
+
+	/**
+	 * Gets the simulation step the logos were last touched at
+	 *
+	 * @return the step, or {@code -1} if the logos were never touched
+	 * @see #touch(BounceSimulation)
+	 */
+	long getTouchedStep() {
+		return this.touchedStep;
+	}
+
+	/**
+	 * Gets the slots of the logos
+	 *
+	 * @return the slots, which must not be modified
+	 */
+	public int[] getSlots() {
+		return this.slots;
+	}
+}
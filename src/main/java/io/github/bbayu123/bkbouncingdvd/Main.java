@@ -17,13 +17,17 @@
  */
 package io.github.bbayu123.bkbouncingdvd;
 
-import java.awt.GraphicsConfiguration;
-import java.awt.GraphicsEnvironment;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-
-import javax.imageio.ImageIO;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -33,10 +37,11 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.bergerkiller.bukkit.common.map.MapDisplay;
-import com.bergerkiller.bukkit.common.map.MapTexture;
 import com.bergerkiller.bukkit.common.nbt.CommonTagCompound;
 import com.bergerkiller.bukkit.common.utils.ItemUtil;
 
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
 /**
  * This is the main plugin class
  * <p>
@@ -46,15 +51,73 @@ import com.bergerkiller.bukkit.common.utils.ItemUtil;
  *
  */
 public class Main extends JavaPlugin {
-	private static BufferedImage dvdLogoImage = null;
-	private static MapTexture dvdLogoTexture = null;
+	private static LogoLibrary logoLibrary = null;
+	private static FrameCache frameCache = null;
+	private static BounceSimulation simulation = null;
+	private static ExecutorService renderExecutor = null;
+	private static FrameRateScheduler frameRateScheduler = null;
+	private static StateJournal stateJournal = null;
+	private static ItemFrameTracker itemFrameTracker = null;
+	private static SoundMixer soundMixer = null;
+	private static BandwidthBudget bandwidthBudget = null;
+
+	/**
+	 * The number of threads frames are rendered on, see {@link AsyncFramePainter}
+	 */
+	private static final int RENDER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	/**
+	 * The number of ticks between saves of the logos, see {@link StateJournal}
+	 */
+	private static final long SAVE_INTERVAL = 20L * 10;
+
+	/**
+	 * The number of bytes the frames of animated logos may take up, see
+	 * {@link FrameCache}
+	 */
+	private static final long FRAME_CACHE_BYTES = 32L * 1024 * 1024;
+
+	/**
+	 * The maximum number of logos a single display can have
+	 */
+	private static final int MAX_LOGOS = 256;
+
+	/**
+	 * The permission needed to place walls of maps
+	 */
+	private static final String WALL_PERMISSION = "bouncingdvd.wall";
+
+	/**
+	 * The permission needed to see the metrics of the displays
+	 */
+	private static final String STATS_PERMISSION = "bouncingdvd.stats";
+
+	/**
+	 * The number of displays listed by {@code /<command> stats}
+	 */
+	private static final int STATS_DISPLAYS = 10;
+
+	/**
+	 * The options accepted by {@code /<command> get}
+	 */
+	private static final List<String> GET_OPTIONS = Arrays.asList(BouncingDisplay.LOGOS_PROPERTY,
+			BouncingDisplay.GROUP_PROPERTY, BouncingDisplay.LOGO_PROPERTY, BouncingDisplay.DITHER_PROPERTY,
+			BouncingDisplay.PERSONAL_PROPERTY, BouncingDisplay.OBSTACLE_PROPERTY);
 
 	/**
 	 * {@inheritDoc}
 	 * <p>
 	 * What we are doing here is linking the command executor to our plugin, as well
-	 * as loading some map textures that we will be using later. See
-	 * {@link #loadTexture(String)} as to how the textures are loaded.
+	 * as loading the logos that we will be using later. See {@link LogoLibrary} as
+	 * to how the logos are loaded.
+	 * <p>
+	 * We also start the simulation that moves the logos of all displays, which is
+	 * stepped once every tick, the scheduler that decides how often the displays
+	 * are painted, and the threads frames are rendered on. The logos are saved
+	 * every few seconds, so that they continue where they were after a restart.
+	 * The item frames holding maps are tracked, so that displays far away from
+	 * their viewers can be painted less often. The sounds of the bouncing logos
+	 * are mixed once per tick, as set up in the config.
 	 */
 	@Override
 	public void onEnable() {
@@ -62,13 +125,68 @@ public class Main extends JavaPlugin {
 		this.getCommand("bouncingdvd-mw").setExecutor(this);
 		this.getCommand("bouncingdvd-jg").setExecutor(this);
 
+		Main.frameCache = new FrameCache(Main.FRAME_CACHE_BYTES, this.getLogger());
+		Main.logoLibrary = new LogoLibrary(this.getDataFolder(), this.getLogger(), Main.frameCache);
 		try (InputStream stream = this.getResource("dvd_logo.png")) {
-			Main.dvdLogoImage = ImageIO.read(stream);
-			Main.dvdLogoImage.setAccelerationPriority(1);
-			Main.dvdLogoTexture = MapTexture.fromImage(Main.dvdLogoImage);
+			Main.logoLibrary.load(stream);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+
+		Main.simulation = new BounceSimulation();
+		this.getServer().getScheduler().runTaskTimer(this, Main.simulation::step, 1L, 1L);
+		Main.frameRateScheduler = new FrameRateScheduler(this.getLogger());
+		this.getServer().getScheduler().runTaskTimer(this, Main.frameRateScheduler, 1L, 1L);
+
+		Main.stateJournal = new StateJournal(this.getDataFolder(), this.getLogger());
+		try {
+			Main.stateJournal.load();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.getServer().getScheduler().runTaskTimer(this, Main.stateJournal, Main.SAVE_INTERVAL,
+				Main.SAVE_INTERVAL);
+
+		Main.itemFrameTracker = new ItemFrameTracker(this);
+		this.getServer().getPluginManager().registerEvents(Main.itemFrameTracker, this);
+		Main.itemFrameTracker.addLoadedChunks(this.getServer());
+
+		this.saveDefaultConfig();
+		int maxSounds = this.getConfig().getBoolean("sounds.enabled", true)
+				? Math.max(this.getConfig().getInt("sounds.max-per-tick", 4), 0)
+				: 0;
+		Main.soundMixer = new SoundMixer(maxSounds);
+		this.getServer().getScheduler().runTaskTimer(this, Main.soundMixer, 1L, 1L);
+		Main.bandwidthBudget = new BandwidthBudget(
+				Math.max(this.getConfig().getInt("bandwidth.bytes-per-tick", 32768), 0));
+		this.getServer().getScheduler().runTaskTimer(this, Main.bandwidthBudget, 1L, 1L);
+
+		AtomicInteger threadCount = new AtomicInteger();
+		Main.renderExecutor = Executors.newFixedThreadPool(Main.RENDER_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "BKBouncingDVD Render #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * We stop the render threads here. Renders that are still running are allowed
+	 * to finish, but their frames are never shown.
+	 * <p>
+	 * The logos of all displays are saved one last time, see
+	 * {@link StateJournal#close()}.
+	 */
+	@Override
+	public void onDisable() {
+		if (Main.stateJournal != null) {
+			Main.stateJournal.close();
+		}
+		if (Main.renderExecutor != null) {
+			Main.renderExecutor.shutdown();
+			Main.renderExecutor = null;
+		}
 	}
 
 	/**
@@ -84,9 +202,28 @@ public class Main extends JavaPlugin {
 	 * {@link ItemUtil#getMetaTag(ItemStack)} and then call
 	 * {@link CommonTagCompound#putValue(String, Object) putValue(String, Object)}
 	 * on the tag to add properties.
+	 * <p>
+	 * The properties can be given as {@code key=value} options after {@code get},
+	 * e.g. {@code /<command> get logos=20 group=lobby}.
+	 * <p>
+	 * When the player does {@code /<command> wall <columns> <rows>}, the map item
+	 * is put in a wall of item frames instead, see {@link VideoWall}. The same
+	 * options can be given after the number of rows.
+	 * <p>
+	 * {@code /<command> stats} shows what the displays cost, see
+	 * {@link #showStats(CommandSender)}. This can also be done from the console.
 	 */
 	@Override
 	public boolean onCommand(CommandSender sender, Command cmd, String cmdLabel, String[] args) {
+		if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+			if (!sender.hasPermission(Main.STATS_PERMISSION)) {
+				sender.sendMessage(ChatColor.RED + "You do not have permission to see the stats");
+				return true;
+			}
+			Main.showStats(sender);
+			return true;
+		}
+
 		if (!(sender instanceof Player)) {
 			sender.sendMessage("You must be a player in order to do this!");
 			return true;
@@ -97,58 +234,344 @@ public class Main extends JavaPlugin {
 		if (args.length == 0) {
 			return false;
 		}
-		if (args[0].equalsIgnoreCase("get")) {
-			Class<? extends MapDisplay> clazz = null;
-			String title = null;
-			switch (cmd.getName()) {
-			case "bouncingdvd-mc":
-				clazz = io.github.bbayu123.bkbouncingdvd.mapcanvas_version.BouncingDVD.class;
-				title = "Bouncing DVD (MapCanvas)";
-				break;
-			case "bouncingdvd-mw":
-				clazz = io.github.bbayu123.bkbouncingdvd.mapwidget_version.BouncingDVD.class;
-				title = "Bouncing DVD (MapWidget)";
-				break;
-			case "bouncingdvd-jg":
-				clazz = io.github.bbayu123.bkbouncingdvd.graphics2d_version.BouncingDVD.class;
-				title = "Bouncing DVD (Graphics2D)";
-				break;
-			default:
-				return true;
+		try {
+			if (args[0].equalsIgnoreCase("get")) {
+				ItemStack item = Main.createItem(cmd.getName(), player, args, 1);
+				player.getInventory().addItem(item);
+				player.sendMessage(ChatColor.GREEN + "Obtained Bouncing DVD");
+			} else if (args[0].equalsIgnoreCase("wall")) {
+				if (!player.hasPermission(Main.WALL_PERMISSION)) {
+					player.sendMessage(ChatColor.RED + "You do not have permission to place walls");
+					return true;
+				}
+				if (args.length < 3) {
+					return false;
+				}
+				int columns = Main.parseInt("columns", args[1], 1, VideoWall.MAX_SIZE);
+				int rows = Main.parseInt("rows", args[2], 1, VideoWall.MAX_SIZE);
+				ItemStack item = Main.createItem(cmd.getName(), player, args, 3);
+				VideoWall.place(player, item, columns, rows);
+				player.sendMessage(ChatColor.GREEN + "Placed a " + columns + "x" + rows + " Bouncing DVD wall");
 			}
-
-			ItemStack item = MapDisplay.createMapItem(clazz);
-			ItemUtil.getMetaTag(item).putValue("owner", player.getUniqueId());
-			ItemUtil.setDisplayName(item, title);
-			player.getInventory().addItem(item);
-			player.sendMessage(ChatColor.GREEN + "Obtained Bouncing DVD");
+		} catch (IllegalArgumentException e) {
+			player.sendMessage(ChatColor.RED + e.getMessage());
 		}
 		return true;
 	}
 
 	/**
-	 * Gets the DVD logo texture
+	 * Shows the metrics of the displays that are currently attached
 	 * <p>
-	 * This is the texture that was loaded in {@link #onEnable()}.
+	 * The displays that took up the most time in total are listed first, with
+	 * their average and 99th percentile tick times, and the pixels written, area
+	 * changed and logos recolored per tick, see {@link DisplayMetrics}.
 	 *
-	 * @return the DVD logo texture
+	 * @param sender the sender to show the metrics to
 	 */
-	public static MapTexture getDVDLogoTexture() {
-		return Main.dvdLogoTexture;
+	private static void showStats(CommandSender sender) {
+		List<DisplayMetrics> displays = DisplayMetrics.getAttached();
+		displays.sort(Comparator.comparingLong(DisplayMetrics::getTickNanos).reversed());
+
+		double totalMicros = 0;
+		for (DisplayMetrics metrics : displays) {
+			totalMicros += metrics.getAverageTickNanos() / 1000.0;
+		}
+		sender.sendMessage(ChatColor.GOLD + String.format(
+				"%d displays take %.1f ms per tick, painted every %d tick(s), server ticks take %.1f ms",
+				displays.size(), totalMicros / 1000.0, Main.frameRateScheduler.getDivisor(),
+				Main.frameRateScheduler.getAverageTickMillis()));
+		sender.sendMessage(ChatColor.GOLD + String.format("Animated logo frames take %.1f of %.1f MiB",
+				Main.frameCache.getSize() / 1048576.0, Main.frameCache.getBudget() / 1048576.0));
+		if (Main.bandwidthBudget.getBytesPerTick() != 0) {
+			sender.sendMessage(ChatColor.GOLD + String.format(
+					"%d frames waiting for bandwidth, %d bytes per player per tick",
+					Main.bandwidthBudget.getWaiting(), Main.bandwidthBudget.getBytesPerTick()));
+		}
+
+		for (DisplayMetrics metrics : displays.subList(0, Math.min(displays.size(), Main.STATS_DISPLAYS))) {
+			long ticks = Math.max(metrics.getTicks(), 1);
+			sender.sendMessage(String.format(
+					"%s%s%s: %d viewers, %.1f us avg, %.1f us p99, %d px, %d dirty px, %.2f recolors per tick",
+					ChatColor.YELLOW, metrics.getName(), ChatColor.RESET, metrics.getViewers(),
+					metrics.getAverageTickNanos() / 1000.0, metrics.getTickNanosPercentile(0.99) / 1000.0,
+					metrics.getPixelsWritten() / ticks, metrics.getDirtyArea() / ticks,
+					(double) metrics.getRecolors() / ticks));
+		}
+		if (displays.size() > Main.STATS_DISPLAYS) {
+			sender.sendMessage(ChatColor.GRAY + "and " + (displays.size() - Main.STATS_DISPLAYS) + " more");
+		}
 	}
 
 	/**
-	 * Gets the DVD logo image
+	 * Creates the map item for a command
 	 * <p>
-	 * This is the image that was loaded in {@link #onEnable()}.
+	 * The map item is created using {@link MapDisplay#createMapItem(Class)}, the
+	 * class depending on the command used.
 	 *
-	 * @return the DVD logo image
+	 * @param command the name of the command
+	 * @param player  the player creating the item
+	 * @param args    the command arguments
+	 * @param start   the index of the first option in the arguments
+	 * @return the map item
+	 * @throws IllegalArgumentException if the options are not valid
 	 */
-	public static BufferedImage getDVDLogoImage() {
-		return Main.dvdLogoImage;
+	private static ItemStack createItem(String command, Player player, String[] args, int start) {
+		Map<String, String> options = Main.parseOptions(args, start, Main.GET_OPTIONS);
+		int logos = Main.parseInt(options, BouncingDisplay.LOGOS_PROPERTY, 1, 1, Main.MAX_LOGOS);
+		String group = Main.parseName(options, BouncingDisplay.GROUP_PROPERTY);
+		String logo = options.get(BouncingDisplay.LOGO_PROPERTY);
+		boolean dither = Main.parseBoolean(options, BouncingDisplay.DITHER_PROPERTY, false);
+		boolean personal = Main.parseBoolean(options, BouncingDisplay.PERSONAL_PROPERTY, false);
+		String obstacle = options.get(BouncingDisplay.OBSTACLE_PROPERTY);
+		if (personal && group != null) {
+			throw new IllegalArgumentException("Personal maps cannot be in a broadcast group");
+		}
+		if (personal && command.equals("bouncingdvd-jg")) {
+			throw new IllegalArgumentException("Personal maps are not supported by the Graphics2D version");
+		}
+		if (logo != null && Main.logoLibrary.get(logo.toLowerCase()) == null) {
+			throw new IllegalArgumentException(
+					"Unknown logo " + logo + ", expected one of " + Main.logoLibrary.getNames());
+		}
+		if (obstacle != null && Main.logoLibrary.get(obstacle.toLowerCase()) == null) {
+			throw new IllegalArgumentException(
+					"Unknown logo " + obstacle + ", expected one of " + Main.logoLibrary.getNames());
+		}
+
+		Class<? extends MapDisplay> clazz = null;
+		String title = null;
+		switch (command) {
+		case "bouncingdvd-mc":
+			clazz = io.github.bbayu123.bkbouncingdvd.mapcanvas_version.BouncingDVD.class;
+			title = "Bouncing DVD (MapCanvas)";
+			break;
+		case "bouncingdvd-mw":
+			clazz = io.github.bbayu123.bkbouncingdvd.mapwidget_version.BouncingDVD.class;
+			title = "Bouncing DVD (MapWidget)";
+			break;
+		case "bouncingdvd-jg":
+			clazz = io.github.bbayu123.bkbouncingdvd.graphics2d_version.BouncingDVD.class;
+			title = "Bouncing DVD (Graphics2D)";
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown command " + command);
+		}
+
+		ItemStack item = MapDisplay.createMapItem(clazz);
+		CommonTagCompound tag = ItemUtil.getMetaTag(item);
+		tag.putValue("owner", player.getUniqueId());
+		tag.putValue(BouncingDisplay.LOGOS_PROPERTY, logos);
+		if (group != null) {
+			tag.putValue(BouncingDisplay.GROUP_PROPERTY, group);
+		}
+		if (logo != null) {
+			tag.putValue(BouncingDisplay.LOGO_PROPERTY, logo.toLowerCase());
+		}
+		if (dither) {
+			tag.putValue(BouncingDisplay.DITHER_PROPERTY, true);
+		}
+		if (personal) {
+			tag.putValue(BouncingDisplay.PERSONAL_PROPERTY, true);
+		}
+		if (obstacle != null) {
+			tag.putValue(BouncingDisplay.OBSTACLE_PROPERTY, obstacle.toLowerCase());
+		}
+		ItemUtil.setDisplayName(item, title);
+		return item;
 	}
 
-	public static GraphicsConfiguration getDefaultGraphicsConfiguration() {
-		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+	/**
+	 * Parses {@code key=value} options from command arguments
+	 *
+	 * @param args    the command arguments
+	 * @param start   the index of the first option
+	 * @param allowed the names of the options that are allowed
+	 * @return the options, by name
+	 * @throws IllegalArgumentException if an option is malformed or not allowed
+	 */
+	private static Map<String, String> parseOptions(String[] args, int start, List<String> allowed) {
+		Map<String, String> options = new HashMap<>();
+		for (int i = start; i < args.length; i++) {
+			int split = args[i].indexOf('=');
+			if (split <= 0) {
+				throw new IllegalArgumentException("Options must be given as key=value, got " + args[i]);
+			}
+			String key = args[i].substring(0, split).toLowerCase();
+			if (!allowed.contains(key)) {
+				throw new IllegalArgumentException("Unknown option " + key + ", expected one of " + allowed);
+			}
+			options.put(key, args[i].substring(split + 1));
+		}
+		return options;
+	}
+
+	/**
+	 * Gets a whole number option
+	 *
+	 * @param options the options
+	 * @param key     the name of the option
+	 * @param def     the value used if the option is not given
+	 * @param min     the lowest allowed value
+	 * @param max     the highest allowed value
+	 * @return the value of the option
+	 * @throws IllegalArgumentException if the value is not a number, or out of
+	 *                                  range
+	 */
+	private static int parseInt(Map<String, String> options, String key, int def, int min, int max) {
+		String value = options.get(key);
+		if (value == null) {
+			return def;
+		}
+		return Main.parseInt(key, value, min, max);
+	}
+
+	/**
+	 * Parses a whole number argument
+	 *
+	 * @param key   the name of the argument
+	 * @param value the value of the argument
+	 * @param min   the lowest allowed value
+	 * @param max   the highest allowed value
+	 * @return the value of the argument
+	 * @throws IllegalArgumentException if the value is not a number, or out of
+	 *                                  range
+	 */
+	private static int parseInt(String key, String value, int min, int max) {
+		int result;
+		try {
+			result = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " must be a number, got " + value);
+		}
+		if (result < min || result > max) {
+			throw new IllegalArgumentException(key + " must be between " + min + " and " + max + ", got " + value);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets a yes or no option
+	 *
+	 * @param options the options
+	 * @param key     the name of the option
+	 * @param def     the value used if the option is not given
+	 * @return the value of the option
+	 * @throws IllegalArgumentException if the value is not {@code true} or
+	 *                                  {@code false}
+	 */
+	private static boolean parseBoolean(Map<String, String> options, String key, boolean def) {
+		String value = options.get(key);
+		if (value == null) {
+			return def;
+		}
+		if (value.equalsIgnoreCase("true")) {
+			return true;
+		}
+		if (value.equalsIgnoreCase("false")) {
+			return false;
+		}
+		throw new IllegalArgumentException(key + " must be true or false, got " + value);
+	}
+
+	/**
+	 * Gets a name option
+	 * <p>
+	 * Names are 1 to 32 letters, digits, underscores or dashes.
+	 *
+	 * @param options the options
+	 * @param key     the name of the option
+	 * @return the value of the option, or {@code null} if it is not given
+	 * @throws IllegalArgumentException if the value is not a valid name
+	 */
+	private static String parseName(Map<String, String> options, String key) {
+		String value = options.get(key);
+		if (value != null && !value.matches("[A-Za-z0-9_-]{1,32}")) {
+			throw new IllegalArgumentException(
+					key + " must be 1 to 32 letters, digits, underscores or dashes, got " + value);
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the logos that can be shown on the displays
+	 * <p>
+	 * These are the logos that were loaded in {@link #onEnable()}.
+	 *
+	 * @return the logo library
+	 */
+	public static LogoLibrary getLogoLibrary() {
+		return Main.logoLibrary;
+	}
+
+	/**
+	 * Gets the cache the frames of animated logos are kept in
+	 *
+	 * @return the frame cache
+	 */
+	public static FrameCache getFrameCache() {
+		return Main.frameCache;
+	}
+
+	/**
+	 * Gets the simulation that moves the logos of all displays
+	 *
+	 * @return the simulation
+	 */
+	public static BounceSimulation getSimulation() {
+		return Main.simulation;
+	}
+
+	/**
+	 * Gets the scheduler that decides how often the displays are painted
+	 *
+	 * @return the frame rate scheduler
+	 */
+	public static FrameRateScheduler getFrameRateScheduler() {
+		return Main.frameRateScheduler;
+	}
+
+	/**
+	 * Gets the journal the logos of the displays are saved in
+	 *
+	 * @return the state journal
+	 */
+	public static StateJournal getStateJournal() {
+		return Main.stateJournal;
+	}
+
+	/**
+	 * Gets the tracker of the item frames holding the displays
+	 *
+	 * @return the item frame tracker
+	 */
+	public static ItemFrameTracker getItemFrameTracker() {
+		return Main.itemFrameTracker;
+	}
+
+	/**
+	 * Gets the mixer the sounds of bouncing logos are played by
+	 *
+	 * @return the sound mixer
+	 */
+	public static SoundMixer getSoundMixer() {
+		return Main.soundMixer;
+	}
+
+	/**
+	 * Gets the budget that limits the map updates sent to every player
+	 *
+	 * @return the bandwidth budget
+	 */
+	public static BandwidthBudget getBandwidthBudget() {
+		return Main.bandwidthBudget;
+	}
+
+	/**
+	 * Gets the executor frames are rendered on
+	 *
+	 * @return the render executor
+	 */
+	public static Executor getRenderExecutor() {
+		return Main.renderExecutor;
 	}
 }
@@ -0,0 +1,138 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.awt.image.BufferedImage;
+
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+import io.github.bbayu123.bkbouncingdvd.simulation.CollisionMask;
+
+/**
+ * A shape drawn on the background of a display, which the logos bounce off
+ * <p>
+ * The shape is the opaque pixels of a logo, see {@link Logo#getMask()}, drawn
+ * in {@link #COLOR gray} in the middle of the display. The logos bounce off the
+ * shape itself, not the rectangle around it, see
+ * {@link io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation#setObstacles(int, CollisionMask)
+ * BounceSimulation.setObstacles}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class Obstacle {
+	/**
+	 * The map color the obstacle is drawn in
+	 */
+	public static final byte COLOR = MapColorPalette.getColor(96, 96, 96);
+
+	private final Logo logo;
+	private final int x;
+	private final int y;
+
+	/**
+	 * The obstacle on the whole display
+	 */
+	private final CollisionMask mask;
+	/**
+	 * The obstacle in map colors, transparent around the shape
+	 */
+	private final MapTexture texture;
+
+	/**
+	 * Creates a new obstacle in the middle of a display
+	 *
+	 * @param logo   the logo giving the shape of the obstacle
+	 * @param width  the width of the display
+	 * @param height the height of the display
+	 */
+	public Obstacle(Logo logo, int width, int height) {
+		this.logo = logo;
+		this.x = (width - logo.getWidth()) / 2;
+		this.y = (height - logo.getHeight()) / 2;
+
+		CollisionMask shape = logo.getMask();
+		this.mask = new CollisionMask(width, height);
+		this.mask.add(shape, this.x, this.y);
+
+		byte[] pixels = new byte[logo.getWidth() * logo.getHeight()];
+		for (int py = 0; py < logo.getHeight(); py++) {
+			for (int px = 0; px < logo.getWidth(); px++) {
+				if (shape.get(px, py)) {
+					pixels[py * logo.getWidth() + px] = Obstacle.COLOR;
+				}
+			}
+		}
+		this.texture = MapTexture.fromRawData(logo.getWidth(), logo.getHeight(), pixels);
+	}
+
+	/**
+	 * Gets the logo giving the shape of the obstacle
+	 *
+	 * @return the logo
+	 */
+	public Logo getLogo() {
+		return this.logo;
+	}
+
+	/**
+	 * Gets the obstacle on the whole display
+	 *
+	 * @return the mask, of the size of the display, which must not be modified
+	 */
+	public CollisionMask getMask() {
+		return this.mask;
+	}
+
+	/**
+	 * Draws the obstacle onto a canvas of the size of the display
+	 * <p>
+	 * Only the pixels of the shape are written, the rest of the canvas is left
+	 * as it is.
+	 *
+	 * @param canvas the canvas to draw on
+	 */
+	public void draw(MapCanvas canvas) {
+		MapBlendMode blendMode = canvas.getBlendMode();
+		canvas.setBlendMode(MapBlendMode.OVERLAY);
+		canvas.draw(this.texture, this.x, this.y);
+		canvas.setBlendMode(blendMode);
+	}
+
+	/**
+	 * Draws the obstacle onto a Java2D image of the size of the display
+	 * <p>
+	 * Only the pixels of the shape are written, the rest of the image is left as
+	 * it is.
+	 *
+	 * @param target the image to draw on
+	 */
+	public void drawImage(BufferedImage target) {
+		int rgb = MapColorPalette.getRealColor(Obstacle.COLOR).getRGB();
+		for (int py = this.mask.getTop(); py < this.mask.getBottom(); py++) {
+			for (int px = this.mask.getLeft(); px < this.mask.getRight(); px++) {
+				if (this.mask.get(px, py)) {
+					target.setRGB(px, py, rgb);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+/**
+ * Converts RGB colors to map colors with a lookup table
+ * <p>
+ * The table holds the closest {@link MapColorPalette} color for every RGB
+ * color with 6 bits per component, 256 KiB in total. It is filled the first
+ * time it is used, after which converting a pixel is a single array lookup.
+ * Dropping the lowest 2 bits of each component hardly matters, since map
+ * colors are much further apart than that.
+ * <p>
+ * Pixels can optionally be dithered with a 4 by 4 ordered (Bayer) pattern,
+ * which trades color banding in gradients and blended edges for a fine, fixed
+ * pattern. The pattern depends only on the position of the pixel, so it does
+ * not crawl between frames.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class PaletteTable {
+	/**
+	 * The number of bits kept of each color component
+	 */
+	private static final int BITS = 6;
+
+	/**
+	 * How far the dither pattern moves each component, in both directions
+	 */
+	private static final int DITHER_SPREAD = 30;
+
+	/**
+	 * The amount added to each component of a dithered pixel, by position in the
+	 * 4 by 4 pattern
+	 */
+	private static final int[] DITHER_OFFSETS;
+
+	static {
+		int[] bayer = { 0, 8, 2, 10, 12, 4, 14, 6, 3, 11, 1, 9, 15, 7, 13, 5 };
+		DITHER_OFFSETS = new int[bayer.length];
+		for (int i = 0; i < bayer.length; i++) {
+			PaletteTable.DITHER_OFFSETS[i] = (bayer[i] * 2 - 15) * PaletteTable.DITHER_SPREAD / 15;
+		}
+	}
+
+	private PaletteTable() {
+	}
+
+	/**
+	 * Gets the map color closest to an RGB color
+	 *
+	 * @param rgb the RGB color, any alpha is ignored
+	 * @return the map color
+	 */
+	public static byte getColor(int rgb) {
+		return Table.COLORS[PaletteTable.index(rgb)];
+	}
+
+	/**
+	 * Converts a rectangle of RGB pixels to map colors
+	 *
+	 * @param source the RGB pixels of a whole image, any alpha is ignored
+	 * @param stride the width of the image
+	 * @param x      the X position of the rectangle in the image
+	 * @param y      the Y position of the rectangle in the image
+	 * @param width  the width of the rectangle
+	 * @param height the height of the rectangle
+	 * @param target the buffer to write the map colors of the rectangle to, row
+	 *               by row
+	 * @param dither {@code true} to dither the pixels
+	 */
+	public static void convert(int[] source, int stride, int x, int y, int width, int height, byte[] target,
+			boolean dither) {
+		final byte[] colors = Table.COLORS;
+		int index = 0;
+		for (int row = y; row < y + height; row++) {
+			int offset = row * stride + x;
+			if (!dither) {
+				for (int col = 0; col < width; col++) {
+					target[index++] = colors[PaletteTable.index(source[offset + col])];
+				}
+				continue;
+			}
+
+			int patternRow = (row & 3) << 2;
+			for (int col = 0; col < width; col++) {
+				int rgb = source[offset + col];
+				int d = PaletteTable.DITHER_OFFSETS[patternRow | ((x + col) & 3)];
+				int r = PaletteTable.clamp(((rgb >> 16) & 0xFF) + d);
+				int g = PaletteTable.clamp(((rgb >> 8) & 0xFF) + d);
+				int b = PaletteTable.clamp((rgb & 0xFF) + d);
+				target[index++] = colors[PaletteTable.index((r << 16) | (g << 8) | b)];
+			}
+		}
+	}
+
+	private static int index(int rgb) {
+		return ((rgb >> 6) & 0x3F000) | ((rgb >> 4) & 0xFC0) | ((rgb >> 2) & 0x3F);
+	}
+
+	private static int clamp(int component) {
+		return component < 0 ? 0 : component > 0xFF ? 0xFF : component;
+	}
+
+	/**
+	 * Holds the table, so that it is only filled when first used
+	 */
+	private static final class Table {
+		private static final byte[] COLORS = new byte[1 << (PaletteTable.BITS * 3)];
+
+		static {
+			// Look up the middle of each cell, so rounding goes both ways
+			int half = 1 << (7 - PaletteTable.BITS);
+			for (int i = 0; i < Table.COLORS.length; i++) {
+				int r = (((i >> 12) & 0x3F) << 2) | half;
+				int g = (((i >> 6) & 0x3F) << 2) | half;
+				int b = ((i & 0x3F) << 2) | half;
+				Table.COLORS[i] = MapColorPalette.getColor(r, g, b);
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+/**
+ * Pixel loops over raw map color buffers
+ * <p>
+ * These are the loops that touch every pixel of a logo: tinting it, drawing it
+ * onto a buffer while skipping its transparent pixels, and clearing a
+ * rectangle. On Java 8 they are plain loops, see {@link ScalarKernels}. The
+ * plugin jar is a multi-release jar, and on Java 17 or newer, started with
+ * {@code --add-modules jdk.incubator.vector}, they use the Vector API instead,
+ * which works on as many pixels at once as the vector registers of the CPU
+ * hold. Both give exactly the same result. Either way, the loops are picked by
+ * {@link VectorSupport}.
+ * <p>
+ * Buffers hold one {@link MapColorPalette} color per pixel, row by row, like
+ * {@link com.bergerkiller.bukkit.common.map.MapCanvas#getBuffer()
+ * MapCanvas.getBuffer()}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class PixelKernels {
+	private PixelKernels() {
+	}
+
+	/**
+	 * Checks whether the Vector API kernels are used
+	 *
+	 * @return {@code true} if they are used, {@code false} if the plain loops are
+	 */
+	public static boolean isVectorized() {
+		return VectorSupport.isAvailable();
+	}
+
+	/**
+	 * Tints a logo, replacing all non-transparent pixels with a color
+	 * <p>
+	 * The source and target may be the same buffer.
+	 *
+	 * @param source the untinted logo
+	 * @param target the buffer to write the tinted logo to, at least as long as
+	 *               the source
+	 * @param color  the color to tint with
+	 */
+	public static void tint(byte[] source, byte[] target, byte color) {
+		VectorSupport.tint(source, target, color);
+	}
+
+	/**
+	 * Draws a sprite onto a buffer, skipping the transparent pixels of the sprite
+	 * <p>
+	 * The parts of the sprite outside of the target are not drawn.
+	 *
+	 * @param sprite       the sprite
+	 * @param spriteWidth  the width of the sprite
+	 * @param spriteHeight the height of the sprite
+	 * @param target       the buffer to draw onto
+	 * @param targetWidth  the width of the target
+	 * @param targetHeight the height of the target
+	 * @param x            the X position to draw the sprite at
+	 * @param y            the Y position to draw the sprite at
+	 */
+	public static void blit(byte[] sprite, int spriteWidth, int spriteHeight, byte[] target, int targetWidth,
+			int targetHeight, int x, int y) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + spriteWidth, targetWidth);
+		int bottom = Math.min(y + spriteHeight, targetHeight);
+		if (left >= right || top >= bottom) {
+			return;
+		}
+		VectorSupport.blit(sprite, spriteWidth, target, targetWidth, x, y, left, top, right, bottom);
+	}
+
+	/**
+	 * Fills a rectangle of a buffer with a color
+	 * <p>
+	 * The parts of the rectangle outside of the target are not filled.
+	 *
+	 * @param target       the buffer to fill
+	 * @param targetWidth  the width of the target
+	 * @param targetHeight the height of the target
+	 * @param x            the X position of the rectangle
+	 * @param y            the Y position of the rectangle
+	 * @param width        the width of the rectangle
+	 * @param height       the height of the rectangle
+	 * @param color        the color to fill with
+	 */
+	public static void fill(byte[] target, int targetWidth, int targetHeight, int x, int y, int width, int height,
+			byte color) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, targetWidth);
+		int bottom = Math.min(y + height, targetHeight);
+		if (left >= right || top >= bottom) {
+			return;
+		}
+		VectorSupport.fill(target, targetWidth, left, top, right, bottom, color);
+	}
+}
@@ -0,0 +1,63 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.Arrays;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+/**
+ * The plain loop versions of the {@link PixelKernels}
+ * <p>
+ * These are used on Java 8, and on newer versions when the Vector API is not
+ * there, see {@link VectorSupport}. The arguments are already clipped to the
+ * target by {@link PixelKernels}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class ScalarKernels {
+	private ScalarKernels() {
+	}
+
+	static void tint(byte[] source, byte[] target, byte color) {
+		for (int i = 0; i < source.length; i++) {
+			target[i] = source[i] == MapColorPalette.COLOR_TRANSPARENT ? MapColorPalette.COLOR_TRANSPARENT : color;
+		}
+	}
+
+	static void blit(byte[] sprite, int spriteWidth, byte[] target, int targetWidth, int x, int y, int left, int top,
+			int right, int bottom) {
+		for (int row = top; row < bottom; row++) {
+			int spriteOffset = (row - y) * spriteWidth - x;
+			int targetOffset = row * targetWidth;
+			for (int column = left; column < right; column++) {
+				byte color = sprite[spriteOffset + column];
+				if (color != MapColorPalette.COLOR_TRANSPARENT) {
+					target[targetOffset + column] = color;
+				}
+			}
+		}
+	}
+
+	static void fill(byte[] target, int targetWidth, int left, int top, int right, int bottom, byte color) {
+		for (int row = top; row < bottom; row++) {
+			Arrays.fill(target, row * targetWidth + left, row * targetWidth + right, color);
+		}
+	}
+}
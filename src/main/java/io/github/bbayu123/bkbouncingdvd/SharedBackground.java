@@ -0,0 +1,75 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * The black backgrounds of the displays, shared by every display of the same
+ * size and obstacle
+ * <p>
+ * Personal displays, see {@link BouncingDisplay#PERSONAL_PROPERTY}, are
+ * created once for every viewer. Instead of a background layer of their own,
+ * they restore the pixels their logos leave from the shared background, see
+ * {@link DirtyRectRenderer#setBackground(com.bergerkiller.bukkit.common.map.MapCanvas)
+ * DirtyRectRenderer.setBackground}. MapWidget displays, whose widgets need a
+ * base layer, copy it onto that layer once. A background is never written to
+ * after it is made, and it is forgotten once no display uses it anymore.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class SharedBackground {
+	/**
+	 * The backgrounds, by width, height and the name of the obstacle logo
+	 */
+	private static final Map<String, WeakReference<MapTexture>> backgrounds = new HashMap<>();
+
+	private SharedBackground() {
+	}
+
+	/**
+	 * Gets the background for a display size
+	 *
+	 * @param width    the width of the display
+	 * @param height   the height of the display
+	 * @param obstacle the obstacle drawn on the background, or {@code null} if
+	 *                 there is none
+	 * @return the background, which must not be modified
+	 */
+	public static synchronized MapTexture get(int width, int height, Obstacle obstacle) {
+		String key = width + "x" + height + (obstacle == null ? "" : '/' + obstacle.getLogo().getName());
+		WeakReference<MapTexture> reference = SharedBackground.backgrounds.get(key);
+		MapTexture background = reference == null ? null : reference.get();
+		if (background == null) {
+			background = MapTexture.createEmpty(width, height);
+			background.fill(MapColorPalette.COLOR_BLACK);
+			if (obstacle != null) {
+				obstacle.draw(background);
+			}
+			SharedBackground.backgrounds.values().removeIf(old -> old.get() == null);
+			SharedBackground.backgrounds.put(key, new WeakReference<>(background));
+		}
+		return background;
+	}
+}
@@ -0,0 +1,170 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+
+/**
+ * Plays the sounds of logos bouncing off the walls of their maps
+ * <p>
+ * Displays only tell the mixer that their logos bounced, see
+ * {@link #bounce(BouncingDisplay, boolean)}. Once per tick, the mixer works out
+ * for every player which displays they heard bounce, at the item frame
+ * nearest to them, or at the player when they hold the map. Bounces of the
+ * same kind that are close to each other are merged into a single sound, and
+ * every player hears at most a fixed number of sounds per tick, corner hits
+ * first, then the sounds merged from the most bounces.
+ * <p>
+ * So a room with hundreds of displays sends every player just a few sound
+ * packets per tick, instead of one for every bounce.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class SoundMixer implements Runnable {
+	/**
+	 * The distance in blocks within which bounces are merged into one sound
+	 */
+	private static final double MERGE_DISTANCE = 8.0;
+
+	private static final Sound BOUNCE_SOUND = Sound.BLOCK_NOTE_BLOCK_HAT;
+	private static final Sound CORNER_SOUND = Sound.ENTITY_PLAYER_LEVELUP;
+
+	/**
+	 * The most sounds a player hears per tick
+	 */
+	private final int maxSounds;
+
+	/**
+	 * The displays whose logos bounced this tick, and whether one hit a corner
+	 */
+	private final Map<BouncingDisplay, Boolean> bounced = new HashMap<>();
+
+	/**
+	 * The sounds each player hears this tick
+	 */
+	private final Map<Player, List<Voice>> mixes = new HashMap<>();
+
+	/**
+	 * Creates a new mixer
+	 *
+	 * @param maxSounds the most sounds a player hears per tick, {@code 0} to play
+	 *                  no sounds at all
+	 */
+	public SoundMixer(int maxSounds) {
+		this.maxSounds = maxSounds;
+	}
+
+	/**
+	 * Tells the mixer that logos of a display bounced this tick
+	 *
+	 * @param display the display
+	 * @param corner  {@code true} if a logo hit a corner
+	 */
+	public void bounce(BouncingDisplay display, boolean corner) {
+		if (this.maxSounds == 0 || display.getMasterVolume() <= 0.0f) {
+			return;
+		}
+		this.bounced.merge(display, corner, Boolean::logicalOr);
+	}
+
+	/**
+	 * Plays the sounds of the bounces of this tick
+	 * <p>
+	 * This must be run once every tick.
+	 */
+	@Override
+	public void run() {
+		if (this.bounced.isEmpty()) {
+			return;
+		}
+		ItemFrameTracker frames = Main.getItemFrameTracker();
+		for (Map.Entry<BouncingDisplay, Boolean> entry : this.bounced.entrySet()) {
+			BouncingDisplay display = entry.getKey();
+			boolean corner = entry.getValue();
+			UUID id = display.getProperties().getUniqueId();
+			for (Player viewer : display.getViewers()) {
+				// A map in hand is heard where the player is, even if it also
+				// hangs in a frame nearby
+				Location location = ItemFrameTracker.isHeldBy(id, viewer) ? null
+						: frames.getNearestFrame(id, viewer.getLocation());
+				this.mix(viewer, location != null ? location : viewer.getLocation(), corner,
+						display.getMasterVolume());
+			}
+		}
+		this.bounced.clear();
+
+		for (Map.Entry<Player, List<Voice>> entry : this.mixes.entrySet()) {
+			List<Voice> voices = entry.getValue();
+			voices.sort(null);
+			for (int i = 0; i < voices.size() && i < this.maxSounds; i++) {
+				Voice voice = voices.get(i);
+				entry.getKey().playSound(voice.location, voice.corner ? SoundMixer.CORNER_SOUND
+						: SoundMixer.BOUNCE_SOUND, voice.volume, 1.0f);
+			}
+		}
+		this.mixes.clear();
+	}
+
+	private void mix(Player player, Location location, boolean corner, float volume) {
+		List<Voice> voices = this.mixes.computeIfAbsent(player, key -> new ArrayList<>());
+		for (Voice voice : voices) {
+			if (voice.corner == corner && voice.location.getWorld() == location.getWorld()
+					&& voice.location.distanceSquared(location) <= SoundMixer.MERGE_DISTANCE
+							* SoundMixer.MERGE_DISTANCE) {
+				voice.count++;
+				voice.volume = Math.max(voice.volume, volume);
+				return;
+			}
+		}
+		voices.add(new Voice(location, corner, volume));
+	}
+
+	/**
+	 * A sound merged from the bounces close to one location
+	 */
+	private static final class Voice implements Comparable<Voice> {
+		private final Location location;
+		private final boolean corner;
+		private float volume;
+		private int count = 1;
+
+		Voice(Location location, boolean corner, float volume) {
+			this.location = location;
+			this.corner = corner;
+			this.volume = volume;
+		}
+
+		@Override
+		public int compareTo(Voice other) {
+			// Corner hits first, then the sounds of the most bounces
+			if (this.corner != other.corner) {
+				return this.corner ? -1 : 1;
+			}
+			return Integer.compare(other.count, this.count);
+		}
+	}
+}
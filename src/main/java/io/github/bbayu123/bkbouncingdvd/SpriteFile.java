@@ -0,0 +1,135 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * Reads and writes logos converted to map colors
+ * <p>
+ * A sprite file holds a logo exactly as it is drawn on a map: one
+ * {@link com.bergerkiller.bukkit.common.map.MapColorPalette MapColorPalette}
+ * color per pixel. Along with it, the SHA-256 hash of the image it was
+ * converted from is stored, so a changed image is noticed and converted again.
+ * <p>
+ * The layout of a sprite file is
+ * <ol>
+ * <li>the 4 bytes {@code BDVS}</li>
+ * <li>the version of the layout, 1 byte</li>
+ * <li>the hash of the source image, 32 bytes</li>
+ * <li>the width and height, 2 bytes each</li>
+ * <li>the colors of the pixels, one byte each, row by row</li>
+ * </ol>
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class SpriteFile {
+	private static final byte[] MAGIC = "BDVS".getBytes(StandardCharsets.US_ASCII);
+	private static final byte VERSION = 1;
+	private static final int HASH_LENGTH = 32;
+	private static final int HEADER_LENGTH = SpriteFile.MAGIC.length + 1 + SpriteFile.HASH_LENGTH + 2 + 2;
+
+	private SpriteFile() {
+	}
+
+	/**
+	 * Computes the hash a sprite file stores of its source image
+	 *
+	 * @param source the bytes of the source image
+	 * @return the hash
+	 */
+	public static byte[] hash(byte[] source) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(source);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads a sprite file, if it was converted from the given source image
+	 *
+	 * @param file the sprite file
+	 * @param hash the hash of the source image
+	 * @return the sprite, or {@code null} if the file does not exist, is damaged,
+	 *         or was converted from a different image
+	 * @throws IOException if the file could not be read
+	 */
+	public static MapTexture read(Path file, byte[] hash) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		if (buffer.remaining() < SpriteFile.HEADER_LENGTH) {
+			return null;
+		}
+
+		byte[] magic = new byte[SpriteFile.MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, SpriteFile.MAGIC) || buffer.get() != SpriteFile.VERSION) {
+			return null;
+		}
+		byte[] storedHash = new byte[SpriteFile.HASH_LENGTH];
+		buffer.get(storedHash);
+		if (!Arrays.equals(storedHash, hash)) {
+			return null;
+		}
+
+		int width = Short.toUnsignedInt(buffer.getShort());
+		int height = Short.toUnsignedInt(buffer.getShort());
+		if (width == 0 || height == 0 || buffer.remaining() != width * height) {
+			return null;
+		}
+		byte[] pixels = new byte[width * height];
+		buffer.get(pixels);
+		return MapTexture.fromRawData(width, height, pixels);
+	}
+
+	/**
+	 * Writes a sprite file
+	 *
+	 * @param file   the sprite file
+	 * @param hash   the hash of the source image
+	 * @param sprite the sprite converted from the source image
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(Path file, byte[] hash, MapTexture sprite) throws IOException {
+		byte[] pixels = sprite.getBuffer();
+		ByteBuffer buffer = ByteBuffer.allocate(SpriteFile.HEADER_LENGTH + pixels.length);
+		buffer.put(SpriteFile.MAGIC);
+		buffer.put(SpriteFile.VERSION);
+		buffer.put(hash);
+		buffer.putShort((short) sprite.getWidth());
+		buffer.putShort((short) sprite.getHeight());
+		buffer.put(pixels);
+
+		Files.createDirectories(file.getParent());
+		Files.write(file, buffer.array());
+	}
+}
@@ -0,0 +1,346 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the logos of the displays where they were across restarts
+ * <p>
+ * Displays {@link #track(UUID, LogoSet) track} their logos while they are
+ * attached, and get them back the way they were saved. Every few seconds, the
+ * logos that moved since they were last saved are {@link LogoSet#save(io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation)
+ * saved} on the main thread, which only takes 17 bytes per logo. All of them
+ * are then appended to the journal file in one write, on a thread of its own.
+ * Once the file has grown to several times the size of what it holds, it is
+ * rewritten with only the latest state of each display.
+ * <p>
+ * The layout of the journal file is
+ * <ol>
+ * <li>the 4 bytes {@code BDVJ}</li>
+ * <li>the version of the layout, 1 byte</li>
+ * <li>any number of records, each made of the id of a display as 16 bytes,
+ * the length of the saved logos as 2 bytes, and the saved logos</li>
+ * </ol>
+ * Later records of a display replace earlier ones. A record cut off by a crash
+ * is ignored.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class StateJournal implements Runnable {
+	private static final byte[] MAGIC = "BDVJ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte VERSION = 1;
+	private static final int HEADER_LENGTH = StateJournal.MAGIC.length + 1;
+	private static final int RECORD_HEADER_LENGTH = 8 + 8 + 2;
+
+	/**
+	 * The size the file must have grown to before it is rewritten
+	 */
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+	/**
+	 * How many times larger than what it holds the file may grow before it is
+	 * rewritten
+	 */
+	private static final int COMPACT_FACTOR = 4;
+
+	/**
+	 * A display whose logos are saved
+	 */
+	private static final class Tracked {
+		private final LogoSet logos;
+		/**
+		 * The simulation step the logos were touched at when they were last saved
+		 */
+		private long savedStep = -1;
+
+		private Tracked(LogoSet logos) {
+			this.logos = logos;
+		}
+	}
+
+	private final Path file;
+	private final Path compactFile;
+	private final Path backupFile;
+	private final Logger logger;
+
+	/**
+	 * The latest saved logos of every display, only used on the main thread
+	 */
+	private final Map<UUID, byte[]> saved = new HashMap<>();
+	/**
+	 * The displays that are attached, only used on the main thread
+	 */
+	private final Map<UUID, Tracked> tracked = new HashMap<>();
+	/**
+	 * The logos saved since the last batch was written, only used on the main
+	 * thread
+	 */
+	private Map<UUID, byte[]> pending = new HashMap<>();
+
+	/**
+	 * The thread the journal is written on
+	 */
+	private ExecutorService writer = null;
+
+	/**
+	 * The saved logos in the file, only used on the writer thread
+	 */
+	private final Map<UUID, byte[]> written = new HashMap<>();
+	/**
+	 * The size of the records in {@link #written}, and the size of the file,
+	 * only used on the writer thread
+	 */
+	private long liveBytes = 0;
+	private long fileBytes = 0;
+
+	/**
+	 * Creates a new journal
+	 *
+	 * @param dataFolder the data folder of the plugin
+	 * @param logger     the logger to report failed writes to
+	 */
+	public StateJournal(File dataFolder, Logger logger) {
+		this.file = dataFolder.toPath().resolve("state.journal");
+		this.compactFile = dataFolder.toPath().resolve("state.journal.tmp");
+		this.backupFile = dataFolder.toPath().resolve("state.journal.bak");
+		this.logger = logger;
+	}
+
+	/**
+	 * Reads the journal file, and starts the thread it is written on
+	 * <p>
+	 * The file is rewritten right away, so it only holds the latest state of
+	 * each display, without any record cut off by a crash. A file that is not a
+	 * journal of this version is moved to {@code state.journal.bak} first, so
+	 * it is not lost, e.g. when going back to an older version of the plugin.
+	 *
+	 * @throws IOException if the file could not be read or rewritten
+	 */
+	public void load() throws IOException {
+		if (Files.isRegularFile(this.file) && !this.read(ByteBuffer.wrap(Files.readAllBytes(this.file)))) {
+			Files.move(this.file, this.backupFile, StandardCopyOption.REPLACE_EXISTING);
+			this.logger.warning("Moved " + this.file.getFileName() + " to " + this.backupFile.getFileName()
+					+ ", it is not a journal of this version");
+		}
+		this.saved.putAll(this.written);
+		this.compact();
+
+		this.writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "BKBouncingDVD Journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts saving the logos of a display, and puts them back the way they were
+	 * last saved
+	 *
+	 * @param id    the id of the display
+	 * @param logos the logos of the display
+	 */
+	public void track(UUID id, LogoSet logos) {
+		byte[] state = this.saved.get(id);
+		if (state != null) {
+			logos.restore(Main.getSimulation(), state);
+		}
+		this.tracked.put(id, new Tracked(logos));
+	}
+
+	/**
+	 * Stops saving the logos of a display, after saving them one last time
+	 *
+	 * @param id    the id of the display
+	 * @param logos the logos of the display
+	 */
+	public void untrack(UUID id, LogoSet logos) {
+		Tracked entry = this.tracked.get(id);
+		if (entry == null || entry.logos != logos) {
+			return;
+		}
+		this.tracked.remove(id);
+		this.save(id, logos);
+	}
+
+	/**
+	 * Saves the logos that moved since they were last saved, and writes them to
+	 * the journal file on the writer thread
+	 * <p>
+	 * This must be run on the main thread, every few seconds.
+	 */
+	@Override
+	public void run() {
+		if (this.writer == null) {
+			return;
+		}
+		for (Map.Entry<UUID, Tracked> entry : this.tracked.entrySet()) {
+			Tracked tracked = entry.getValue();
+			long touchedStep = tracked.logos.getTouchedStep();
+			if (touchedStep != tracked.savedStep) {
+				tracked.savedStep = touchedStep;
+				this.save(entry.getKey(), tracked.logos);
+			}
+		}
+		if (this.pending.isEmpty()) {
+			return;
+		}
+		Map<UUID, byte[]> batch = this.pending;
+		this.pending = new HashMap<>();
+		this.writer.execute(() -> this.append(batch));
+	}
+
+	/**
+	 * Saves all logos, and waits for them to be written
+	 * <p>
+	 * The journal file is rewritten if it grew too large. Nothing is saved after
+	 * this.
+	 */
+	public void close() {
+		if (this.writer == null) {
+			return;
+		}
+		for (Map.Entry<UUID, Tracked> entry : this.tracked.entrySet()) {
+			this.save(entry.getKey(), entry.getValue().logos);
+		}
+		this.tracked.clear();
+		this.run();
+
+		ExecutorService writer = this.writer;
+		this.writer = null;
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean read(ByteBuffer buffer) {
+		if (buffer.remaining() < StateJournal.HEADER_LENGTH) {
+			return false;
+		}
+		byte[] magic = new byte[StateJournal.MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, StateJournal.MAGIC) || buffer.get() != StateJournal.VERSION) {
+			return false;
+		}
+
+		while (buffer.remaining() >= StateJournal.RECORD_HEADER_LENGTH) {
+			UUID id = new UUID(buffer.getLong(), buffer.getLong());
+			int length = Short.toUnsignedInt(buffer.getShort());
+			if (buffer.remaining() < length) {
+				break;
+			}
+			byte[] state = new byte[length];
+			buffer.get(state);
+			this.remember(id, state);
+		}
+		return true;
+	}
+
+	private void save(UUID id, LogoSet logos) {
+		byte[] state = logos.save(Main.getSimulation());
+		this.saved.put(id, state);
+		if (this.writer != null) {
+			this.pending.put(id, state);
+		}
+	}
+
+	private void append(Map<UUID, byte[]> batch) {
+		int size = 0;
+		for (byte[] state : batch.values()) {
+			size += StateJournal.RECORD_HEADER_LENGTH + state.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (Map.Entry<UUID, byte[]> entry : batch.entrySet()) {
+			StateJournal.putRecord(buffer, entry.getKey(), entry.getValue());
+			this.remember(entry.getKey(), entry.getValue());
+		}
+		buffer.flip();
+
+		try {
+			try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			this.fileBytes += size;
+			if (this.fileBytes > Math.max(StateJournal.MIN_COMPACT_BYTES,
+					StateJournal.COMPACT_FACTOR * this.liveBytes)) {
+				this.compact();
+			}
+		} catch (IOException e) {
+			this.logger.log(Level.WARNING, "Could not write " + this.file.getFileName(), e);
+		}
+	}
+
+	/**
+	 * Rewrites the journal file with only the latest state of each display
+	 * <p>
+	 * The new file is written next to the old one, and then moved over it, so
+	 * a crash never leaves a half written journal behind.
+	 */
+	private void compact() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) (StateJournal.HEADER_LENGTH + this.liveBytes));
+		buffer.put(StateJournal.MAGIC);
+		buffer.put(StateJournal.VERSION);
+		for (Map.Entry<UUID, byte[]> entry : this.written.entrySet()) {
+			StateJournal.putRecord(buffer, entry.getKey(), entry.getValue());
+		}
+
+		Files.createDirectories(this.file.getParent());
+		Files.write(this.compactFile, buffer.array());
+		Files.move(this.compactFile, this.file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		this.fileBytes = buffer.capacity();
+	}
+
+	private void remember(UUID id, byte[] state) {
+		byte[] previous = this.written.put(id, state);
+		if (previous != null) {
+			this.liveBytes -= StateJournal.RECORD_HEADER_LENGTH + previous.length;
+		}
+		this.liveBytes += StateJournal.RECORD_HEADER_LENGTH + state.length;
+	}
+
+	private static void putRecord(ByteBuffer buffer, UUID id, byte[] state) {
+		buffer.putLong(id.getMostSignificantBits());
+		buffer.putLong(id.getLeastSignificantBits());
+		buffer.putShort((short) state.length);
+		buffer.put(state);
+	}
+}
@@ -0,0 +1,119 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+import com.bergerkiller.bukkit.common.map.MapTexture;
+
+/**
+ * A plugin-wide cache of pre-tinted logo sprites
+ * <p>
+ * Sprites are keyed by their {@link MapColorPalette} color, so every display
+ * showing the logo in the same color shares the same texture. Changing the
+ * color of a display is then only a lookup, instead of a recolor of its own
+ * copy of the logo.
+ * <p>
+ * The cache holds at most a fixed number of sprites, and evicts the least
+ * recently used one when full. Sprites handed out must be treated as
+ * read-only.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class TintedLogoCache {
+	/**
+	 * The untinted logo
+	 */
+	private final MapTexture logo;
+
+	/**
+	 * The cached sprites, in least to most recently used order
+	 */
+	private final Map<Byte, MapTexture> sprites;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param logo     the untinted logo
+	 * @param capacity the maximum number of sprites to keep
+	 */
+	public TintedLogoCache(MapTexture logo, final int capacity) {
+		this.logo = logo;
+		this.sprites = new LinkedHashMap<Byte, MapTexture>(capacity + 1, 1.0f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Byte, MapTexture> eldest) {
+				return this.size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the logo tinted with a color
+	 * <p>
+	 * All non-transparent pixels of the logo are replaced with the color. The
+	 * sprite is created the first time a color is requested.
+	 *
+	 * @param color the color to tint with
+	 * @return the tinted logo, which must not be modified
+	 */
+	public synchronized MapTexture get(byte color) {
+		Byte key = Byte.valueOf(color);
+		MapTexture sprite = this.sprites.get(key);
+		if (sprite == null) {
+			sprite = TintedLogoCache.tint(this.logo, color);
+			this.sprites.put(key, sprite);
+		}
+		return sprite;
+	}
+
+	/**
+	 * Gets the number of sprites currently cached
+	 *
+	 * @return the number of sprites
+	 */
+	public synchronized int size() {
+		return this.sprites.size();
+	}
+
+	/**
+	 * Removes all cached sprites
+	 */
+	public synchronized void clear() {
+		this.sprites.clear();
+	}
+
+	/**
+	 * Makes a copy of a logo, with all non-transparent pixels replaced with a
+	 * color, see {@link PixelKernels#tint(byte[], byte[], byte)}
+	 *
+	 * @param logo  the untinted logo
+	 * @param color the color to tint with
+	 * @return the tinted copy
+	 */
+	static MapTexture tint(MapTexture logo, byte color) {
+		MapTexture sprite = logo.clone();
+		byte[] buffer = sprite.getBuffer();
+		PixelKernels.tint(buffer, buffer, color);
+		return sprite;
+	}
+}
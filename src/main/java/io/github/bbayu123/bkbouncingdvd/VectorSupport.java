@@ -0,0 +1,51 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+/**
+ * Picks the kernels {@link PixelKernels} hands off to
+ * <p>
+ * This is the Java 8 version of this class, used when the Vector API is not
+ * available at all, so it always hands off to the {@link ScalarKernels}. The
+ * version for Java 17 and newer is in the {@code src/main/java17} folder, and
+ * ends up in the {@code META-INF/versions/17} folder of the jar.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class VectorSupport {
+	private VectorSupport() {
+	}
+
+	static boolean isAvailable() {
+		return false;
+	}
+
+	static void tint(byte[] source, byte[] target, byte color) {
+		ScalarKernels.tint(source, target, color);
+	}
+
+	static void blit(byte[] sprite, int spriteWidth, byte[] target, int targetWidth, int x, int y, int left, int top,
+			int right, int bottom) {
+		ScalarKernels.blit(sprite, spriteWidth, target, targetWidth, x, y, left, top, right, bottom);
+	}
+
+	static void fill(byte[] target, int targetWidth, int left, int top, int right, int bottom, byte color) {
+		ScalarKernels.fill(target, targetWidth, left, top, right, bottom, color);
+	}
+}
@@ -0,0 +1,112 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.ItemFrame;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Places a wall of item frames that all show the same map
+ * <p>
+ * BKCommonLib joins item frames holding the same map item into one big
+ * display, so a wall of {@code columns} by {@code rows} frames is a single
+ * display of {@code 128 * columns} by {@code 128 * rows} pixels. Every map of
+ * the wall is a tile of that display, and only the tiles with pixels that
+ * changed are sent to the players.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class VideoWall {
+	/**
+	 * The maximum number of columns or rows of a wall
+	 */
+	public static final int MAX_SIZE = 16;
+
+	/**
+	 * How far away the wall a player looks at may be
+	 */
+	private static final int MAX_DISTANCE = 16;
+
+	private VideoWall() {
+	}
+
+	/**
+	 * Places a wall of item frames holding a map item
+	 * <p>
+	 * The block the player looks at is the top left corner of the wall. The
+	 * columns go to the right and the rows go down, as seen by the player, and the
+	 * frames are put on the side of the wall facing the player. Nothing is placed
+	 * unless there is room for the whole wall.
+	 *
+	 * @param player  the player placing the wall
+	 * @param item    the map item to put in every frame
+	 * @param columns the number of columns
+	 * @param rows    the number of rows
+	 * @throws IllegalArgumentException if there is no room for the wall
+	 */
+	public static void place(Player player, ItemStack item, int columns, int rows) {
+		Block corner = player.getTargetBlockExact(VideoWall.MAX_DISTANCE);
+		if (corner == null || !corner.getType().isSolid()) {
+			throw new IllegalArgumentException("Look at the top left block of a wall to place the maps on");
+		}
+
+		BlockFace facing = player.getFacing();
+		BlockFace front = facing.getOppositeFace();
+		BlockFace right = VideoWall.rotateClockwise(facing);
+
+		Block[] frameBlocks = new Block[columns * rows];
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				Block wall = corner.getRelative(right, column).getRelative(BlockFace.DOWN, row);
+				Block frameBlock = wall.getRelative(front);
+				if (!wall.getType().isSolid() || !frameBlock.isEmpty()) {
+					throw new IllegalArgumentException("There is no room for a " + columns + "x" + rows
+							+ " wall, blocked at " + wall.getX() + ", " + wall.getY() + ", " + wall.getZ());
+				}
+				frameBlocks[row * columns + column] = frameBlock;
+			}
+		}
+
+		for (Block frameBlock : frameBlocks) {
+			ItemFrame placed = frameBlock.getWorld().spawn(frameBlock.getLocation(), ItemFrame.class, frame -> {
+				frame.setFacingDirection(front, true);
+				frame.setItem(item.clone());
+			});
+			Main.getItemFrameTracker().add(placed);
+		}
+	}
+
+	private static BlockFace rotateClockwise(BlockFace face) {
+		switch (face) {
+		case NORTH:
+			return BlockFace.EAST;
+		case EAST:
+			return BlockFace.SOUTH;
+		case SOUTH:
+			return BlockFace.WEST;
+		case WEST:
+			return BlockFace.NORTH;
+		default:
+			throw new IllegalArgumentException("Look straight at a wall to place the maps on");
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.event;
+
+import org.bukkit.event.HandlerList;
+
+import io.github.bbayu123.bkbouncingdvd.BouncingDisplay;
+
+/**
+ * Called when a logo hits a corner of its display, that is, bounces off a side
+ * and the top or bottom in the same tick
+ * <p>
+ * A {@link LogoBounceEvent} is called for the same bounce as well.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class LogoCornerHitEvent extends LogoWallEvent {
+	private static final HandlerList handlers = new HandlerList();
+
+	/**
+	 * Creates a new event
+	 *
+	 * @param display the display of the logo
+	 * @param logo    the index of the logo in the display
+	 * @param walls   the walls that were hit, a side and the top or bottom
+	 */
+	public LogoCornerHitEvent(BouncingDisplay display, int logo, int walls) {
+		super(display, logo, walls);
+	}
+
+	@Override
+	public HandlerList getHandlers() {
+		return LogoCornerHitEvent.handlers;
+	}
+
+	public static HandlerList getHandlerList() {
+		return LogoCornerHitEvent.handlers;
+	}
+}
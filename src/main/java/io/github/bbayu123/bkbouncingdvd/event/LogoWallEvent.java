@@ -0,0 +1,97 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.event;
+
+import org.bukkit.event.Event;
+
+import io.github.bbayu123.bkbouncingdvd.BouncingDisplay;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * The base class of the events about a logo hitting the walls of its display
+ * <p>
+ * These are called on the main thread, on the tick after the logo hit the
+ * walls. Logos only move while their display is ticking, and bounces skipped
+ * while it was not, see {@link BounceSimulation#advance(int, long)}, are not
+ * called. In a broadcast group, the event is only called for one of the
+ * displays of the group.
+ * <p>
+ * Instead of listening for every bounce, a plugin can also ask when the next
+ * one happens, see {@link BouncingDisplay#getTicksUntilBounce(int)} and
+ * {@link BouncingDisplay#getTicksUntilCornerHit(int)}.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public abstract class LogoWallEvent extends Event {
+	private final BouncingDisplay display;
+	private final int logo;
+	private final int walls;
+
+	/**
+	 * Creates a new event
+	 *
+	 * @param display the display of the logo
+	 * @param logo    the index of the logo in the display
+	 * @param walls   the walls that were hit
+	 */
+	protected LogoWallEvent(BouncingDisplay display, int logo, int walls) {
+		this.display = display;
+		this.logo = logo;
+		this.walls = walls;
+	}
+
+	/**
+	 * Gets the display of the logo
+	 *
+	 * @return the display
+	 */
+	public BouncingDisplay getDisplay() {
+		return this.display;
+	}
+
+	/**
+	 * Gets the index of the logo in the display
+	 *
+	 * @return the index of the logo
+	 */
+	public int getLogo() {
+		return this.logo;
+	}
+
+	/**
+	 * Gets the walls that were hit
+	 *
+	 * @return a combination of {@link BounceSimulation#WALL_LEFT},
+	 *         {@link BounceSimulation#WALL_RIGHT}, {@link BounceSimulation#WALL_TOP}
+	 *         and {@link BounceSimulation#WALL_BOTTOM}
+	 */
+	public int getWalls() {
+		return this.walls;
+	}
+
+	/**
+	 * Checks whether a wall was hit
+	 *
+	 * @param wall the wall, e.g. {@link BounceSimulation#WALL_LEFT}
+	 * @return {@code true} if the wall was hit
+	 */
+	public boolean hasHit(int wall) {
+		return (this.walls & wall) != 0;
+	}
+}
@@ -18,21 +18,16 @@
  */
 package io.github.bbayu123.bkbouncingdvd.graphics2d_version;
 
-import java.awt.AlphaComposite;
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Transparency;
-import java.awt.image.BufferedImage;
-import java.awt.image.VolatileImage;
-import java.util.Random;
-
 import com.bergerkiller.bukkit.common.map.MapBlendMode;
 import com.bergerkiller.bukkit.common.map.MapDisplay;
 import com.bergerkiller.bukkit.common.map.MapDisplayProperties;
 import com.bergerkiller.bukkit.common.map.MapSessionMode;
-import com.bergerkiller.bukkit.common.map.MapTexture;
 
+import io.github.bbayu123.bkbouncingdvd.AsyncFramePainter;
+import io.github.bbayu123.bkbouncingdvd.BouncingDisplay;
+import io.github.bbayu123.bkbouncingdvd.Logo;
 import io.github.bbayu123.bkbouncingdvd.Main;
+import io.github.bbayu123.bkbouncingdvd.Obstacle;
 
 /**
  * This is the main driver class for the bouncing DVD
@@ -42,44 +37,7 @@ import io.github.bbayu123.bkbouncingdvd.Main;
  * @author Cyrus Mian Xi Li (bbayu/bbayu123)
  *
  */
-public class BouncingDVD extends MapDisplay {
-	/**
-	 * The fixed movement speed
-	 */
-	private static final int MOVEMENT_SPEED = 2;
-
-	/**
-	 * The random number generator
-	 */
-	private final Random random = new Random();
-
-	/**
-	 * Holds the DVD logo image
-	 */
-	private BufferedImage logoImage = null;
-
-	/**
-	 * The current X position
-	 */
-	private int positionX = 0;
-	/**
-	 * The current Y position
-	 */
-	private int positionY = 0;
-	/**
-	 * The current color used
-	 */
-	private Color color = Color.WHITE;
-
-	/**
-	 * The current horizontal speed
-	 */
-	private int horizontalSpeed = 0;
-	/**
-	 * The current vertical speed
-	 */
-	private int verticalSpeed = 0;
-
+public class BouncingDVD extends BouncingDisplay {
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -93,6 +51,9 @@ public class BouncingDVD extends MapDisplay {
 	 * <p>
 	 * This method only sets up the behavior of the display. We use a separate
 	 * method to handle the content of the display.
+	 * <p>
+	 * An obstacle is drawn into the background of the frames, see
+	 * {@link FrameRenderer#setBackground(java.awt.image.BufferedImage)}.
 	 *
 	 * @see {@link MapDisplay#properties} for more information about the properties
 	 *      object
@@ -108,86 +69,40 @@ public class BouncingDVD extends MapDisplay {
 		this.setMasterVolume(0.3f);
 		this.getLayer().setBlendMode(MapBlendMode.NONE);
 
-		this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-		this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
-
-		this.logoImage = Main.getDVDLogoImage();
-		this.positionX = (this.getWidth() - this.logoImage.getWidth()) / 3;
-		this.positionY = (this.getHeight() - this.logoImage.getHeight()) / 2;
-		this.color = Color.WHITE;
+		Logo logo = this.getLogoProperty();
+		int width = this.getWidth();
+		int height = this.getHeight();
+		boolean dithering = this.properties.get(BouncingDisplay.DITHER_PROPERTY, false);
+		Obstacle obstacle = this.getObstacleProperty();
+		this.attachLogos(this.getLogoCountProperty(), logo, obstacle,
+				slots -> new AsyncFramePainter(new FramePainter2D(Main.getSimulation(), slots, width, height, logo,
+						obstacle, dithering), Main.getRenderExecutor(), width, height));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * We use this method to draw the graphics, as well as check for collision with
-	 * the walls, and update position and color of the logo.
+	 * We use this method to draw the graphics at the positions the simulation
+	 * moved the logos to, see {@link FramePainter2D}, unless the frame is skipped
+	 * to ease the load on the server, see {@link #isFrameDue()}. The frames are
+	 * rendered off the main thread by an {@link AsyncFramePainter}, so they show
+	 * up one tick late. Then we ask for the logos to be moved again on the next
+	 * simulation step.
+	 * <p>
+	 * The time all this takes is recorded in the metrics of the display, see
+	 * {@link io.github.bbayu123.bkbouncingdvd.DisplayMetrics DisplayMetrics}.
+	 *
+	 * @see {@link io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation
+	 *      BounceSimulation} for how the logo is moved
 	 */
 	@Override
 	public void onTick() {
-		this.drawIcon();
-
-		this.positionX += this.horizontalSpeed;
-		this.positionY += this.verticalSpeed;
-
-		this.checkWalls();
-	}
-
-	private void drawIcon() {
-		BufferedImage master = Main.getDefaultGraphicsConfiguration().createCompatibleImage(this.getWidth(), this.getHeight(),
-				Transparency.BITMASK);
-		Graphics2D g = master.createGraphics();
-
-		g.setColor(Color.BLACK);
-		g.fillRect(0, 0, master.getWidth(), master.getHeight());
-
-		VolatileImage tinted = Main.getDefaultGraphicsConfiguration()
-				.createCompatibleVolatileImage(this.logoImage.getWidth(), this.logoImage.getHeight(), Transparency.BITMASK);
-
-		Graphics2D g2 = tinted.createGraphics();
-		g2.setBackground(new Color(1, 1, 1, 0));
-		g2.clearRect(0, 0, tinted.getWidth(), tinted.getHeight());
-		g2.drawImage(this.logoImage, 0, 0, null);
-		g2.setComposite(AlphaComposite.SrcAtop);
-		g2.setColor(this.color);
-		g2.fillRect(0, 0, tinted.getWidth(), tinted.getHeight());
-		g2.dispose();
-
-		g.drawImage(tinted, this.positionX, this.positionY, null);
-		g.dispose();
-
-		this.getLayer(0).draw(MapTexture.fromImage(master), 0, 0);
-	}
-
-	private void checkWalls() {
-		if (this.horizontalSpeed > 0 && this.positionX + this.logoImage.getWidth() >= this.getWidth() - 1) {
-			// Right edge
-			this.horizontalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.horizontalSpeed < 0 && this.positionX <= 0) {
-			// Left edge
-			this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
+		long start = System.nanoTime();
+		this.restartIfResized();
+		if (this.isFrameDue()) {
+			this.paintLogos(this.getLayer(0));
 		}
-
-		if (this.verticalSpeed > 0 && this.positionY + this.logoImage.getHeight() >= this.getHeight() - 1) {
-			// Bottom edge
-			this.verticalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.verticalSpeed < 0 && this.positionY <= 0) {
-			// Top edge
-			this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-	}
-
-	private void updateColor() {
-		// Generate RGB between $50 and $FF inclusive
-		int r = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int g = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int b = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		this.color = new Color(r, g, b);
+		this.advanceLogos();
+		this.recordTick(start);
 	}
 }
@@ -0,0 +1,126 @@
+/*
+ * **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.graphics2d_version;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.LogoPainter;
+import io.github.bbayu123.bkbouncingdvd.Obstacle;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Paints the logos by rendering whole frames with a {@link FrameRenderer}
+ * <p>
+ * For an animated logo, the frame of the logo is drawn into an image of this
+ * painter whenever it changes, and the logos are tinted again.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class FramePainter2D extends LogoPainter {
+	/**
+	 * Holds the buffers the frames are drawn into
+	 */
+	private final FrameRenderer renderer;
+
+	/**
+	 * The logo to draw, and the image of it given to the renderer
+	 */
+	private final Logo logo;
+	private final BufferedImage logoImage;
+
+	/**
+	 * The frame of the logo the image shows
+	 */
+	private int frame = 0;
+
+	/**
+	 * The positions the logos are drawn at
+	 */
+	private final int[] positionsX;
+	private final int[] positionsY;
+
+	/**
+	 * Creates a new painter
+	 *
+	 * @param simulation the simulation moving the logos
+	 * @param slots      the slots of the logos in the simulation
+	 * @param width      the width of the frame
+	 * @param height     the height of the frame
+	 * @param logo       the logo to draw
+	 * @param obstacle   the obstacle drawn on the background, or {@code null} if
+	 *                   there is none
+	 * @param dithering  {@code true} to dither the frames, see
+	 *                   {@link FrameRenderer#setDithering(boolean)}
+	 */
+	public FramePainter2D(BounceSimulation simulation, int[] slots, int width, int height, Logo logo,
+			Obstacle obstacle, boolean dithering) {
+		super(simulation, slots);
+		this.logo = logo;
+		if (logo.isAnimated()) {
+			// The pixels are replaced for every frame, so it cannot be shared
+			this.logoImage = new BufferedImage(logo.getWidth(), logo.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			logo.drawImage(this.frame, this.logoImage);
+		} else {
+			this.logoImage = logo.getImage();
+		}
+		this.renderer = new FrameRenderer(width, height, this.logoImage, slots.length);
+		this.renderer.setDithering(dithering);
+		if (obstacle != null) {
+			BufferedImage background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			obstacle.drawImage(background);
+			this.renderer.setBackground(background);
+		}
+		this.positionsX = new int[slots.length];
+		this.positionsY = new int[slots.length];
+	}
+
+	@Override
+	public int render(MapCanvas canvas) {
+		int frame = this.logo.getFrameIndex(this.getCapturedStep());
+		if (frame != this.frame) {
+			this.frame = frame;
+			this.logo.drawImage(frame, this.logoImage);
+			this.renderer.refreshLogo();
+		}
+		for (int i = 0; i < this.positionsX.length; i++) {
+			if (this.pollColorChange(i)) {
+				this.renderer.setColor(i, new Color(this.getLogoColor(i)));
+			}
+			this.positionsX[i] = this.getLogoX(i);
+			this.positionsY[i] = this.getLogoY(i);
+		}
+		return this.renderer.render(canvas, this.positionsX, this.positionsY);
+	}
+
+	@Override
+	public DirtyRegion getDirtyRegion() {
+		return this.renderer.getDirtyRegion();
+	}
+
+	@Override
+	public void dispose() {
+		this.renderer.dispose();
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.graphics2d_version;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.PaletteTable;
+
+/**
+ * Renders logos using Java2D into buffers that are reused between frames
+ * <p>
+ * One back buffer, and one tinted logo buffer per logo, are kept for the
+ * lifetime of a display. A logo is only re-tinted when its color changes, and
+ * only the region the logos left and the region they entered are converted to
+ * map colors, with a {@link PaletteTable}, and written to the target canvas.
+ * <p>
+ * Only plain {@link BufferedImage}s are used, so this also works on a headless
+ * JVM.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class FrameRenderer {
+	/**
+	 * The background color of the frame
+	 */
+	private static final Color BACKGROUND = Color.BLACK;
+	/**
+	 * The fully transparent color used to wipe the tinted logos
+	 */
+	private static final Color TRANSPARENT = new Color(0, 0, 0, 0);
+
+	/**
+	 * The untinted logo image
+	 */
+	private final BufferedImage logoImage;
+
+	/**
+	 * The back buffer holding the full frame
+	 */
+	private final BufferedImage frame;
+	/**
+	 * The graphics context of the back buffer
+	 */
+	private final Graphics2D frameGraphics;
+	/**
+	 * The raw pixels of the back buffer
+	 */
+	private final int[] framePixels;
+
+	/**
+	 * The raw pixels of the background, or {@code null} if it is plain black
+	 */
+	private int[] background = null;
+
+	/**
+	 * The logos tinted with their current colors
+	 */
+	private final BufferedImage[] tinted;
+	/**
+	 * The graphics contexts of the tinted logos
+	 */
+	private final Graphics2D[] tintedGraphics;
+	/**
+	 * The colors the logos are tinted with
+	 */
+	private final Color[] colors;
+
+	/**
+	 * The map colors of the part of a single tile that is written to the canvas
+	 */
+	private final byte[] regionBuffer;
+
+	/**
+	 * The positions the logos were last drawn at
+	 */
+	private final int[] lastX;
+	private final int[] lastY;
+	/**
+	 * Whether anything was drawn yet
+	 */
+	private boolean drawn = false;
+
+	/**
+	 * Whether the frame is dithered when converted to map colors
+	 */
+	private boolean dithering = false;
+
+	/**
+	 * Scratch arrays used when drawing a single logo
+	 */
+	private final int[] singleX = new int[1];
+	private final int[] singleY = new int[1];
+
+	/**
+	 * The region written by the last render
+	 */
+	private final DirtyRegion dirty = new DirtyRegion();
+
+	/**
+	 * Creates a new renderer for a single logo
+	 *
+	 * @param width     the width of the frame
+	 * @param height    the height of the frame
+	 * @param logoImage the logo image to draw
+	 */
+	public FrameRenderer(int width, int height, BufferedImage logoImage) {
+		this(width, height, logoImage, 1);
+	}
+
+	/**
+	 * Creates a new renderer
+	 *
+	 * @param width     the width of the frame
+	 * @param height    the height of the frame
+	 * @param logoImage the logo image to draw
+	 * @param count     the number of logos
+	 */
+	public FrameRenderer(int width, int height, BufferedImage logoImage, int count) {
+		this.logoImage = logoImage;
+
+		this.frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.frameGraphics = this.frame.createGraphics();
+		this.frameGraphics.setBackground(FrameRenderer.BACKGROUND);
+		this.framePixels = ((DataBufferInt) this.frame.getRaster().getDataBuffer()).getData();
+
+		this.tinted = new BufferedImage[count];
+		this.tintedGraphics = new Graphics2D[count];
+		this.colors = new Color[count];
+		for (int i = 0; i < count; i++) {
+			this.tinted[i] = new BufferedImage(logoImage.getWidth(), logoImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			this.tintedGraphics[i] = this.tinted[i].createGraphics();
+			this.setColor(i, Color.WHITE);
+		}
+		this.lastX = new int[count];
+		this.lastY = new int[count];
+
+		this.regionBuffer = new byte[DirtyRegion.TILE_SIZE * DirtyRegion.TILE_SIZE];
+	}
+
+	/**
+	 * Re-tints the logo with a new color
+	 *
+	 * @param color the new color
+	 * @see #setColor(int, Color)
+	 */
+	public void setColor(Color color) {
+		this.setColor(0, color);
+	}
+
+	/**
+	 * Re-tints a logo with a new color
+	 * <p>
+	 * This is the only place the tinted logo buffers are redrawn, so it should
+	 * only be called when the color actually changes. The new color shows up on
+	 * the next call to {@link #render(MapCanvas, int[], int[])}, since the logo
+	 * regions are always written.
+	 *
+	 * @param index the index of the logo
+	 * @param color the new color
+	 */
+	public void setColor(int index, Color color) {
+		this.colors[index] = color;
+		BufferedImage image = this.tinted[index];
+		Graphics2D g = this.tintedGraphics[index];
+		g.setComposite(AlphaComposite.Src);
+		g.setColor(FrameRenderer.TRANSPARENT);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.drawImage(this.logoImage, 0, 0, null);
+		g.setComposite(AlphaComposite.SrcAtop);
+		g.setColor(color);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Re-tints all logos with their current colors
+	 * <p>
+	 * This should be called after the pixels of the logo image given to the
+	 * constructor changed, e.g. to show the next frame of an animated logo.
+	 */
+	public void refreshLogo() {
+		for (int i = 0; i < this.colors.length; i++) {
+			this.setColor(i, this.colors[i]);
+		}
+	}
+
+	/**
+	 * Sets an image to draw the logos over, instead of plain black
+	 * <p>
+	 * The pixels the logos leave are copied back from the image. This should be
+	 * called before the first render.
+	 *
+	 * @param background the image, of the same size as the frame
+	 */
+	public void setBackground(BufferedImage background) {
+		this.background = background.getRGB(0, 0, this.frame.getWidth(), this.frame.getHeight(), null, 0,
+				this.frame.getWidth());
+	}
+
+	/**
+	 * Sets whether the frame is dithered when converted to map colors
+	 * <p>
+	 * This only makes a difference for colors in between map colors, e.g. at the
+	 * blended edges of a logo, see {@link PaletteTable}.
+	 *
+	 * @param dithering {@code true} to dither
+	 */
+	public void setDithering(boolean dithering) {
+		this.dithering = dithering;
+	}
+
+	/**
+	 * Renders a frame with the logo at the given position, and writes the changed
+	 * region to the target canvas
+	 *
+	 * @param target the canvas to write the frame to
+	 * @param x      the X position of the logo
+	 * @param y      the Y position of the logo
+	 * @return the number of pixels written
+	 */
+	public int render(MapCanvas target, int x, int y) {
+		this.singleX[0] = x;
+		this.singleY[0] = y;
+		return this.render(target, this.singleX, this.singleY);
+	}
+
+	/**
+	 * Renders a frame with the logos at the given positions, and writes the
+	 * changed region to the target canvas
+	 * <p>
+	 * The changed region is the bounding box of where the logos were, and where
+	 * they are now. Of that box, only the parts inside tiles a logo touched are
+	 * written, see {@link DirtyRegion}.
+	 *
+	 * @param target the canvas to write the frame to
+	 * @param xs     the X positions of the logos
+	 * @param ys     the Y positions of the logos
+	 * @return the number of pixels written
+	 */
+	public int render(MapCanvas target, int[] xs, int[] ys) {
+		int logoWidth = this.logoImage.getWidth();
+		int logoHeight = this.logoImage.getHeight();
+		int count = this.tinted.length;
+
+		this.dirty.clear();
+		if (!this.drawn) {
+			// First frame, everything is dirty
+			this.clear(0, 0, this.frame.getWidth(), this.frame.getHeight());
+			this.dirty.include(0, 0, this.frame.getWidth(), this.frame.getHeight());
+			this.drawn = true;
+		} else {
+			// Erase the logos from where they were last drawn
+			for (int i = 0; i < count; i++) {
+				this.clear(this.lastX[i], this.lastY[i], logoWidth, logoHeight);
+				this.dirty.include(this.lastX[i], this.lastY[i], logoWidth, logoHeight);
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			this.frameGraphics.drawImage(this.tinted[i], xs[i], ys[i], null);
+			this.lastX[i] = xs[i];
+			this.lastY[i] = ys[i];
+			this.dirty.include(xs[i], ys[i], logoWidth, logoHeight);
+		}
+
+		this.dirty.clip(this.frame.getWidth(), this.frame.getHeight());
+		return this.dirty.forEachRect((x, y, width, height) -> this.writeRegion(target, x, y, width, height));
+	}
+
+	/**
+	 * Gets the region written to the target canvas by the last render
+	 *
+	 * @return the written region
+	 */
+	public DirtyRegion getDirtyRegion() {
+		return this.dirty;
+	}
+
+	/**
+	 * Releases the graphics contexts held by this renderer
+	 */
+	public void dispose() {
+		this.frameGraphics.dispose();
+		for (Graphics2D g : this.tintedGraphics) {
+			g.dispose();
+		}
+	}
+
+	private void clear(int x, int y, int width, int height) {
+		if (this.background == null) {
+			this.frameGraphics.clearRect(x, y, width, height);
+			return;
+		}
+		int frameWidth = this.frame.getWidth();
+		int left = Math.max(x, 0);
+		int right = Math.min(x + width, frameWidth);
+		int bottom = Math.min(y + height, this.frame.getHeight());
+		for (int row = Math.max(y, 0); row < bottom && left < right; row++) {
+			int offset = row * frameWidth + left;
+			System.arraycopy(this.background, offset, this.framePixels, offset, right - left);
+		}
+	}
+
+	private void writeRegion(MapCanvas target, int x, int y, int width, int height) {
+		PaletteTable.convert(this.framePixels, this.frame.getWidth(), x, y, width, height, this.regionBuffer,
+				this.dithering);
+		target.writePixels(x, y, width, height, this.regionBuffer);
+	}
+}
@@ -17,8 +17,6 @@
  */
 package io.github.bbayu123.bkbouncingdvd.mapcanvas_version;
 
-import java.util.Random;
-
 import com.bergerkiller.bukkit.common.map.MapBlendMode;
 import com.bergerkiller.bukkit.common.map.MapCanvas;
 import com.bergerkiller.bukkit.common.map.MapColorPalette;
@@ -26,7 +24,11 @@ import com.bergerkiller.bukkit.common.map.MapDisplay;
 import com.bergerkiller.bukkit.common.map.MapDisplayProperties;
 import com.bergerkiller.bukkit.common.map.MapSessionMode;
 
+import io.github.bbayu123.bkbouncingdvd.BouncingDisplay;
+import io.github.bbayu123.bkbouncingdvd.Logo;
 import io.github.bbayu123.bkbouncingdvd.Main;
+import io.github.bbayu123.bkbouncingdvd.Obstacle;
+import io.github.bbayu123.bkbouncingdvd.SharedBackground;
 
 /**
  * This is the main driver class for the bouncing DVD
@@ -36,44 +38,7 @@ import io.github.bbayu123.bkbouncingdvd.Main;
  * @author Cyrus Mian Xi Li (bbayu/bbayu123)
  *
  */
-public class BouncingDVD extends MapDisplay {
-	/**
-	 * The fixed movement speed
-	 */
-	private static final int MOVEMENT_SPEED = 2;
-
-	/**
-	 * The random number generator
-	 */
-	private final Random random = new Random();
-
-	/**
-	 * Holds the DVD logo image
-	 */
-	private MapCanvas logoImage = null;
-
-	/**
-	 * The current X position
-	 */
-	private int positionX = 0;
-	/**
-	 * The current Y position
-	 */
-	private int positionY = 0;
-	/**
-	 * The current color used
-	 */
-	private byte color = 0;
-
-	/**
-	 * The current horizontal speed
-	 */
-	private int horizontalSpeed = 0;
-	/**
-	 * The current vertical speed
-	 */
-	private int verticalSpeed = 0;
-
+public class BouncingDVD extends BouncingDisplay {
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -87,6 +52,13 @@ public class BouncingDVD extends MapDisplay {
 	 * <p>
 	 * This method only sets up the behavior of the display. We use a separate
 	 * method to handle the content of the display.
+	 * <p>
+	 * A personal display is created for every viewer, so it does not get a
+	 * background layer of its own. Its logos are drawn straight onto a copy of
+	 * the {@link SharedBackground}, which also fills in the pixels they leave.
+	 * <p>
+	 * An obstacle is drawn on the background, so the logos drawn over it do not
+	 * erase it.
 	 *
 	 * @see {@link MapDisplay#properties} for more information about the properties
 	 *      object
@@ -96,74 +68,52 @@ public class BouncingDVD extends MapDisplay {
 	 */
 	@Override
 	public void onAttached() {
-		this.setGlobal(true);
+		boolean personal = this.isPersonalProperty();
+		this.setGlobal(!personal);
 		this.setUpdateWithoutViewers(false);
 		this.setSessionMode(MapSessionMode.ONLINE);
 		this.setMasterVolume(0.3f);
 
-		this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-		this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
-
-		this.getLayer(-1).setBlendMode(MapBlendMode.NONE);
-		this.getLayer(-1).fillRectangle(0, 0, this.getWidth(), this.getHeight(), MapColorPalette.COLOR_BLACK);
+		Obstacle obstacle = this.getObstacleProperty();
+		MapCanvas background = personal ? SharedBackground.get(this.getWidth(), this.getHeight(), obstacle) : null;
+		if (personal) {
+			this.getLayer(0).setBlendMode(MapBlendMode.NONE);
+			this.getLayer(0).draw(background, 0, 0);
+		} else {
+			this.getLayer(-1).setBlendMode(MapBlendMode.NONE);
+			this.getLayer(-1).fillRectangle(0, 0, this.getWidth(), this.getHeight(), MapColorPalette.COLOR_BLACK);
+			if (obstacle != null) {
+				obstacle.draw(this.getLayer(-1));
+			}
+		}
 
-		this.logoImage = Main.getDVDLogoTexture().clone();
-		this.positionX = (this.getWidth() - this.logoImage.getWidth()) / 3;
-		this.positionY = (this.getHeight() - this.logoImage.getHeight()) / 2;
-		this.color = MapColorPalette.COLOR_WHITE;
+		Logo logo = this.getLogoProperty();
+		this.attachLogos(this.getLogoCountProperty(), logo, obstacle,
+				slots -> new SpritePainter(Main.getSimulation(), slots, logo, background));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * We use this method to draw the graphics, as well as check for collision with
-	 * the walls, and update position and color of the logo.
+	 * We use this method to draw the graphics at the positions the simulation
+	 * moved the logos to, see {@link SpritePainter}, unless the frame is skipped
+	 * to ease the load on the server, see {@link #isFrameDue()}. Then we ask for
+	 * the logos to be moved again on the next simulation step.
+	 * <p>
+	 * The time all this takes is recorded in the metrics of the display, see
+	 * {@link io.github.bbayu123.bkbouncingdvd.DisplayMetrics DisplayMetrics}.
+	 *
+	 * @see {@link io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation
+	 *      BounceSimulation} for how the logo is moved
 	 */
 	@Override
 	public void onTick() {
-		this.drawIcon();
-
-		this.positionX += this.horizontalSpeed;
-		this.positionY += this.verticalSpeed;
-
-		this.checkWalls();
-	}
-
-	private void drawIcon() {
-		this.getLayer(0).setBlendMode(MapBlendMode.NONE);
-		this.getLayer(0).clear();
-		this.getLayer(0).draw(this.logoImage, this.positionX, this.positionY, this.color);
-	}
-
-	private void checkWalls() {
-		if (this.horizontalSpeed > 0 && this.positionX + this.logoImage.getWidth() >= this.getWidth() - 1) {
-			// Right edge
-			this.horizontalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.horizontalSpeed < 0 && this.positionX <= 0) {
-			// Left edge
-			this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
+		long start = System.nanoTime();
+		this.restartIfResized();
+		if (this.isFrameDue()) {
+			this.paintLogos(this.getLayer(0));
 		}
-
-		if (this.verticalSpeed > 0 && this.positionY + this.logoImage.getHeight() >= this.getHeight() - 1) {
-			// Bottom edge
-			this.verticalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.verticalSpeed < 0 && this.positionY <= 0) {
-			// Top edge
-			this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-	}
-
-	private void updateColor() {
-		// Generate RGB between $50 and $FF inclusive
-		int r = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int g = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int b = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		this.color = MapColorPalette.getColor(r, g, b);
+		this.advanceLogos();
+		this.recordTick(start);
 	}
-}
\ No newline at end of file
+}
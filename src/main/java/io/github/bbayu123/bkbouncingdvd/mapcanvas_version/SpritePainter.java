@@ -0,0 +1,122 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.mapcanvas_version;
+
+import java.util.Arrays;
+
+import com.bergerkiller.bukkit.common.map.MapCanvas;
+import com.bergerkiller.bukkit.common.map.MapColorPalette;
+
+import io.github.bbayu123.bkbouncingdvd.DirtyRectRenderer;
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.Logo;
+import io.github.bbayu123.bkbouncingdvd.LogoPainter;
+import io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation;
+
+/**
+ * Paints the logos by drawing tinted logo sprites onto the canvas
+ * <p>
+ * The sprites are taken from the logo, which shares them with every other
+ * display showing it. For an animated logo, they are taken again whenever the
+ * frame changes.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class SpritePainter extends LogoPainter {
+	/**
+	 * The logo the tinted logo images are taken from
+	 */
+	private final Logo logo;
+
+	/**
+	 * Holds the DVD logo images, tinted with the current color of each logo
+	 */
+	private final MapCanvas[] logoImages;
+
+	/**
+	 * The current map color of each logo
+	 */
+	private final byte[] colors;
+
+	/**
+	 * The frame of the logo the images show
+	 */
+	private int frame = 0;
+
+	/**
+	 * The positions the logos are drawn at
+	 */
+	private final int[] positionsX;
+	private final int[] positionsY;
+
+	/**
+	 * Draws the logos, only touching the pixels that change
+	 */
+	private final DirtyRectRenderer renderer = new DirtyRectRenderer();
+
+	/**
+	 * Creates a new painter
+	 *
+	 * @param simulation the simulation moving the logos
+	 * @param slots      the slots of the logos in the simulation
+	 * @param logo       the logo to draw
+	 * @param background the background to restore the pixels the logos leave
+	 *                   from, or {@code null} to make them transparent, see
+	 *                   {@link DirtyRectRenderer#setBackground(MapCanvas)}
+	 */
+	public SpritePainter(BounceSimulation simulation, int[] slots, Logo logo, MapCanvas background) {
+		super(simulation, slots);
+		this.renderer.setBackground(background);
+		this.logo = logo;
+		this.logoImages = new MapCanvas[slots.length];
+		this.colors = new byte[slots.length];
+		Arrays.fill(this.colors, MapColorPalette.COLOR_WHITE);
+		Arrays.fill(this.logoImages, logo.getTinted(this.frame, MapColorPalette.COLOR_WHITE));
+		this.positionsX = new int[slots.length];
+		this.positionsY = new int[slots.length];
+	}
+
+	@Override
+	public int render(MapCanvas canvas) {
+		int frame = this.logo.getFrameIndex(this.getCapturedStep());
+		boolean frameChanged = frame != this.frame;
+		this.frame = frame;
+		for (int i = 0; i < this.logoImages.length; i++) {
+			if (this.pollColorChange(i)) {
+				this.updateColor(i);
+			} else if (frameChanged) {
+				this.logoImages[i] = this.logo.getTinted(frame, this.colors[i]);
+			}
+			this.positionsX[i] = this.getLogoX(i);
+			this.positionsY[i] = this.getLogoY(i);
+		}
+		return this.renderer.render(canvas, this.logoImages, this.positionsX, this.positionsY, this.logoImages.length);
+	}
+
+	@Override
+	public DirtyRegion getDirtyRegion() {
+		return this.renderer.getDirtyRegion();
+	}
+
+	private void updateColor(int index) {
+		int rgb = this.getLogoColor(index);
+		this.colors[index] = MapColorPalette.getColor((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+		this.logoImages[index] = this.logo.getTinted(this.frame, this.colors[index]);
+	}
+}
@@ -17,8 +17,7 @@
  */
 package io.github.bbayu123.bkbouncingdvd.mapwidget_version;
 
-import java.util.Random;
-
+import com.bergerkiller.bukkit.common.map.MapBlendMode;
 import com.bergerkiller.bukkit.common.map.MapCanvas;
 import com.bergerkiller.bukkit.common.map.MapColorPalette;
 import com.bergerkiller.bukkit.common.map.MapDisplay;
@@ -26,7 +25,12 @@ import com.bergerkiller.bukkit.common.map.MapDisplayProperties;
 import com.bergerkiller.bukkit.common.map.MapSessionMode;
 import com.bergerkiller.bukkit.common.map.widgets.MapWidget;
 
+import io.github.bbayu123.bkbouncingdvd.BouncingDisplay;
+import io.github.bbayu123.bkbouncingdvd.DirtyRegion;
+import io.github.bbayu123.bkbouncingdvd.Logo;
 import io.github.bbayu123.bkbouncingdvd.Main;
+import io.github.bbayu123.bkbouncingdvd.Obstacle;
+import io.github.bbayu123.bkbouncingdvd.SharedBackground;
 
 /**
  * This is the main driver class for the bouncing DVD
@@ -36,30 +40,27 @@ import io.github.bbayu123.bkbouncingdvd.Main;
  * @author Cyrus Mian Xi Li (bbayu/bbayu123)
  *
  */
-public class BouncingDVD extends MapDisplay {
+public class BouncingDVD extends BouncingDisplay {
 	/**
-	 * The fixed movement speed
+	 * Holds the DVD logo widgets
 	 */
-	private static final int MOVEMENT_SPEED = 2;
+	private DVDLogo[] logos = null;
 
 	/**
-	 * The random number generator
+	 * The logo the widgets draw
 	 */
-	private final Random random = new Random();
+	private Logo logo = null;
 
 	/**
-	 * Holds the DVD logo widget
+	 * The shared background the base layer of a personal display is copied
+	 * from, kept so that other personal displays can copy it as well
 	 */
-	private DVDLogo logo = null;
+	private MapCanvas background = null;
 
 	/**
-	 * The current horizontal speed
-	 */
-	private int horizontalSpeed = 0;
-	/**
-	 * The current vertical speed
+	 * The region changed by moving and recoloring the widgets
 	 */
-	private int verticalSpeed = 0;
+	private final DirtyRegion dirty = new DirtyRegion();
 
 	/**
 	 * {@inheritDoc}
@@ -74,6 +75,13 @@ public class BouncingDVD extends MapDisplay {
 	 * <p>
 	 * This method only sets up the behavior of the display. We use a separate
 	 * method to handle the content of the display.
+	 * <p>
+	 * A personal display is created for every viewer. Only the widgets of the
+	 * logos are its own, they are drawn over the base layer, which is copied
+	 * from the {@link SharedBackground} instead of being filled and having the
+	 * obstacle drawn on it again for every viewer.
+	 * <p>
+	 * An obstacle is drawn on the base layer, below the widgets.
 	 *
 	 * @see {@link MapDisplay#properties} for more information about the properties
 	 *      object
@@ -83,63 +91,94 @@ public class BouncingDVD extends MapDisplay {
 	 */
 	@Override
 	public void onAttached() {
-		this.setGlobal(true);
+		boolean personal = this.isPersonalProperty();
+		this.setGlobal(!personal);
 		this.setUpdateWithoutViewers(false);
 		this.setSessionMode(MapSessionMode.ONLINE);
 		this.setMasterVolume(0.3f);
 
-		this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-		this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
+		Obstacle obstacle = this.getObstacleProperty();
+		if (personal) {
+			this.background = SharedBackground.get(this.getWidth(), this.getHeight(), obstacle);
+			this.getLayer().setBlendMode(MapBlendMode.NONE);
+			this.getLayer().draw(this.background, 0, 0);
+		} else {
+			this.background = null;
+			this.getLayer().fillRectangle(0, 0, this.getWidth(), this.getHeight(), MapColorPalette.COLOR_BLACK);
+			if (obstacle != null) {
+				obstacle.draw(this.getLayer());
+			}
+		}
 
-		this.getLayer().fillRectangle(0, 0, this.getWidth(), this.getHeight(), MapColorPalette.COLOR_BLACK);
+		Logo logo = this.getLogoProperty();
+		this.logo = logo;
+		this.attachLogos(this.getLogoCountProperty(), logo, obstacle, null);
 
-		this.logo = new DVDLogo();
-		this.logo.setPosition((this.getWidth() - this.logo.getWidth()) / 3, (this.getHeight() - this.logo.getHeight()) / 2);
-		this.addWidget(this.logo);
+		// In a broadcast group, the number of logos is decided by the group
+		this.logos = new DVDLogo[this.getLogoCount()];
+		for (int i = 0; i < this.logos.length; i++) {
+			this.logos[i] = new DVDLogo(logo);
+			this.logos[i].setPosition(this.getLogoX(i), this.getLogoY(i));
+			this.addWidget(this.logos[i]);
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * We use this method to check for collision with the walls, and update position
-	 * and color of the logo.
+	 * We use this method to move the logos to where the simulation moved them,
+	 * updating the color of each logo that bounced, and the frame of an animated
+	 * logo, unless the frame is skipped to ease the load on the server, see
+	 * {@link #isFrameDue()}. Then we ask for the logos to be moved again on the
+	 * next simulation step.
+	 * <p>
+	 * The time all this takes, and the area of the widgets that changed, is
+	 * recorded in the metrics of the display, see
+	 * {@link io.github.bbayu123.bkbouncingdvd.DisplayMetrics DisplayMetrics}.
+	 *
+	 * @see {@link io.github.bbayu123.bkbouncingdvd.simulation.BounceSimulation
+	 *      BounceSimulation} for how the logo is moved
 	 */
 	@Override
 	public void onTick() {
-		this.logo.setPosition(this.logo.getX() + this.horizontalSpeed, this.logo.getY() + this.verticalSpeed);
-		this.checkWalls();
-	}
-
-	private void checkWalls() {
-		if (this.horizontalSpeed > 0 && this.logo.getX() + this.logo.getWidth() >= this.getWidth() - 1) {
-			// Right edge
-			this.horizontalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.horizontalSpeed < 0 && this.logo.getX() <= 0) {
-			// Left edge
-			this.horizontalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-
-		if (this.verticalSpeed > 0 && this.logo.getY() + this.logo.getHeight() >= this.getHeight() - 1) {
-			// Bottom edge
-			this.verticalSpeed = -BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
-		}
-		if (this.verticalSpeed < 0 && this.logo.getY() <= 0) {
-			// Top edge
-			this.verticalSpeed = BouncingDVD.MOVEMENT_SPEED;
-			this.updateColor();
+		long start = System.nanoTime();
+		this.restartIfResized();
+		if (this.isFrameDue()) {
+			int frame = this.logo.getFrameIndex(Main.getSimulation().getStepCount());
+			int width = this.logo.getWidth();
+			int height = this.logo.getHeight();
+			int written = 0;
+			this.dirty.clear();
+			for (int i = 0; i < this.logos.length; i++) {
+				DVDLogo widget = this.logos[i];
+				boolean changed = widget.setFrame(frame);
+				if (this.pollColorChange(i)) {
+					this.updateColor(i);
+					changed = true;
+				}
+				int x = this.getLogoX(i);
+				int y = this.getLogoY(i);
+				// A widget that moved is cleared where it was and drawn where it is
+				if (x != widget.getX() || y != widget.getY()) {
+					this.dirty.include(widget.getX(), widget.getY(), width, height);
+					this.dirty.include(x, y, width, height);
+					written += 2 * width * height;
+				} else if (changed) {
+					this.dirty.include(x, y, width, height);
+					written += width * height;
+				}
+				widget.setPosition(x, y);
+			}
+			this.dirty.clip(this.getWidth(), this.getHeight());
+			this.recordFrame(written, this.dirty);
 		}
+		this.advanceLogos();
+		this.recordTick(start);
 	}
 
-	private void updateColor() {
-		// Generate RGB between $50 and $FF inclusive
-		int r = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int g = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		int b = this.random.nextInt(0xFF + 1 - 0x50) + 0x50;
-		this.logo.setColor(r, g, b);
+	private void updateColor(int index) {
+		int rgb = this.getLogoColor(index);
+		this.logos[index].setColor((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
 	}
 }
 
@@ -152,10 +191,26 @@ public class BouncingDVD extends MapDisplay {
  */
 class DVDLogo extends MapWidget {
 
-	private final MapCanvas logoImage;
+	/**
+	 * The logo this widget draws
+	 */
+	private final Logo logo;
 
-	public DVDLogo() {
-		this.logoImage = Main.getDVDLogoTexture().clone();
+	/**
+	 * The logo currently drawn, shared with other displays
+	 */
+	private MapCanvas logoImage;
+
+	/**
+	 * The frame and color currently drawn, the color is transparent until the
+	 * logo is first tinted
+	 */
+	private int frame = 0;
+	private byte color = MapColorPalette.COLOR_TRANSPARENT;
+
+	public DVDLogo(Logo logo) {
+		this.logo = logo;
+		this.logoImage = logo.getTexture();
 		this.setSize(this.logoImage.getWidth(), this.logoImage.getHeight());
 	}
 
@@ -165,15 +220,25 @@ class DVDLogo extends MapWidget {
 	}
 
 	public void setColor(int r, int g, int b) {
-		byte targetColor = MapColorPalette.getColor(r, g, b);
+		this.color = MapColorPalette.getColor(r, g, b);
+		this.updateImage();
+	}
 
-		for (int i = 0; i < this.logoImage.getWidth(); i++) {
-			for (int j = 0; j < this.logoImage.getHeight(); j++) {
-				if (this.logoImage.readPixel(i, j) != MapColorPalette.COLOR_TRANSPARENT) {
-					this.logoImage.writePixel(i, j, targetColor);
-				}
-			}
+	public boolean setFrame(int frame) {
+		if (frame == this.frame) {
+			return false;
+		}
+		this.frame = frame;
+		this.updateImage();
+		return true;
+	}
+
+	private void updateImage() {
+		if (this.color == MapColorPalette.COLOR_TRANSPARENT) {
+			this.logoImage = this.logo.getFrame(this.frame);
+		} else {
+			this.logoImage = this.logo.getTinted(this.frame, this.color);
 		}
 		this.invalidate();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,1146 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates all bouncing logos in one place
+ * <p>
+ * The position, velocity, size and color of every logo are stored in primitive
+ * arrays, one entry per logo. A logo is identified by its slot in these arrays.
+ * All logos are stepped in a single pass per server tick by {@link #step()}, and
+ * the displays only read the results.
+ * <p>
+ * A logo is only stepped if it was {@link #touch(int) touched} since the last
+ * step. Displays touch their logo from {@code onTick()}, so a display that is
+ * not ticking (e.g. because nobody is looking at it) stays frozen. A logo that
+ * does not bounce off other logos can later {@link #advance(int, long) jump
+ * ahead} any number of steps at once.
+ * <p>
+ * Colors are not drawn from a shared {@link java.util.Random}, but derived from
+ * a per-logo seed and the number of bounces so far, so that stepping can be
+ * split across threads, and a jump ahead picks the same color as stepping.
+ * <p>
+ * Logos can be put into a group with {@link #createGroup()}, so that they also
+ * bounce off each other. Overlapping pairs are found with a uniform grid, see
+ * {@link CollisionGrid}, so a group of {@code n} logos does not need
+ * {@code n * n} checks per step.
+ * <p>
+ * A logo can be given a {@link CollisionMask} of its opaque pixels with
+ * {@link #setMask(int, CollisionMask)}. It then bounces off the walls with the
+ * box around its opaque pixels, and only bounces off another logo when their
+ * opaque pixels touch. It can also be given a mask of obstacles drawn on its
+ * bounds with {@link #setObstacles(int, CollisionMask)}, which it bounces off
+ * as well.
+ * <p>
+ * Slots are allocated and freed from the main thread only.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public class BounceSimulation {
+	/**
+	 * The fixed movement speed
+	 */
+	public static final int MOVEMENT_SPEED = 2;
+
+	/**
+	 * The color every logo starts with
+	 */
+	public static final int START_COLOR = 0xFFFFFF;
+
+	/**
+	 * The walls a logo can hit, see {@link #getWallHits(int)}
+	 */
+	public static final int WALL_LEFT = 1;
+	public static final int WALL_RIGHT = 2;
+	public static final int WALL_TOP = 4;
+	public static final int WALL_BOTTOM = 8;
+
+	/**
+	 * The most steps a prediction replays one by one before giving up, see
+	 * {@link #predictCornerHit(int)}
+	 */
+	private static final int PREDICTION_STEPS = 4096;
+
+	/**
+	 * The number of logos above which stepping is split across threads
+	 */
+	private static final int PARALLEL_THRESHOLD = 8192;
+	/**
+	 * The number of logos stepped by a single task when stepping in parallel
+	 */
+	private static final int PARALLEL_CHUNK = 2048;
+
+	/**
+	 * The initial number of slots
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Flag set if the slot is in use
+	 */
+	private static final byte FLAG_ACTIVE = 1;
+	/**
+	 * Flag set if the slot was touched since the last step
+	 */
+	private static final byte FLAG_TOUCHED = 2;
+
+	private byte[] flags;
+	private int[] positionX;
+	private int[] positionY;
+	private int[] velocityX;
+	private int[] velocityY;
+	private int[] width;
+	private int[] height;
+	/**
+	 * The box around the opaque pixels of each logo, relative to its position
+	 */
+	private int[] solidX;
+	private int[] solidY;
+	private int[] solidWidth;
+	private int[] solidHeight;
+	private CollisionMask[] mask;
+	private CollisionMask[] obstacles;
+	private int[] boundsWidth;
+	private int[] boundsHeight;
+	private int[] color;
+	private int[] bounces;
+	private byte[] wallHits;
+	private long[] seed;
+	private int[] group;
+
+	/**
+	 * The collision groups, a {@code null} entry is a free group id
+	 */
+	private final List<CollisionGroup> groups = new ArrayList<>();
+
+	/**
+	 * The free slots below {@link #highWater}, used as a stack
+	 */
+	private int[] freeSlots;
+	private int freeCount = 0;
+	/**
+	 * One past the highest slot ever allocated
+	 */
+	private int highWater = 0;
+	/**
+	 * The number of slots in use
+	 */
+	private int activeCount = 0;
+	/**
+	 * The number of steps taken so far
+	 */
+	private long stepCount = 0;
+
+	/**
+	 * Creates a new, empty simulation
+	 */
+	public BounceSimulation() {
+		this.resize(BounceSimulation.INITIAL_CAPACITY);
+		this.freeSlots = new int[BounceSimulation.INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Adds a new logo to the simulation
+	 * <p>
+	 * The logo starts one third from the left and halfway down the bounds, moving
+	 * right and down, and colored {@link #START_COLOR white}.
+	 *
+	 * @param boundsWidth  the width of the area the logo bounces in
+	 * @param boundsHeight the height of the area the logo bounces in
+	 * @param logoWidth    the width of the logo
+	 * @param logoHeight   the height of the logo
+	 * @param seed         the seed the colors are derived from
+	 * @return the slot of the new logo
+	 */
+	public int allocate(int boundsWidth, int boundsHeight, int logoWidth, int logoHeight, long seed) {
+		int slot;
+		if (this.freeCount > 0) {
+			slot = this.freeSlots[--this.freeCount];
+		} else {
+			if (this.highWater == this.flags.length) {
+				this.resize(this.flags.length * 2);
+			}
+			slot = this.highWater++;
+		}
+
+		this.flags[slot] = BounceSimulation.FLAG_ACTIVE;
+		this.boundsWidth[slot] = boundsWidth;
+		this.boundsHeight[slot] = boundsHeight;
+		this.width[slot] = logoWidth;
+		this.height[slot] = logoHeight;
+		this.solidX[slot] = 0;
+		this.solidY[slot] = 0;
+		this.solidWidth[slot] = logoWidth;
+		this.solidHeight[slot] = logoHeight;
+		this.mask[slot] = null;
+		this.obstacles[slot] = null;
+		this.positionX[slot] = (boundsWidth - logoWidth) / 3;
+		this.positionY[slot] = (boundsHeight - logoHeight) / 2;
+		this.velocityX[slot] = BounceSimulation.MOVEMENT_SPEED;
+		this.velocityY[slot] = BounceSimulation.MOVEMENT_SPEED;
+		this.color[slot] = BounceSimulation.START_COLOR;
+		this.bounces[slot] = 0;
+		this.wallHits[slot] = 0;
+		this.seed[slot] = seed;
+		this.group[slot] = -1;
+		this.activeCount++;
+		return slot;
+	}
+
+	/**
+	 * Removes a logo from the simulation
+	 *
+	 * @param slot the slot of the logo
+	 */
+	public void free(int slot) {
+		if ((this.flags[slot] & BounceSimulation.FLAG_ACTIVE) == 0) {
+			return;
+		}
+		if (this.group[slot] != -1) {
+			this.groups.get(this.group[slot]).remove(slot);
+			this.group[slot] = -1;
+		}
+		this.flags[slot] = 0;
+		this.mask[slot] = null;
+		this.obstacles[slot] = null;
+		if (this.freeCount == this.freeSlots.length) {
+			this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+		}
+		this.freeSlots[this.freeCount++] = slot;
+		this.activeCount--;
+	}
+
+	/**
+	 * Moves a logo to a new position, and picks the direction it moves in
+	 *
+	 * @param slot  the slot of the logo
+	 * @param x     the new X position
+	 * @param y     the new Y position
+	 * @param right {@code true} to move right, {@code false} to move left
+	 * @param down  {@code true} to move down, {@code false} to move up
+	 */
+	public void place(int slot, int x, int y, boolean right, boolean down) {
+		this.positionX[slot] = x;
+		this.positionY[slot] = y;
+		this.velocityX[slot] = right ? BounceSimulation.MOVEMENT_SPEED : -BounceSimulation.MOVEMENT_SPEED;
+		this.velocityY[slot] = down ? BounceSimulation.MOVEMENT_SPEED : -BounceSimulation.MOVEMENT_SPEED;
+	}
+
+	/**
+	 * Puts a logo back into a state it was in before
+	 * <p>
+	 * The color is derived again from the seed and the number of bounces. If the
+	 * logo no longer fits where it was, e.g. because its bounds got smaller, it
+	 * is moved back inside.
+	 *
+	 * @param slot    the slot of the logo
+	 * @param x       the X position
+	 * @param y       the Y position
+	 * @param right   {@code true} to move right, {@code false} to move left
+	 * @param down    {@code true} to move down, {@code false} to move up
+	 * @param bounces the number of bounces
+	 * @param seed    the seed the colors are derived from
+	 * @see #getBounces(int)
+	 * @see #getSeed(int)
+	 */
+	public void restore(int slot, int x, int y, boolean right, boolean down, int bounces, long seed) {
+		int minX = -this.solidX[slot];
+		int minY = -this.solidY[slot];
+		int maxX = Math.max(this.boundsWidth[slot] - this.solidWidth[slot] - 1, 0) + minX;
+		int maxY = Math.max(this.boundsHeight[slot] - this.solidHeight[slot] - 1, 0) + minY;
+		this.place(slot, Math.min(Math.max(x, minX), maxX), Math.min(Math.max(y, minY), maxY), right, down);
+		this.bounces[slot] = bounces;
+		this.seed[slot] = seed;
+		this.color[slot] = bounces == 0 ? BounceSimulation.START_COLOR : BounceSimulation.colorOf(seed, bounces);
+	}
+
+	/**
+	 * Creates a new collision group
+	 * <p>
+	 * Logos added to the group with {@link #addToGroup(int, int)} bounce off each
+	 * other, as well as off the walls. Every bounce picks a new color, like
+	 * bouncing off a wall does.
+	 *
+	 * @return the id of the group
+	 */
+	public int createGroup() {
+		int id = this.groups.indexOf(null);
+		if (id == -1) {
+			id = this.groups.size();
+			this.groups.add(new CollisionGroup());
+		} else {
+			this.groups.set(id, new CollisionGroup());
+		}
+		return id;
+	}
+
+	/**
+	 * Adds a logo to a collision group
+	 *
+	 * @param id   the id of the group
+	 * @param slot the slot of the logo
+	 */
+	public void addToGroup(int id, int slot) {
+		if (this.group[slot] != -1) {
+			this.groups.get(this.group[slot]).remove(slot);
+		}
+		this.groups.get(id).add(slot);
+		this.group[slot] = id;
+	}
+
+	/**
+	 * Removes a collision group
+	 * <p>
+	 * The logos in the group stay in the simulation, they just no longer bounce
+	 * off each other.
+	 *
+	 * @param id the id of the group
+	 */
+	public void freeGroup(int id) {
+		CollisionGroup removed = this.groups.get(id);
+		for (int i = 0; i < removed.memberCount; i++) {
+			this.group[removed.members[i]] = -1;
+		}
+		this.groups.set(id, null);
+	}
+
+	/**
+	 * Marks a logo to be moved on the next step
+	 *
+	 * @param slot the slot of the logo
+	 */
+	public void touch(int slot) {
+		this.flags[slot] |= BounceSimulation.FLAG_TOUCHED;
+	}
+
+	/**
+	 * Changes the area a logo bounces in
+	 *
+	 * @param slot         the slot of the logo
+	 * @param boundsWidth  the new width of the area
+	 * @param boundsHeight the new height of the area
+	 */
+	public void setBounds(int slot, int boundsWidth, int boundsHeight) {
+		this.boundsWidth[slot] = boundsWidth;
+		this.boundsHeight[slot] = boundsHeight;
+	}
+
+	/**
+	 * Gives a logo a mask of its opaque pixels
+	 * <p>
+	 * The logo then bounces off the walls with the box around its opaque pixels,
+	 * so transparent pixels at its edges may move past the walls. Against other
+	 * logos with a mask, it only bounces when their opaque pixels touch.
+	 *
+	 * @param slot the slot of the logo
+	 * @param mask the mask, of the same size as the logo, or {@code null} to
+	 *             bounce with the whole logo
+	 */
+	public void setMask(int slot, CollisionMask mask) {
+		if (mask == null || mask.isEmpty()) {
+			this.mask[slot] = null;
+			this.solidX[slot] = 0;
+			this.solidY[slot] = 0;
+			this.solidWidth[slot] = this.width[slot];
+			this.solidHeight[slot] = this.height[slot];
+			return;
+		}
+		this.mask[slot] = mask;
+		this.solidX[slot] = mask.getLeft();
+		this.solidY[slot] = mask.getTop();
+		this.solidWidth[slot] = mask.getRight() - mask.getLeft();
+		this.solidHeight[slot] = mask.getBottom() - mask.getTop();
+	}
+
+	/**
+	 * Gives a logo obstacles to bounce off, besides the walls
+	 * <p>
+	 * The logo bounces when its opaque pixels, see
+	 * {@link #setMask(int, CollisionMask)}, run into the obstacles. Only logos
+	 * with a mask bounce off obstacles. A logo that is already inside the
+	 * obstacles, e.g. because it started there, moves through until it is clear
+	 * of them.
+	 * <p>
+	 * Like logos in a collision group, logos with obstacles cannot
+	 * {@link #advance(int, long) jump ahead}, and their bounces cannot be
+	 * predicted. The same mask can be given to many logos.
+	 *
+	 * @param slot      the slot of the logo
+	 * @param obstacles the obstacles, of the same size as the bounds, or
+	 *                  {@code null} to remove them
+	 */
+	public void setObstacles(int slot, CollisionMask obstacles) {
+		this.obstacles[slot] = obstacles;
+	}
+
+	/**
+	 * Moves a logo forward by a number of steps at once
+	 * <p>
+	 * The logo ends up exactly where stepping it that many times would have put
+	 * it, with the same direction, number of bounces and color. Instead of
+	 * replaying every step, the motion along each axis is worked out directly
+	 * from where the logo is in its back and forth cycle, so this takes the same
+	 * time no matter how many steps are skipped.
+	 * <p>
+	 * Logos in a collision group cannot be moved this way, since where they bounce
+	 * depends on the other logos, and neither can logos with obstacles.
+	 *
+	 * @param slot  the slot of the logo
+	 * @param steps the number of steps to move forward
+	 * @return {@code true} if the logo was moved, {@code false} if it is in a
+	 *         collision group or has obstacles
+	 */
+	public boolean advance(int slot, long steps) {
+		if (!this.isPredictable(slot)) {
+			return false;
+		}
+		if (steps <= 0) {
+			return true;
+		}
+
+		// The walls are bounced off with the opaque pixels of the logo, so the
+		// motion is worked out for the box around them
+		this.positionX[slot] += this.solidX[slot];
+		this.positionY[slot] += this.solidY[slot];
+		long bounced = BounceSimulation.advanceAxis(this.positionX, this.velocityX, slot,
+				this.boundsWidth[slot] - this.solidWidth[slot] - 1, steps);
+		bounced += BounceSimulation.advanceAxis(this.positionY, this.velocityY, slot,
+				this.boundsHeight[slot] - this.solidHeight[slot] - 1, steps);
+		this.positionX[slot] -= this.solidX[slot];
+		this.positionY[slot] -= this.solidY[slot];
+		if (bounced > 0) {
+			this.bounces[slot] += (int) bounced;
+			this.color[slot] = BounceSimulation.colorOf(this.seed[slot], this.bounces[slot]);
+		}
+		return true;
+	}
+
+	/**
+	 * Steps every touched logo by one tick
+	 * <p>
+	 * Each logo is moved by its velocity, bounced off the other logos in its
+	 * collision group and off its obstacles, and then bounced off the walls of
+	 * its bounds. Every bounce picks a new color.
+	 */
+	public void step() {
+		if (this.activeCount >= BounceSimulation.PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(new StepTask(0, this.highWater));
+		} else {
+			this.stepRange(0, this.highWater);
+		}
+
+		for (int i = 0; i < this.groups.size(); i++) {
+			CollisionGroup collisionGroup = this.groups.get(i);
+			if (collisionGroup != null) {
+				this.stepGroup(collisionGroup);
+			}
+		}
+		this.stepCount++;
+	}
+
+	private void stepRange(int from, int to) {
+		final byte[] flags = this.flags;
+		final int[] positionX = this.positionX;
+		final int[] positionY = this.positionY;
+		final int[] velocityX = this.velocityX;
+		final int[] velocityY = this.velocityY;
+
+		for (int i = from; i < to; i++) {
+			if (flags[i] != (BounceSimulation.FLAG_ACTIVE | BounceSimulation.FLAG_TOUCHED)) {
+				continue;
+			}
+
+			positionX[i] += velocityX[i];
+			positionY[i] += velocityY[i];
+
+			// Grouped logos bounce off each other before the walls, they are
+			// finished by stepGroup() once every logo has moved
+			if (this.group[i] == -1) {
+				flags[i] = BounceSimulation.FLAG_ACTIVE;
+				this.bounceObstacles(i);
+				this.bounceWalls(i);
+			}
+		}
+	}
+
+	private void stepGroup(CollisionGroup collisionGroup) {
+		// Only the members that were touched take part
+		int count = 0;
+		int cellSize = 1;
+		for (int m = 0; m < collisionGroup.memberCount; m++) {
+			int slot = collisionGroup.members[m];
+			if (this.flags[slot] == (BounceSimulation.FLAG_ACTIVE | BounceSimulation.FLAG_TOUCHED)) {
+				collisionGroup.moving[count++] = slot;
+				cellSize = Math.max(cellSize, Math.max(this.width[slot], this.height[slot]));
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		int first = collisionGroup.moving[0];
+		if (collisionGroup.gridWidth != this.boundsWidth[first] || collisionGroup.gridHeight != this.boundsHeight[first]
+				|| collisionGroup.gridCellSize != cellSize) {
+			collisionGroup.gridWidth = this.boundsWidth[first];
+			collisionGroup.gridHeight = this.boundsHeight[first];
+			collisionGroup.gridCellSize = cellSize;
+			collisionGroup.grid.resize(collisionGroup.gridWidth, collisionGroup.gridHeight, cellSize);
+		}
+
+		CollisionGrid grid = collisionGroup.grid;
+		grid.build(collisionGroup.moving, count, this.positionX, this.positionY);
+
+		for (int a = 0; a < count; a++) {
+			int i = collisionGroup.moving[a];
+			int cell = grid.itemCell[a];
+			int column = cell % grid.columns;
+			int row = cell / grid.columns;
+
+			for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, grid.rows - 1); r++) {
+				for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, grid.columns - 1); c++) {
+					int neighbor = r * grid.columns + c;
+					for (int k = grid.cellStart[neighbor]; k < grid.cellStart[neighbor + 1]; k++) {
+						int j = grid.cellItems[k];
+						// Every pair is seen from both sides, only handle it once
+						if (j > i) {
+							this.bounceLogos(i, j);
+						}
+					}
+				}
+			}
+		}
+
+		for (int a = 0; a < count; a++) {
+			int i = collisionGroup.moving[a];
+			this.flags[i] = BounceSimulation.FLAG_ACTIVE;
+			this.bounceObstacles(i);
+			this.bounceWalls(i);
+		}
+	}
+
+	private void bounceLogos(int i, int j) {
+		int xi = this.positionX[i] + this.solidX[i];
+		int yi = this.positionY[i] + this.solidY[i];
+		int xj = this.positionX[j] + this.solidX[j];
+		int yj = this.positionY[j] + this.solidY[j];
+
+		int overlapX = Math.min(xi + this.solidWidth[i], xj + this.solidWidth[j]) - Math.max(xi, xj);
+		int overlapY = Math.min(yi + this.solidHeight[i], yj + this.solidHeight[j]) - Math.max(yi, yj);
+		if (overlapX <= 0 || overlapY <= 0) {
+			return;
+		}
+		// The boxes overlap, but the opaque pixels may not
+		if (this.mask[i] != null && this.mask[j] != null && !this.mask[i].overlaps(this.mask[j],
+				this.positionX[j] - this.positionX[i], this.positionY[j] - this.positionY[i])) {
+			return;
+		}
+
+		// Bounce along the axis with the least overlap, and only if the logos are
+		// moving towards each other, so that overlapping logos can separate
+		if (overlapX < overlapY) {
+			int left = xi <= xj ? i : j;
+			int right = left == i ? j : i;
+			if (this.velocityX[left] <= 0 && this.velocityX[right] >= 0) {
+				return;
+			}
+			this.velocityX[left] = -BounceSimulation.MOVEMENT_SPEED;
+			this.velocityX[right] = BounceSimulation.MOVEMENT_SPEED;
+		} else {
+			int top = yi <= yj ? i : j;
+			int bottom = top == i ? j : i;
+			if (this.velocityY[top] <= 0 && this.velocityY[bottom] >= 0) {
+				return;
+			}
+			this.velocityY[top] = -BounceSimulation.MOVEMENT_SPEED;
+			this.velocityY[bottom] = BounceSimulation.MOVEMENT_SPEED;
+		}
+		this.updateColor(i);
+		this.updateColor(j);
+	}
+
+	private void bounceObstacles(int i) {
+		CollisionMask obstacles = this.obstacles[i];
+		CollisionMask mask = this.mask[i];
+		if (obstacles == null || mask == null) {
+			return;
+		}
+		int x = this.positionX[i];
+		int y = this.positionY[i];
+		if (!obstacles.overlaps(mask, x, y)) {
+			return;
+		}
+		int lastX = x - this.velocityX[i];
+		int lastY = y - this.velocityY[i];
+		if (obstacles.overlaps(mask, lastX, lastY)) {
+			// Already inside before this step, let it move through
+			return;
+		}
+
+		// Bounce along the axis that ran into the obstacles, or along both if
+		// only the diagonal move did, and go back to where the logo was clear
+		boolean hitX = obstacles.overlaps(mask, x, lastY);
+		boolean hitY = obstacles.overlaps(mask, lastX, y);
+		if (!hitX && !hitY) {
+			hitX = true;
+			hitY = true;
+		}
+		if (hitX) {
+			this.velocityX[i] = -this.velocityX[i];
+		}
+		if (hitY) {
+			this.velocityY[i] = -this.velocityY[i];
+		}
+		this.positionX[i] = lastX;
+		this.positionY[i] = lastY;
+		this.updateColor(i);
+	}
+
+	private void bounceWalls(int i) {
+		final int[] velocityX = this.velocityX;
+		final int[] velocityY = this.velocityY;
+		// The walls are bounced off with the box around the opaque pixels
+		int x = this.positionX[i] + this.solidX[i];
+		int y = this.positionY[i] + this.solidY[i];
+		int hits = 0;
+
+		if (velocityX[i] > 0 && x + this.solidWidth[i] >= this.boundsWidth[i] - 1) {
+			// Right edge
+			velocityX[i] = -BounceSimulation.MOVEMENT_SPEED;
+			hits |= BounceSimulation.WALL_RIGHT;
+			this.updateColor(i);
+		}
+		if (velocityX[i] < 0 && x <= 0) {
+			// Left edge
+			velocityX[i] = BounceSimulation.MOVEMENT_SPEED;
+			hits |= BounceSimulation.WALL_LEFT;
+			this.updateColor(i);
+		}
+
+		if (velocityY[i] > 0 && y + this.solidHeight[i] >= this.boundsHeight[i] - 1) {
+			// Bottom edge
+			velocityY[i] = -BounceSimulation.MOVEMENT_SPEED;
+			hits |= BounceSimulation.WALL_BOTTOM;
+			this.updateColor(i);
+		}
+		if (velocityY[i] < 0 && y <= 0) {
+			// Top edge
+			velocityY[i] = BounceSimulation.MOVEMENT_SPEED;
+			hits |= BounceSimulation.WALL_TOP;
+			this.updateColor(i);
+		}
+		this.wallHits[i] = (byte) hits;
+	}
+
+	/**
+	 * Predicts how many steps from now a logo bounces off a wall next
+	 * <p>
+	 * This assumes the logo is stepped every step from now on, which is also
+	 * where it ends up when it {@link #advance(int, long) jumps ahead} after
+	 * skipping steps. Like jumping, this is worked out directly from where the
+	 * logo is in its back and forth cycle, so it takes the same time no matter
+	 * how far away the bounce is.
+	 *
+	 * @param slot the slot of the logo
+	 * @return the number of steps, at least {@code 1}, or {@code -1} if the logo
+	 *         is in a collision group or has obstacles, since where it bounces
+	 *         depends on the other logos or the obstacles
+	 */
+	public long predictBounce(int slot) {
+		if (!this.isPredictable(slot)) {
+			return -1;
+		}
+		int maxX = this.boundsWidth[slot] - this.solidWidth[slot] - 1;
+		int maxY = this.boundsHeight[slot] - this.solidHeight[slot] - 1;
+		return Math.min(
+				BounceSimulation.predictAxis(this.positionX[slot] + this.solidX[slot], this.velocityX[slot], maxX),
+				BounceSimulation.predictAxis(this.positionY[slot] + this.solidY[slot], this.velocityY[slot], maxY));
+	}
+
+	/**
+	 * Predicts how many steps from now a logo hits a corner next, that is,
+	 * bounces off a side and the top or bottom in the same step
+	 * <p>
+	 * Once a logo is in its back and forth cycle along both axes, it bounces
+	 * along each axis at a fixed interval. A corner is hit when the bounces of
+	 * both axes line up, which is found with the Chinese remainder theorem. Some
+	 * logos never hit a corner, because the bounces never line up.
+	 * <p>
+	 * The same assumptions as for {@link #predictBounce(int)} are made.
+	 *
+	 * @param slot the slot of the logo
+	 * @return the number of steps, at least {@code 1}, or {@code -1} if the logo
+	 *         never hits a corner, is in a collision group or has obstacles
+	 */
+	public long predictCornerHit(int slot) {
+		if (!this.isPredictable(slot)) {
+			return -1;
+		}
+		int maxX = this.boundsWidth[slot] - this.solidWidth[slot] - 1;
+		int maxY = this.boundsHeight[slot] - this.solidHeight[slot] - 1;
+		int[] position = { this.positionX[slot] + this.solidX[slot], this.positionY[slot] + this.solidY[slot] };
+		int[] velocity = { this.velocityX[slot], this.velocityY[slot] };
+
+		// Logos outside of their cycle, e.g. after the bounds shrunk, are first
+		// stepped into it
+		long steps = 0;
+		while (!BounceSimulation.isInCycle(position[0], velocity[0], maxX)
+				|| !BounceSimulation.isInCycle(position[1], velocity[1], maxY)) {
+			if (steps == BounceSimulation.PREDICTION_STEPS) {
+				return -1;
+			}
+			steps++;
+			long bouncedX = BounceSimulation.advanceAxis(position, velocity, 0, maxX, 1);
+			long bouncedY = BounceSimulation.advanceAxis(position, velocity, 1, maxY, 1);
+			if (bouncedX > 0 && bouncedY > 0) {
+				return steps;
+			}
+		}
+
+		// Bounces happen at firstX + k * periodX, and at firstY + m * periodY
+		long firstX = BounceSimulation.predictAxis(position[0], velocity[0], maxX);
+		long firstY = BounceSimulation.predictAxis(position[1], velocity[1], maxY);
+		long periodX = BounceSimulation.cycleDistance(position[0], maxX) / BounceSimulation.MOVEMENT_SPEED;
+		long periodY = BounceSimulation.cycleDistance(position[1], maxY) / BounceSimulation.MOVEMENT_SPEED;
+
+		long gcd = BounceSimulation.gcd(periodX, periodY);
+		if ((firstY - firstX) % gcd != 0) {
+			return -1;
+		}
+		long lcm = periodX / gcd * periodY;
+		long modulus = periodY / gcd;
+		long k = Math.floorMod((firstY - firstX) / gcd % modulus * BounceSimulation.inverse(periodX / gcd % modulus,
+				modulus), modulus);
+		long corner = firstX + k * periodX;
+		if (corner < firstY) {
+			corner += (firstY - corner + lcm - 1) / lcm * lcm;
+		}
+		return steps + corner;
+	}
+
+	/**
+	 * Checks whether a logo only bounces off the walls, so that its motion can be
+	 * worked out directly
+	 */
+	private boolean isPredictable(int slot) {
+		return this.group[slot] == -1 && this.obstacles[slot] == null;
+	}
+
+	/**
+	 * Predicts how many steps from now a logo bounces along one axis, following
+	 * the same rules as {@link #advanceAxis(int[], int[], int, int, long)}
+	 *
+	 * @param p   the position along the axis
+	 * @param v   the velocity along the axis
+	 * @param max the position at which the logo bounces off the far edge
+	 * @return the number of steps, at least {@code 1}
+	 */
+	private static long predictAxis(long p, int v, int max) {
+		final int speed = BounceSimulation.MOVEMENT_SPEED;
+		long steps = 0;
+		while (!BounceSimulation.isInCycle(p, v, max)) {
+			// Outside of the cycle, head straight towards it
+			long low = BounceSimulation.cycleLow(p);
+			long distance = BounceSimulation.cycleDistance(p, max);
+			long straight = 0;
+			if (distance > 0 && v < 0) {
+				straight = (p - (low + distance)) / speed - 1;
+			} else if (distance > 0 && v > 0) {
+				straight = (low - p) / speed - 1;
+			}
+			if (straight > 0) {
+				p += straight * v;
+				steps += straight;
+				continue;
+			}
+
+			// Take a single step, also used when the logo does not fit at all
+			p += v;
+			steps++;
+			if (v > 0 && p >= max || v < 0 && p <= 0) {
+				return steps;
+			}
+		}
+
+		// The phase runs from 0 to 2 * distance over one full cycle, the logo
+		// bounces every time it passes a multiple of distance
+		long low = BounceSimulation.cycleLow(p);
+		long distance = BounceSimulation.cycleDistance(p, max);
+		long high = low + distance;
+		long phase = v > 0 ? p - low : distance + (high - p);
+		long next = (Math.floorDiv(phase, distance) + 1) * distance;
+		return steps + (next - phase) / speed;
+	}
+
+	/**
+	 * Checks whether a logo is in its back and forth cycle along one axis, see
+	 * {@link #advanceAxis(int[], int[], int, int, long)}
+	 */
+	private static boolean isInCycle(long p, int v, int max) {
+		long low = BounceSimulation.cycleLow(p);
+		long high = low + BounceSimulation.cycleDistance(p, max);
+		return high > low && (v > 0 ? p >= low && p < high : p > low && p <= high);
+	}
+
+	/**
+	 * Gets the turning point at the near edge of the cycle a position is in
+	 */
+	private static long cycleLow(long p) {
+		long offset = Math.floorMod(p, (long) BounceSimulation.MOVEMENT_SPEED);
+		return offset > 0 ? offset - BounceSimulation.MOVEMENT_SPEED : 0;
+	}
+
+	/**
+	 * Gets the distance between the turning points of the cycle a position is in
+	 */
+	private static long cycleDistance(long p, int max) {
+		final int speed = BounceSimulation.MOVEMENT_SPEED;
+		long offset = Math.floorMod(p, (long) speed);
+		long high = offset + Math.floorDiv(max - offset + speed - 1, (long) speed) * speed;
+		return high - BounceSimulation.cycleLow(p);
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/**
+	 * Gets the inverse of a number modulo another, the two must be coprime
+	 */
+	private static long inverse(long a, long modulus) {
+		if (modulus == 1) {
+			return 0;
+		}
+		// Extended Euclidean algorithm
+		long oldR = a;
+		long r = modulus;
+		long oldS = 1;
+		long s = 0;
+		while (r != 0) {
+			long q = oldR / r;
+			long t = oldR - q * r;
+			oldR = r;
+			r = t;
+			t = oldS - q * s;
+			oldS = s;
+			s = t;
+		}
+		return Math.floorMod(oldS, modulus);
+	}
+
+	/**
+	 * Moves a logo along one axis by a number of steps, following the same rules
+	 * as {@link #bounceWalls(int)}
+	 * <p>
+	 * A logo moving back and forth only ever visits positions a multiple of the
+	 * speed apart. It turns around at the first of those at or past the far
+	 * edge, and at the last of those at or before the near edge, so once it is
+	 * between the two it repeats the same cycle forever. Logos that start outside
+	 * the cycle, e.g. after the bounds shrunk, are first moved into it.
+	 *
+	 * @param position the positions along the axis
+	 * @param velocity the velocities along the axis
+	 * @param slot     the slot of the logo
+	 * @param max      the position at which the logo bounces off the far edge
+	 * @param steps    the number of steps to move
+	 * @return the number of bounces
+	 */
+	private static long advanceAxis(int[] position, int[] velocity, int slot, int max, long steps) {
+		final int speed = BounceSimulation.MOVEMENT_SPEED;
+		long p = position[slot];
+		int v = velocity[slot];
+		long bounced = 0;
+
+		// The turning points of the cycle
+		long offset = Math.floorMod(p, (long) speed);
+		long low = offset > 0 ? offset - speed : 0;
+		long high = offset + Math.floorDiv(max - offset + speed - 1, (long) speed) * speed;
+		long distance = high - low;
+
+		while (steps > 0) {
+			if (distance > 0 && (v > 0 ? p >= low && p < high : p > low && p <= high)) {
+				break;
+			}
+
+			// Outside of the cycle, head straight towards it
+			long straight = 0;
+			if (distance > 0 && v < 0 && p > high) {
+				straight = Math.min(steps, (p - high) / speed);
+			} else if (distance > 0 && v > 0 && p < low) {
+				straight = Math.min(steps, (low - p) / speed);
+			}
+			if (straight > 0) {
+				p += straight * v;
+				steps -= straight;
+				continue;
+			}
+
+			// Take a single step, also used when the logo does not fit at all
+			p += v;
+			steps--;
+			if (v > 0 && p >= max) {
+				v = -speed;
+				bounced++;
+			}
+			if (v < 0 && p <= 0) {
+				v = speed;
+				bounced++;
+			}
+		}
+
+		if (steps > 0) {
+			// The phase runs from 0 to 2 * distance over one full cycle, the logo
+			// bounces every time it passes a multiple of distance
+			long phase = v > 0 ? p - low : distance + (high - p);
+			long end = phase + steps * speed;
+			bounced += Math.floorDiv(end, distance) - Math.floorDiv(phase, distance);
+
+			end = Math.floorMod(end, 2 * distance);
+			if (end < distance) {
+				p = low + end;
+				v = speed;
+			} else {
+				p = high - (end - distance);
+				v = -speed;
+			}
+		}
+
+		position[slot] = (int) p;
+		velocity[slot] = v;
+		return bounced;
+	}
+
+	private void updateColor(int slot) {
+		int bounce = ++this.bounces[slot];
+		this.color[slot] = BounceSimulation.colorOf(this.seed[slot], bounce);
+	}
+
+	/**
+	 * Derives the color picked on a bounce
+	 * <p>
+	 * Each of the red, green and blue components is between {@code $50} and
+	 * {@code $FF} inclusive.
+	 *
+	 * @param seed   the seed of the logo
+	 * @param bounce the number of the bounce, starting at {@code 1}
+	 * @return the RGB color
+	 */
+	public static int colorOf(long seed, int bounce) {
+		// SplitMix64, so that consecutive bounces give unrelated colors
+		long z = seed + bounce * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+
+		int r = (int) (((z & 0xFFFF) * (0xFF + 1 - 0x50)) >>> 16) + 0x50;
+		int g = (int) ((((z >>> 16) & 0xFFFF) * (0xFF + 1 - 0x50)) >>> 16) + 0x50;
+		int b = (int) ((((z >>> 32) & 0xFFFF) * (0xFF + 1 - 0x50)) >>> 16) + 0x50;
+		return (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Gets the X position of a logo
+	 *
+	 * @param slot the slot of the logo
+	 * @return the X position
+	 */
+	public int getX(int slot) {
+		return this.positionX[slot];
+	}
+
+	/**
+	 * Gets the Y position of a logo
+	 *
+	 * @param slot the slot of the logo
+	 * @return the Y position
+	 */
+	public int getY(int slot) {
+		return this.positionY[slot];
+	}
+
+	/**
+	 * Gets the horizontal velocity of a logo
+	 *
+	 * @param slot the slot of the logo
+	 * @return the horizontal velocity
+	 */
+	public int getVelocityX(int slot) {
+		return this.velocityX[slot];
+	}
+
+	/**
+	 * Gets the vertical velocity of a logo
+	 *
+	 * @param slot the slot of the logo
+	 * @return the vertical velocity
+	 */
+	public int getVelocityY(int slot) {
+		return this.velocityY[slot];
+	}
+
+	/**
+	 * Gets the current color of a logo
+	 *
+	 * @param slot the slot of the logo
+	 * @return the RGB color
+	 */
+	public int getColor(int slot) {
+		return this.color[slot];
+	}
+
+	/**
+	 * Gets the number of times a logo bounced off a wall or another logo
+	 * <p>
+	 * The color changes whenever this changes, so displays can compare it to the
+	 * value they saw last to find out whether they need to recolor.
+	 *
+	 * @param slot the slot of the logo
+	 * @return the number of bounces
+	 */
+	public int getBounces(int slot) {
+		return this.bounces[slot];
+	}
+
+	/**
+	 * Gets the seed the colors of a logo are derived from
+	 *
+	 * @param slot the slot of the logo
+	 * @return the seed
+	 * @see #colorOf(long, int)
+	 */
+	public long getSeed(int slot) {
+		return this.seed[slot];
+	}
+
+	/**
+	 * Gets the walls a logo bounced off during the last step it was moved by
+	 * <p>
+	 * This is a combination of {@link #WALL_LEFT}, {@link #WALL_RIGHT},
+	 * {@link #WALL_TOP} and {@link #WALL_BOTTOM}. A side and the top or bottom at
+	 * once is a corner hit. Bounces off other logos or obstacles are not included,
+	 * and neither are bounces skipped by {@link #advance(int, long)}.
+	 *
+	 * @param slot the slot of the logo
+	 * @return the walls, or {@code 0} if the logo did not hit a wall
+	 */
+	public int getWallHits(int slot) {
+		return this.wallHits[slot];
+	}
+
+	/**
+	 * Gets the number of logos in the simulation
+	 *
+	 * @return the number of logos
+	 */
+	public int size() {
+		return this.activeCount;
+	}
+
+	/**
+	 * Gets the number of steps taken so far
+	 * <p>
+	 * This only changes once per step, so it can be used to tell ticks apart.
+	 *
+	 * @return the number of steps
+	 */
+	public long getStepCount() {
+		return this.stepCount;
+	}
+
+	private void resize(int capacity) {
+		if (this.flags == null) {
+			this.flags = new byte[capacity];
+			this.positionX = new int[capacity];
+			this.positionY = new int[capacity];
+			this.velocityX = new int[capacity];
+			this.velocityY = new int[capacity];
+			this.width = new int[capacity];
+			this.height = new int[capacity];
+			this.solidX = new int[capacity];
+			this.solidY = new int[capacity];
+			this.solidWidth = new int[capacity];
+			this.solidHeight = new int[capacity];
+			this.mask = new CollisionMask[capacity];
+			this.obstacles = new CollisionMask[capacity];
+			this.boundsWidth = new int[capacity];
+			this.boundsHeight = new int[capacity];
+			this.color = new int[capacity];
+			this.bounces = new int[capacity];
+			this.wallHits = new byte[capacity];
+			this.seed = new long[capacity];
+			this.group = new int[capacity];
+			return;
+		}
+		this.flags = Arrays.copyOf(this.flags, capacity);
+		this.positionX = Arrays.copyOf(this.positionX, capacity);
+		this.positionY = Arrays.copyOf(this.positionY, capacity);
+		this.velocityX = Arrays.copyOf(this.velocityX, capacity);
+		this.velocityY = Arrays.copyOf(this.velocityY, capacity);
+		this.width = Arrays.copyOf(this.width, capacity);
+		this.height = Arrays.copyOf(this.height, capacity);
+		this.solidX = Arrays.copyOf(this.solidX, capacity);
+		this.solidY = Arrays.copyOf(this.solidY, capacity);
+		this.solidWidth = Arrays.copyOf(this.solidWidth, capacity);
+		this.solidHeight = Arrays.copyOf(this.solidHeight, capacity);
+		this.mask = Arrays.copyOf(this.mask, capacity);
+		this.obstacles = Arrays.copyOf(this.obstacles, capacity);
+		this.boundsWidth = Arrays.copyOf(this.boundsWidth, capacity);
+		this.boundsHeight = Arrays.copyOf(this.boundsHeight, capacity);
+		this.color = Arrays.copyOf(this.color, capacity);
+		this.bounces = Arrays.copyOf(this.bounces, capacity);
+		this.wallHits = Arrays.copyOf(this.wallHits, capacity);
+		this.seed = Arrays.copyOf(this.seed, capacity);
+		this.group = Arrays.copyOf(this.group, capacity);
+	}
+
+	/**
+	 * Steps a range of slots, splitting it up if it is too large
+	 */
+	private class StepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		StepTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BounceSimulation.PARALLEL_CHUNK) {
+				BounceSimulation.this.stepRange(this.from, this.to);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new StepTask(this.from, middle), new StepTask(middle, this.to));
+		}
+	}
+}
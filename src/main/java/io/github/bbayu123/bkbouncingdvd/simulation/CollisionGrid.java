@@ -0,0 +1,122 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid used to find logos that may overlap
+ * <p>
+ * The cells are at least as large as the largest logo, and every logo is put
+ * into the cell holding its top-left corner. Two logos can then only overlap if
+ * their cells are neighbors, so each logo only needs to be tested against the
+ * logos in the 3x3 cells around its own.
+ * <p>
+ * The logos are sorted into cells with a counting sort, into arrays that are
+ * kept between steps, so building the grid does not allocate unless the number
+ * of logos or cells grows.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class CollisionGrid {
+	int cellSize = 1;
+	int columns = 0;
+	int rows = 0;
+
+	/**
+	 * The index into {@link #cellItems} where each cell starts, the last entry
+	 * is the total number of items
+	 */
+	int[] cellStart = new int[1];
+	/**
+	 * The slots of the logos, sorted by cell
+	 */
+	int[] cellItems = new int[0];
+	/**
+	 * The cell of each logo, in the order they were given to
+	 * {@link #build(int[], int, int[], int[], int, int)}
+	 */
+	int[] itemCell = new int[0];
+
+	/**
+	 * Changes the layout of the grid
+	 *
+	 * @param boundsWidth  the width of the area covered
+	 * @param boundsHeight the height of the area covered
+	 * @param cellSize     the size of a cell, at least as large as any logo
+	 */
+	void resize(int boundsWidth, int boundsHeight, int cellSize) {
+		this.cellSize = Math.max(cellSize, 1);
+		this.columns = Math.max((boundsWidth + this.cellSize - 1) / this.cellSize, 1);
+		this.rows = Math.max((boundsHeight + this.cellSize - 1) / this.cellSize, 1);
+		int cells = this.columns * this.rows;
+		if (this.cellStart.length < cells + 1) {
+			this.cellStart = new int[cells + 1];
+		}
+	}
+
+	/**
+	 * Sorts logos into the cells
+	 *
+	 * @param slots     the slots of the logos
+	 * @param count     the number of logos
+	 * @param positionX the X positions of all slots
+	 * @param positionY the Y positions of all slots
+	 */
+	void build(int[] slots, int count, int[] positionX, int[] positionY) {
+		if (this.cellItems.length < count) {
+			this.cellItems = new int[slots.length];
+			this.itemCell = new int[slots.length];
+		}
+
+		int cells = this.columns * this.rows;
+		int[] cellStart = this.cellStart;
+		Arrays.fill(cellStart, 0, cells + 1, 0);
+
+		// Count the logos in each cell
+		for (int i = 0; i < count; i++) {
+			int slot = slots[i];
+			int cell = this.cellOf(positionX[slot], positionY[slot]);
+			this.itemCell[i] = cell;
+			cellStart[cell + 1]++;
+		}
+
+		// Turn the counts into start offsets
+		for (int cell = 0; cell < cells; cell++) {
+			cellStart[cell + 1] += cellStart[cell];
+		}
+
+		// Place the logos, using the start of each cell as a cursor
+		for (int i = 0; i < count; i++) {
+			this.cellItems[cellStart[this.itemCell[i]]++] = slots[i];
+		}
+
+		// Placing moved every start to the end of its cell, shift them back
+		for (int cell = cells; cell > 0; cell--) {
+			cellStart[cell] = cellStart[cell - 1];
+		}
+		cellStart[0] = 0;
+	}
+
+	private int cellOf(int x, int y) {
+		int column = Math.min(Math.max(x / this.cellSize, 0), this.columns - 1);
+		int row = Math.min(Math.max(y / this.cellSize, 0), this.rows - 1);
+		return row * this.columns + column;
+	}
+}
@@ -0,0 +1,71 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A set of logos that bounce off each other
+ * <p>
+ * Usually these are all the logos of one display. The members must all bounce
+ * in the same bounds.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class CollisionGroup {
+	/**
+	 * The slots of the members
+	 */
+	int[] members = new int[8];
+	int memberCount = 0;
+
+	/**
+	 * The members that were touched this step, filled in while stepping
+	 */
+	int[] moving = new int[8];
+
+	/**
+	 * The grid used to find overlapping members
+	 */
+	final CollisionGrid grid = new CollisionGrid();
+
+	/**
+	 * The bounds and cell size the grid was laid out for
+	 */
+	int gridWidth = -1;
+	int gridHeight = -1;
+	int gridCellSize = -1;
+
+	void add(int slot) {
+		if (this.memberCount == this.members.length) {
+			this.members = Arrays.copyOf(this.members, this.members.length * 2);
+			this.moving = new int[this.members.length];
+		}
+		this.members[this.memberCount++] = slot;
+	}
+
+	void remove(int slot) {
+		for (int i = 0; i < this.memberCount; i++) {
+			if (this.members[i] == slot) {
+				this.members[i] = this.members[--this.memberCount];
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd.simulation;
+
+/**
+ * The opaque pixels of a shape, used to bounce off the shape itself rather
+ * than the rectangle around it
+ * <p>
+ * Every row is packed into {@code long}s, one bit per pixel, with the leftmost
+ * pixel in the lowest bit. Two masks are tested for overlap a row at a time:
+ * the bits of the other mask are shifted in line with the bits of this mask,
+ * and the two are ANDed, so a logo 64 pixels wide takes a single shift and AND
+ * per row instead of a test per pixel.
+ * <p>
+ * A mask must not be changed once it is given to the simulation, so it can be
+ * read by the threads stepping the logos.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+public final class CollisionMask {
+	private final int width;
+	private final int height;
+	/**
+	 * The number of {@code long}s per row
+	 */
+	private final int words;
+	private final long[] rows;
+
+	/**
+	 * The box around the opaque pixels, {@link #right} and {@link #bottom} are
+	 * exclusive
+	 */
+	private int left;
+	private int top;
+	private int right = 0;
+	private int bottom = 0;
+
+	/**
+	 * Creates a new mask without any opaque pixels
+	 *
+	 * @param width  the width of the mask
+	 * @param height the height of the mask
+	 */
+	public CollisionMask(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.words = (width + 63) >>> 6;
+		this.rows = new long[this.words * height];
+		this.left = width;
+		this.top = height;
+	}
+
+	/**
+	 * Creates a mask of the non-transparent pixels of an image in map colors
+	 *
+	 * @param width       the width of the image
+	 * @param height      the height of the image
+	 * @param pixels      the map colors of the image, row by row
+	 * @param transparent the map color that is transparent
+	 * @return the mask
+	 */
+	public static CollisionMask of(int width, int height, byte[] pixels, byte transparent) {
+		CollisionMask mask = new CollisionMask(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (pixels[y * width + x] != transparent) {
+					mask.set(x, y);
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Marks a pixel as opaque
+	 *
+	 * @param x the X position of the pixel
+	 * @param y the Y position of the pixel
+	 */
+	public void set(int x, int y) {
+		this.rows[y * this.words + (x >>> 6)] |= 1L << x;
+		this.include(x, y, x + 1, y + 1);
+	}
+
+	/**
+	 * Checks whether a pixel is opaque
+	 *
+	 * @param x the X position of the pixel
+	 * @param y the Y position of the pixel
+	 * @return {@code true} if the pixel is opaque
+	 */
+	public boolean get(int x, int y) {
+		return (this.rows[y * this.words + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Marks the opaque pixels of another mask as opaque in this one
+	 * <p>
+	 * Pixels of the other mask outside of this mask are left out.
+	 *
+	 * @param other the other mask
+	 * @param x     the X position of the other mask in this one
+	 * @param y     the Y position of the other mask in this one
+	 */
+	public void add(CollisionMask other, int x, int y) {
+		int top = Math.max(y + other.top, 0);
+		int bottom = Math.min(y + other.bottom, this.height);
+		int left = Math.max(x + other.left, 0);
+		int right = Math.min(x + other.right, this.width);
+		if (top >= bottom || left >= right) {
+			return;
+		}
+		for (int row = top; row < bottom; row++) {
+			int start = row * this.words;
+			int otherStart = (row - y) * other.words;
+			for (int word = left >>> 6; word <= (right - 1) >>> 6; word++) {
+				this.rows[start + word] |= other.bits(otherStart, (word << 6) - x);
+			}
+		}
+		// The last word of a row can pick up pixels of the other mask past the
+		// right edge of this mask, clear them again
+		if (this.width % 64 != 0) {
+			long tail = -1L >>> (64 - this.width % 64);
+			for (int row = top; row < bottom; row++) {
+				this.rows[row * this.words + this.words - 1] &= tail;
+			}
+		}
+		this.include(left, top, right, bottom);
+	}
+
+	/**
+	 * Checks whether the opaque pixels of another mask overlap with those of
+	 * this mask
+	 *
+	 * @param other the other mask
+	 * @param x     the X position of the other mask relative to this one
+	 * @param y     the Y position of the other mask relative to this one
+	 * @return {@code true} if at least one pixel is opaque in both
+	 */
+	public boolean overlaps(CollisionMask other, int x, int y) {
+		// Only the rows and words where both boxes overlap need to be tested
+		int top = Math.max(this.top, y + other.top);
+		int bottom = Math.min(this.bottom, y + other.bottom);
+		int left = Math.max(this.left, x + other.left);
+		int right = Math.min(this.right, x + other.right);
+		if (top >= bottom || left >= right) {
+			return false;
+		}
+		int firstWord = left >>> 6;
+		int lastWord = (right - 1) >>> 6;
+		for (int row = top; row < bottom; row++) {
+			int start = row * this.words;
+			int otherStart = (row - y) * other.words;
+			for (int word = firstWord; word <= lastWord; word++) {
+				long bits = this.rows[start + word];
+				if (bits != 0 && (bits & other.bits(otherStart, (word << 6) - x)) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets 64 pixels of a row, starting at a column that may lie outside of
+	 * this mask, with the pixels outside being transparent
+	 */
+	private long bits(int rowStart, int column) {
+		if (column >= this.width || column <= -64) {
+			return 0;
+		}
+		int word = column >> 6;
+		int shift = column & 63;
+		long low = word >= 0 ? this.rows[rowStart + word] : 0;
+		if (shift == 0) {
+			return low;
+		}
+		long high = word + 1 < this.words ? this.rows[rowStart + word + 1] : 0;
+		return (low >>> shift) | (high << (64 - shift));
+	}
+
+	private void include(int left, int top, int right, int bottom) {
+		this.left = Math.min(this.left, left);
+		this.top = Math.min(this.top, top);
+		this.right = Math.max(this.right, right);
+		this.bottom = Math.max(this.bottom, bottom);
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Checks whether the mask has no opaque pixels
+	 *
+	 * @return {@code true} if no pixel is opaque
+	 */
+	public boolean isEmpty() {
+		return this.left >= this.right;
+	}
+
+	/**
+	 * Gets the leftmost column with an opaque pixel
+	 *
+	 * @return the X position of the column
+	 */
+	public int getLeft() {
+		return this.left;
+	}
+
+	/**
+	 * Gets the topmost row with an opaque pixel
+	 *
+	 * @return the Y position of the row
+	 */
+	public int getTop() {
+		return this.top;
+	}
+
+	/**
+	 * Gets the column after the rightmost column with an opaque pixel
+	 *
+	 * @return the X position of the column
+	 */
+	public int getRight() {
+		return this.right;
+	}
+
+	/**
+	 * Gets the row after the bottommost row with an opaque pixel
+	 *
+	 * @return the Y position of the row
+	 */
+	public int getBottom() {
+		return this.bottom;
+	}
+}
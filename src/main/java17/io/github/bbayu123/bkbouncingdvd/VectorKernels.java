@@ -0,0 +1,93 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API versions of the {@link PixelKernels}
+ * <p>
+ * Every kernel works on as many pixels at once as the widest vector the CPU
+ * supports, using masks to pick the non-transparent pixels. The pixels left
+ * over at the end of a row are done one by one.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class VectorKernels {
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	private VectorKernels() {
+	}
+
+	static void tint(byte[] source, byte[] target, byte color) {
+		ByteVector tint = ByteVector.broadcast(VectorKernels.SPECIES, color);
+		ByteVector transparent = ByteVector.zero(VectorKernels.SPECIES);
+		int length = source.length;
+		int bound = VectorKernels.SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += VectorKernels.SPECIES.length()) {
+			ByteVector pixels = ByteVector.fromArray(VectorKernels.SPECIES, source, i);
+			transparent.blend(tint, pixels.compare(VectorOperators.NE, (byte) 0)).intoArray(target, i);
+		}
+		for (; i < length; i++) {
+			target[i] = source[i] == 0 ? 0 : color;
+		}
+	}
+
+	static void blit(byte[] sprite, int spriteWidth, byte[] target, int targetWidth, int x, int y, int left, int top,
+			int right, int bottom) {
+		int step = VectorKernels.SPECIES.length();
+		for (int row = top; row < bottom; row++) {
+			int spriteOffset = (row - y) * spriteWidth - x;
+			int targetOffset = row * targetWidth;
+			int column = left;
+			// Blending with what is there avoids masked byte stores, which not
+			// every CPU has
+			for (; column + step <= right; column += step) {
+				ByteVector pixels = ByteVector.fromArray(VectorKernels.SPECIES, sprite, spriteOffset + column);
+				ByteVector.fromArray(VectorKernels.SPECIES, target, targetOffset + column)
+						.blend(pixels, pixels.compare(VectorOperators.NE, (byte) 0))
+						.intoArray(target, targetOffset + column);
+			}
+			for (; column < right; column++) {
+				byte color = sprite[spriteOffset + column];
+				if (color != 0) {
+					target[targetOffset + column] = color;
+				}
+			}
+		}
+	}
+
+	static void fill(byte[] target, int targetWidth, int left, int top, int right, int bottom, byte color) {
+		ByteVector fill = ByteVector.broadcast(VectorKernels.SPECIES, color);
+		int step = VectorKernels.SPECIES.length();
+		for (int row = top; row < bottom; row++) {
+			int targetOffset = row * targetWidth;
+			int column = left;
+			for (; column + step <= right; column += step) {
+				fill.intoArray(target, targetOffset + column);
+			}
+			for (; column < right; column++) {
+				target[targetOffset + column] = color;
+			}
+		}
+	}
+}
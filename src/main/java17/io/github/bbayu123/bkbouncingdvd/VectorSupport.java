@@ -0,0 +1,73 @@
+/* **********************************************************************
+ * Copyright (C) 2023 Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ * **********************************************************************
+ */
+package io.github.bbayu123.bkbouncingdvd;
+
+/**
+ * Picks the kernels {@link PixelKernels} hands off to
+ * <p>
+ * This is the Java 17 version of this class. The Vector API is still an
+ * incubator module, so it is only there when the server is started with
+ * {@code --add-modules jdk.incubator.vector}. This class does not touch the
+ * Vector API itself, so it can be loaded either way, and only hands off to
+ * {@link VectorKernels} when the module is there, and to the
+ * {@link ScalarKernels} otherwise. Setting the system property
+ * {@code bouncingdvd.vector} to {@code false} turns the Vector API kernels
+ * off.
+ *
+ * @author Cyrus Mian Xi Li (bbayu/bbayu123)
+ *
+ */
+final class VectorSupport {
+	/**
+	 * Whether the Vector API kernels are used
+	 */
+	private static final boolean AVAILABLE = !"false".equals(System.getProperty("bouncingdvd.vector"))
+			&& ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	private VectorSupport() {
+	}
+
+	static boolean isAvailable() {
+		return VectorSupport.AVAILABLE;
+	}
+
+	static void tint(byte[] source, byte[] target, byte color) {
+		if (VectorSupport.AVAILABLE) {
+			VectorKernels.tint(source, target, color);
+		} else {
+			ScalarKernels.tint(source, target, color);
+		}
+	}
+
+	static void blit(byte[] sprite, int spriteWidth, byte[] target, int targetWidth, int x, int y, int left, int top,
+			int right, int bottom) {
+		if (VectorSupport.AVAILABLE) {
+			VectorKernels.blit(sprite, spriteWidth, target, targetWidth, x, y, left, top, right, bottom);
+		} else {
+			ScalarKernels.blit(sprite, spriteWidth, target, targetWidth, x, y, left, top, right, bottom);
+		}
+	}
+
+	static void fill(byte[] target, int targetWidth, int left, int top, int right, int bottom, byte color) {
+		if (VectorSupport.AVAILABLE) {
+			VectorKernels.fill(target, targetWidth, left, top, right, bottom, color);
+		} else {
+			ScalarKernels.fill(target, targetWidth, left, top, right, bottom, color);
+		}
+	}
+}